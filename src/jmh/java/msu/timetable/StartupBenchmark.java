@@ -0,0 +1,128 @@
+package msu.timetable;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.*;
+
+/**
+ * Measures time from launch of the application to the first served request and to readiness
+ * in default profile, "fast-start" profile and "fast-start" profile with AppCDS archive.
+ * Each sample needs a new JVM, so this is a plain program rather than JMH benchmark, run by "gradle startupBenchmark".
+ * Every launch works with fresh copies of data files, median of several launches is reported.
+ * <p>
+ * Arguments: class path of application, AppCDS archive created with the same class path (skipped if missing),
+ * directory with subjects.json and homeworks.json, number of launches in each mode (default 5)
+ */
+public class StartupBenchmark {
+
+    /** Launch of application is abandoned after this time */
+    private static final Duration TIMEOUT = Duration.ofMinutes(2);
+
+    /** Endpoint of the first request, it needs loaded subjects */
+    private static final String FIRST_REQUEST = "/api/getSubjectList";
+
+    private static final HttpClient client = HttpClient.newBuilder().connectTimeout(Duration.ofMillis(500)).build();
+
+    /** Launch configuration: additional JVM options and program arguments */
+    private record Mode(String name, List<String> jvmOptions, List<String> arguments) {}
+
+    /** Milliseconds from launch to the first served request and to "ready" from readiness probe */
+    private record Sample(long firstRequest, long ready) {}
+
+    public static void main(String[] args) throws Exception {
+        String classpath = args[0];
+        Path archive = Path.of(args[1]);
+        Path data = Path.of(args[2]);
+        int launches = args.length > 3 ? Integer.parseInt(args[3]) : 5;
+
+        List<String> fastStart = List.of("--spring.profiles.active=fast-start");
+        List<Mode> modes = new ArrayList<>(List.of(
+                new Mode("default", List.of(), List.of()),
+                new Mode("fast-start", List.of(), fastStart)
+        ));
+        if (Files.exists(archive))
+            modes.add(new Mode("fast-start + AppCDS", List.of("-XX:SharedArchiveFile=" + archive), fastStart));
+        else
+            System.out.println("AppCDS archive " + archive + " is missing, run appCdsArchive task to create it");
+
+        for (Mode mode : modes) {
+            long[] firstRequest = new long[launches];
+            long[] ready = new long[launches];
+            for (int i = 0; i < launches; i++) {
+                Sample sample = launch(classpath, mode, data);
+                firstRequest[i] = sample.firstRequest();
+                ready[i] = sample.ready();
+            }
+            System.out.printf("%-20s first request %6d ms, ready %6d ms (median of %d launches)%n",
+                    mode.name(), median(firstRequest), median(ready), launches);
+        }
+    }
+
+    private static Sample launch(String classpath, Mode mode, Path data) throws IOException, InterruptedException {
+        Path storage = Files.createTempDirectory("timetable-startup");
+        for (String file : List.of("subjects.json", "homeworks.json"))
+            if (Files.exists(data.resolve(file))) Files.copy(data.resolve(file), storage.resolve(file));
+
+        int port;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+
+        List<String> command = new ArrayList<>();
+        command.add(Path.of(System.getProperty("java.home"), "bin", "java").toString());
+        command.addAll(mode.jvmOptions());
+        command.addAll(List.of("-cp", classpath, "-Dtimetable.storage.dir=" + storage, "msu.timetable.TimetableApplication"));
+        command.add("--server.port=" + port);
+        command.addAll(mode.arguments());
+
+        long start = System.nanoTime();
+        Process process = new ProcessBuilder(command)
+                .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                .redirectError(ProcessBuilder.Redirect.DISCARD)
+                .start();
+        try {
+            long firstRequest = awaitSuccess(process, port, FIRST_REQUEST, start);
+            long ready = awaitSuccess(process, port, "/api/getReadiness", start);
+            return new Sample(firstRequest, ready);
+        } finally {
+            process.destroy();
+            process.waitFor();
+            try (var files = Files.walk(storage)) {
+                for (Path file : files.sorted(Comparator.reverseOrder()).toList())
+                    Files.deleteIfExists(file);
+            }
+        }
+    }
+
+    /** Repeats request until it succeeds, returns milliseconds since start */
+    private static long awaitSuccess(Process process, int port, String endpoint, long start) throws InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + endpoint))
+                .timeout(TIMEOUT)
+                .build();
+        while (System.nanoTime() - start < TIMEOUT.toNanos()) {
+            if (!process.isAlive())
+                throw new IllegalStateException("Application exited with code " + process.exitValue());
+            try {
+                if (client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode() == 200)
+                    return (System.nanoTime() - start) / 1_000_000;
+            } catch (IOException e) {
+//                server isn't listening yet
+            }
+            Thread.sleep(5);
+        }
+        throw new IllegalStateException("No response from " + endpoint + " in " + TIMEOUT);
+    }
+
+    private static long median(long[] values) {
+        long[] sorted = values.clone();
+        Arrays.sort(sorted);
+        return sorted[sorted.length / 2];
+    }
+}
@@ -0,0 +1,64 @@
+package msu.timetable.models;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures free slot search over a full-semester timetable.
+ * Semester lasts 18 weeks, every subject has two lessons a week at fixed "pair" times.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class FreeSlotFinderBenchmark {
+
+    private static final ZoneId zone = ZoneId.of("Europe/Moscow");
+    private static final LocalDate semesterStart = LocalDate.of(2022, 9, 1);
+    private static final int weeks = 18;
+
+    /** Beginnings of MSU "pairs" in minutes */
+    private static final int[] pairs = { 9 * 60, 10 * 60 + 45, 12 * 60 + 50, 14 * 60 + 35, 16 * 60 + 20, 18 * 60 };
+
+    /** Number of subjects, which lessons are merged by single request */
+    @Param({ "5", "50", "500" })
+    public int subjectCount;
+
+    private final FreeSlotFinder finder = new FreeSlotFinder(FreeSlotFinder.DEFAULT_LESSON_LENGTH, new TimetableCalendar(zone), ForkJoinPool.commonPool());
+    private List<Subject> subjects;
+    private FreeSlotFinder.Query query;
+
+    @Setup
+    public void createTimetable() {
+        Random random = new Random(42);
+        subjects = new ArrayList<>(subjectCount);
+        for (int i = 0; i < subjectCount; i++) {
+            List<Date> schedule = new ArrayList<>();
+            for (int lesson = 0; lesson < 2; lesson++) {
+                int weekday = random.nextInt(5);
+                int pair = pairs[random.nextInt(pairs.length)];
+                for (int week = 0; week < weeks; week++) {
+                    LocalDate day = semesterStart.plusWeeks(week).plusDays(weekday);
+                    schedule.add(Date.from(day.atStartOfDay(zone).plusMinutes(pair).toInstant()));
+                }
+            }
+            Subject subject = new Subject();
+            subject.setId((short) i);
+            subject.setSchedule(schedule);
+            subjects.add(subject);
+        }
+
+        long from = semesterStart.atStartOfDay(zone).toInstant().toEpochMilli();
+        long to = semesterStart.plusWeeks(weeks).atStartOfDay(zone).toInstant().toEpochMilli();
+        query = new FreeSlotFinder.Query(from, to, TimeUnit.MINUTES.toMillis(90), 9 * 60, 18 * 60, true, 50, FreeSlot.BEST_FIT);
+    }
+
+    @Benchmark
+    public List<FreeSlot> semester() {
+        return finder.find(subjects, query);
+    }
+}
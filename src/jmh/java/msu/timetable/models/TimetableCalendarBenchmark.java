@@ -0,0 +1,101 @@
+package msu.timetable.models;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.Calendar;
+import java.util.Random;
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures weekday lookups of lessons from 1, 4 and all available threads.
+ * TimetableCalendar should scale linearly, while former shared synchronized Calendar is kept as a baseline.
+ * Lessons span a year, so in zones with daylight saving time lookups cross March and October transitions.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class TimetableCalendarBenchmark {
+
+    @Param({ "Europe/Moscow", "Europe/Berlin" })
+    public String zoneId;
+
+    /** Number of lesson timestamps, spread over one year */
+    private static final int lessons = 4096;
+
+    private TimetableCalendar calendar;
+    private Calendar sharedCalendar;
+    private final long[] timestamps = new long[lessons];
+
+    /** Position of each thread in timestamps */
+    @State(Scope.Thread)
+    public static class Cursor {
+        int next;
+    }
+
+    @Setup
+    public void createLessons() {
+        ZoneId zone = ZoneId.of(zoneId);
+        calendar = new TimetableCalendar(zone);
+        sharedCalendar = Calendar.getInstance(TimeZone.getTimeZone(zone));
+
+        Random random = new Random(42);
+        long yearStart = LocalDate.of(2022, 1, 1).atStartOfDay(zone).toInstant().toEpochMilli();
+        for (int i = 0; i < lessons; i++)
+            timestamps[i] = yearStart + (long) (random.nextDouble() * 365 * TimetableCalendar.MILLIS_PER_DAY);
+    }
+
+    private long nextTimestamp(Cursor cursor) {
+        return timestamps[cursor.next++ & (lessons - 1)];
+    }
+
+    private int calendarWeekday(Cursor cursor) {
+        return calendar.dayOfWeek(nextTimestamp(cursor));
+    }
+
+    private int synchronizedWeekday(Cursor cursor) {
+        long timestamp = nextTimestamp(cursor);
+        synchronized (sharedCalendar) {
+            sharedCalendar.setTimeInMillis(timestamp);
+            return sharedCalendar.get(Calendar.DAY_OF_WEEK);
+        }
+    }
+
+    @Benchmark
+    @Threads(1)
+    public int calendar1Thread(Cursor cursor) {
+        return calendarWeekday(cursor);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public int calendar4Threads(Cursor cursor) {
+        return calendarWeekday(cursor);
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public int calendarMaxThreads(Cursor cursor) {
+        return calendarWeekday(cursor);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public int synchronized1Thread(Cursor cursor) {
+        return synchronizedWeekday(cursor);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public int synchronized4Threads(Cursor cursor) {
+        return synchronizedWeekday(cursor);
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public int synchronizedMaxThreads(Cursor cursor) {
+        return synchronizedWeekday(cursor);
+    }
+}
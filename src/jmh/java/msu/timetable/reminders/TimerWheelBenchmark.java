@@ -0,0 +1,59 @@
+package msu.timetable.reminders;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures timer wheel with given number of pending reminders, spread over a semester of one-second ticks.
+ * The largest size is every 16-bit homework identifier with two default reminders.
+ * Each operation keeps the number of pending reminders constant.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class TimerWheelBenchmark {
+
+    /** Semester in one-second ticks */
+    private static final long span = 18 * 7 * 24 * 3600L;
+
+    @Param({ "1000", "131072" })
+    public int pending;
+
+    private TimerWheel<Integer> wheel;
+    private TimerWheel.Timeout<Integer>[] timeouts;
+    private final Random random = new Random(42);
+    private int next;
+
+    @Setup(Level.Iteration)
+    @SuppressWarnings("unchecked")
+    public void fillWheel() {
+        wheel = new TimerWheel<>(0);
+        timeouts = new TimerWheel.Timeout[pending];
+        for (int i = 0; i < pending; i++)
+            timeouts[i] = wheel.schedule(i, randomDeadline());
+        next = 0;
+    }
+
+    private long randomDeadline() {
+        return wheel.getTick() + 1 + (long) (random.nextDouble() * span);
+    }
+
+    /** Cancels reminder and schedules it again, like changed due date of homework */
+    @Benchmark
+    public boolean reschedule() {
+        int i = next;
+        next = next + 1 == pending ? 0 : next + 1;
+        boolean cancelled = wheel.cancel(timeouts[i]);
+        timeouts[i] = wheel.schedule(i, randomDeadline());
+        return cancelled;
+    }
+
+    /** Processes one tick, fired reminders are scheduled again */
+    @Benchmark
+    public int advance() {
+        wheel.advance(wheel.getTick(), i -> timeouts[i] = wheel.schedule(i, randomDeadline()));
+        return wheel.size();
+    }
+}
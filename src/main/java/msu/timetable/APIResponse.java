@@ -1,18 +1,11 @@
 package msu.timetable;
 
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.node.NullNode;
-import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
-
 /**
  * POJO for API responses
  */
 // TODO think of moving APIResponse into enumeration
 public class APIResponse {
 
-    private static final ObjectMapper mapper = Jackson2ObjectMapperBuilder.json().build();
-
     /** Response, that returns nothing and display success */
     public static final APIResponse SUCCESS = new APIResponse(0, "Success");
 
@@ -27,11 +20,11 @@ public class APIResponse {
         return status;
     }
 
-    /** Date held by API response */
-    private final JsonNode data;
+    /** Date held by API response. Serialized by message converter straight into response body, no tree is built */
+    private final Object data;
 
     /** Getter for data*/
-    public JsonNode getData() {
+    public Object getData() {
         return data;
     }
 
@@ -42,14 +35,7 @@ public class APIResponse {
 
     /** Default constructor */
     public APIResponse(int status, Object data) {
-        JsonNode candidate;
-        try {
-            candidate = mapper.valueToTree(data);
-        } catch (IllegalArgumentException e) {
-            candidate = NullNode.getInstance();
-        }
-
         this.status = status;
-        this.data = candidate;
+        this.data = data;
     }
 }
@@ -1,16 +1,39 @@
 package msu.timetable;
 
+import msu.timetable.importer.ImportCli;
+import msu.timetable.rest.ReadinessController;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.context.ConfigurableApplicationContext;
 import org.springframework.web.bind.annotation.RestController;
 
-/** Main class of application */
+import java.util.Arrays;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Main class of application. Started as "import FILE..." it imports files into stores instead of serving requests.
+ * With system property timetable.startup.exitWhenReady it stops as soon as it is warmed up,
+ * which is used by training run of class-data sharing archive. If warm-up fails, it exits with status 1
+ */
 @SpringBootApplication
 @RestController
 public class TimetableApplication {
 
 	public static void main(String[] args) {
-		SpringApplication.run(TimetableApplication.class, args);
+		if (args.length > 0 && args[0].equals("import")) {
+			System.exit(ImportCli.run(Arrays.copyOfRange(args, 1, args.length)));
+		}
+		ConfigurableApplicationContext context = SpringApplication.run(TimetableApplication.class, args);
+		if (Boolean.getBoolean("timetable.startup.exitWhenReady")) {
+			try {
+				context.getBean(ReadinessController.class).awaitWarmup();
+			} catch (CompletionException e) {
+//				server threads aren't daemons, so failed training run must stop the JVM explicitly
+				SpringApplication.exit(context);
+				System.exit(1);
+			}
+			System.exit(SpringApplication.exit(context));
+		}
 	}
 
 }
@@ -0,0 +1,358 @@
+package msu.timetable.archive;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import msu.timetable.models.Homework;
+import msu.timetable.models.Subject;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.lang.NonNull;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+import java.util.function.ToLongFunction;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Cold tier of timetable: past lessons and long overdue homework moved out of stores by ArchiveMover.
+ * Records are kept in compressed append-only segment files, only time ranges of segments are kept on heap,
+ * so a query reads only segments overlapping its range.
+ * Homeworks being moved are kept in a journal until they are archived, so that interrupted move can be completed.
+ * Segments are shipped to replication followers, which install them under the same names.
+ * Archive is kept in directory set by "timetable.archive.dir" property, "archive" in storage directory by default
+ */
+public class Archive {
+
+    /** Maximal number of records in one segment */
+    static final int SEGMENT_RECORDS = 1 << 16;
+
+    /** File name of journal of homeworks being moved, it has format of homework segment */
+    static final String JOURNAL = "journal.homeworks";
+
+    /** File name of segment, its number and kind of records */
+    private static final Pattern SEGMENT_NAME = Pattern.compile("segment-(\\d{8,})\\.(lessons|homeworks)");
+
+    private static final ObjectMapper mapper = Jackson2ObjectMapperBuilder.json().build();
+
+    /** Archive exploits singleton pattern */
+    private static Archive singleton = null;
+
+    /** Singleton acquisition method */
+    public static synchronized Archive getInstance() {
+        if (singleton == null) {
+            String directory = System.getProperty("timetable.archive.dir",
+                    Path.of(System.getProperty("timetable.storage.dir", "."), "archive").toString());
+            singleton = new Archive(Path.of(directory));
+        }
+        return singleton;
+    }
+
+    /**
+     * Archived lesson
+     * @param subject - id of subject
+     * @param name - name of subject at the moment of archiving
+     * @param date - millisecond timestamp of lesson beginning
+     */
+    public record Lesson(short subject, String name, long date) {}
+
+    /**
+     * Archive statistics
+     * @param segments - number of segment files
+     * @param lessons - number of archived lessons
+     * @param homeworks - number of archived homeworks
+     * @param bytes - total size of segment files
+     * @param horizon - time, before which all archived records are
+     */
+    public record Stats(int segments, long lessons, long homeworks, long bytes, long horizon) {}
+
+    private final Path directory;
+
+    /** Segments ordered by their creation. Replaced on append, so that readers don't lock */
+    private volatile List<Segment> segments;
+
+    /** Number of the next segment file. Guarded by this */
+    private long nextSegment;
+
+    private final List<Consumer<String>> segmentListeners = new CopyOnWriteArrayList<>();
+
+    /**
+     * Opens archive, reading headers of all its segments
+     * @param directory - directory of segment files, created on first append
+     */
+    public Archive(@NonNull Path directory) {
+        this.directory = directory;
+        List<Segment> found = new ArrayList<>();
+        long next = 0;
+        if (Files.isDirectory(directory)) {
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "segment-*")) {
+                for (Path file : files) {
+                    String name = file.getFileName().toString();
+                    if (name.endsWith(".tmp")) {
+//                        leftover of interrupted append, its records are still in hot stores
+                        Files.delete(file);
+                        continue;
+                    }
+                    found.add(Segment.open(file));
+                    next = Math.max(next, Long.parseLong(name.substring("segment-".length(), name.lastIndexOf('.'))) + 1);
+                }
+            } catch (IOException | NumberFormatException e) {
+                throw new IllegalStateException("Failed to open archive " + directory, e);
+            }
+        }
+        found.sort(Comparator.comparing(s -> s.path.getFileName().toString()));
+        this.segments = List.copyOf(found);
+        this.nextSegment = next;
+    }
+
+    /** Appends lessons in segments of at most SEGMENT_RECORDS lessons */
+    public synchronized void appendLessons(@NonNull Collection<Lesson> lessons) throws IOException {
+        Lesson[] sorted = lessons.stream().sorted(Comparator.comparingLong(Lesson::date)).toArray(Lesson[]::new);
+        append(Segment.LESSONS, sorted, Lesson::date, (lesson, out) -> {
+            out.writeShort(lesson.subject());
+            out.writeUTF(lesson.name() != null ? lesson.name() : "");
+        });
+    }
+
+    /** Appends homeworks in segments of at most SEGMENT_RECORDS homeworks */
+    public synchronized void appendHomeworks(@NonNull Collection<Homework> homeworks) throws IOException {
+        Homework[] sorted = homeworks.stream().sorted(Comparator.comparing(Homework::getDueDate)).toArray(Homework[]::new);
+        append(Segment.HOMEWORKS, sorted, h -> h.getDueDate().getTime(), Archive::writeHomework);
+    }
+
+    private static void writeHomework(Homework homework, DataOutputStream out) throws IOException {
+        byte[] json = mapper.writeValueAsBytes(homework);
+        out.writeInt(json.length);
+        out.write(json);
+    }
+
+    private <T> void append(byte kind, T[] sorted, ToLongFunction<T> time,
+                            Segment.RecordWriter<T> writer) throws IOException {
+        if (sorted.length == 0) return;
+        Files.createDirectories(directory);
+
+        List<Segment> appended = new ArrayList<>(segments);
+        for (int from = 0; from < sorted.length; from += SEGMENT_RECORDS) {
+            T[] records = Arrays.copyOfRange(sorted, from, Math.min(sorted.length, from + SEGMENT_RECORDS));
+            long[] times = Arrays.stream(records).mapToLong(time).toArray();
+            Path path = directory.resolve("segment-%08d.%s".formatted(nextSegment++, kind == Segment.LESSONS ? "lessons" : "homeworks"));
+            appended.add(Segment.write(path, kind, times, records, writer));
+//            publish every segment at once, so that records are readable before they leave hot stores
+            segments = List.copyOf(appended);
+            published(path);
+        }
+    }
+
+    /**
+     * Registers listener, which receives file name of every new segment after it becomes readable.
+     * Listeners are called while archive is locked
+     */
+    public void addSegmentListener(@NonNull Consumer<String> listener) {
+        segmentListeners.add(listener);
+    }
+
+    private void published(Path path) {
+        String name = path.getFileName().toString();
+        segmentListeners.forEach(listener -> listener.accept(name));
+    }
+
+    /** Returns file names of all segments in order of their creation */
+    public List<String> getSegmentNames() {
+        return segments.stream().map(s -> s.path.getFileName().toString()).toList();
+    }
+
+    /**
+     * Reads whole segment file, e.g. to ship it to replication follower
+     * @param name - file name of segment
+     * @throws NoSuchFileException if archive has no such segment
+     */
+    public byte[] readSegment(@NonNull String name) throws IOException {
+        for (Segment segment : segments)
+            if (segment.path.getFileName().toString().equals(name))
+                return Files.readAllBytes(segment.path);
+        throw new NoSuchFileException(directory.resolve(name).toString());
+    }
+
+    /**
+     * Installs segment received from replication leader, unless archive already has segment of this name
+     * @param name - file name of segment in leader's archive
+     * @param content - whole segment file
+     * @throws IOException if name or content isn't one of segment
+     */
+    public synchronized void installSegment(@NonNull String name, @NonNull byte[] content) throws IOException {
+        Matcher matcher = SEGMENT_NAME.matcher(name);
+        if (!matcher.matches()) throw new IOException("Not a segment name: " + name);
+        if (getSegmentNames().contains(name)) return;
+        Files.createDirectories(directory);
+
+        Path path = directory.resolve(name);
+        List<Segment> installed = new ArrayList<>(segments);
+        installed.add(Segment.install(path, content));
+        installed.sort(Comparator.comparing(s -> s.path.getFileName().toString()));
+        segments = List.copyOf(installed);
+        nextSegment = Math.max(nextSegment, Long.parseLong(matcher.group(1)) + 1);
+        published(path);
+    }
+
+    /**
+     * Writes journal of homeworks, which are about to be removed from store and archived.
+     * Journal must be completed by archiveJournaled() before the next one is written
+     * @param homeworks - homeworks selected for move
+     */
+    public synchronized void journalHomeworks(@NonNull Collection<Homework> homeworks) throws IOException {
+        if (homeworks.isEmpty()) return;
+        Files.createDirectories(directory);
+        Homework[] sorted = homeworks.stream().sorted(Comparator.comparing(Homework::getDueDate)).toArray(Homework[]::new);
+        long[] times = Arrays.stream(sorted).mapToLong(h -> h.getDueDate().getTime()).toArray();
+        Segment.write(directory.resolve(JOURNAL), Segment.HOMEWORKS, times, sorted, Archive::writeHomework);
+    }
+
+    /** Returns homeworks of journal, which wasn't completed, or empty list */
+    public synchronized List<Homework> getJournaledHomeworks() throws IOException {
+        Path journal = directory.resolve(JOURNAL);
+        if (!Files.exists(journal)) return List.of();
+        List<Homework> result = new ArrayList<>();
+        readHomeworks(Segment.open(journal), Long.MIN_VALUE, Long.MAX_VALUE, (json, homework) -> result.add(homework));
+        return result;
+    }
+
+    /**
+     * Completes journal: appends journaled homeworks, which were actually removed from store, and deletes journal
+     * @param removed - removed homeworks
+     */
+    public synchronized void archiveJournaled(@NonNull Collection<Homework> removed) throws IOException {
+        appendHomeworks(removed);
+        Files.deleteIfExists(directory.resolve(JOURNAL));
+    }
+
+    /**
+     * Returns archived lessons in time range ordered by date.
+     * Lesson archived twice by move, which was interrupted after archiving, is returned once
+     * @param from - inclusive millisecond timestamp
+     * @param to - exclusive millisecond timestamp
+     */
+    public List<Lesson> getLessons(long from, long to) {
+        List<Lesson> result = new ArrayList<>();
+        Set<Map.Entry<Short, Long>> seen = new HashSet<>();
+        for (Segment segment : segments) {
+            if (segment.kind != Segment.LESSONS || !segment.overlaps(from, to)) continue;
+            try (DataInputStream in = segment.body()) {
+                for (int i = 0; i < segment.count; i++) {
+                    long date = in.readLong();
+                    short subject = in.readShort();
+                    String name = in.readUTF();
+//                    records are sorted by time
+                    if (date >= to) break;
+                    if (date >= from && seen.add(Map.entry(subject, date))) result.add(new Lesson(subject, name, date));
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to read " + segment.path, e);
+            }
+        }
+        result.sort(Comparator.comparingLong(Lesson::date));
+        return result;
+    }
+
+    /**
+     * Returns archived homeworks due in time range ordered by due date.
+     * Homework archived twice by move, which was interrupted after archiving, is returned once
+     * @param from - inclusive millisecond timestamp
+     * @param to - exclusive millisecond timestamp
+     */
+    public List<Homework> getHomeworks(long from, long to) {
+        List<Homework> result = new ArrayList<>();
+        Set<ByteBuffer> seen = new HashSet<>();
+        for (Segment segment : segments) {
+            if (segment.kind != Segment.HOMEWORKS || !segment.overlaps(from, to)) continue;
+            try {
+                readHomeworks(segment, from, to, (json, homework) -> {
+                    if (seen.add(ByteBuffer.wrap(json))) result.add(homework);
+                });
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to read " + segment.path, e);
+            }
+        }
+        result.sort(Comparator.comparing(Homework::getDueDate));
+        return result;
+    }
+
+    /** Receiver of read homework together with its JSON */
+    @FunctionalInterface
+    private interface HomeworkReader {
+        void read(byte[] json, Homework homework);
+    }
+
+    /** Reads homeworks of segment due in time range */
+    private static void readHomeworks(Segment segment, long from, long to, HomeworkReader reader) throws IOException {
+        try (DataInputStream in = segment.body()) {
+            for (int i = 0; i < segment.count; i++) {
+                long due = in.readLong();
+                byte[] json = new byte[in.readInt()];
+                in.readFully(json);
+//                records are sorted by time
+                if (due >= to) break;
+                if (due >= from) reader.read(json, mapper.readValue(json, Homework.class));
+            }
+        }
+    }
+
+    /**
+     * Adds archived lessons to subjects, e.g. to search free slots in the past
+     * @param subjects - subjects from hot store
+     * @param from - inclusive millisecond timestamp
+     * @param to - exclusive millisecond timestamp
+     * @return the same subjects, if no lessons of range are archived, otherwise copies of subjects with archived lessons added
+     */
+    public Collection<Subject> withLessons(@NonNull Collection<Subject> subjects, long from, long to) {
+        if (from >= getHorizon()) return subjects;
+        Map<Short, List<Lesson>> archived = new HashMap<>();
+        for (Lesson lesson : getLessons(from, to))
+            archived.computeIfAbsent(lesson.subject(), s -> new ArrayList<>()).add(lesson);
+        if (archived.isEmpty()) return subjects;
+
+        List<Subject> result = new ArrayList<>(subjects.size());
+        for (Subject subject : subjects) {
+            List<Lesson> lessons = archived.get(subject.getId());
+            if (lessons == null) {
+                result.add(subject);
+                continue;
+            }
+            Subject copy = new Subject(subject);
+            Set<Date> present = new HashSet<>(copy.getSchedule());
+            for (Lesson lesson : lessons) {
+                Date date = new Date(lesson.date());
+                if (present.add(date)) copy.getSchedule().add(date);
+            }
+            result.add(copy);
+        }
+        return result;
+    }
+
+    /** Returns time, before which all archived records are. Ranges starting from it don't need archive */
+    public long getHorizon() {
+        long horizon = Long.MIN_VALUE;
+        for (Segment segment : segments)
+            horizon = Math.max(horizon, segment.maxTime + 1);
+        return horizon;
+    }
+
+    /** Returns archive statistics */
+    public Stats getStats() {
+        List<Segment> current = segments;
+        long lessons = 0, homeworks = 0, bytes = 0;
+        for (Segment segment : current) {
+            if (segment.kind == Segment.LESSONS) lessons += segment.count;
+            else homeworks += segment.count;
+            bytes += segment.size();
+        }
+        return new Stats(current.size(), lessons, homeworks, bytes, getHorizon());
+    }
+}
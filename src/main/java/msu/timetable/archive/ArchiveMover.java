@@ -0,0 +1,177 @@
+package msu.timetable.archive;
+
+import msu.timetable.models.Homework;
+import msu.timetable.models.Homeworks;
+import msu.timetable.models.Subject;
+import msu.timetable.models.Subjects;
+import msu.timetable.storage.EntityStorage;
+import org.springframework.lang.NonNull;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+import java.util.logging.Logger;
+
+/**
+ * Background task, which moves lessons older than a cutoff and homework overdue by more than a grace period
+ * from stores into archive. Lessons are written to archive first and removed from stores afterwards,
+ * so they are always readable, and interrupted move is completed by the next one.
+ * Lessons archived again by such move are returned by archive once.
+ * Homeworks are written to archive journal, removed from store only if they weren't changed meanwhile,
+ * and then those actually removed are archived. Homework changed while being moved stays in store for the next move.
+ * Journal of interrupted move is completed on start and before each move.
+ * <p>
+ * Configured by system properties:
+ * <ul>
+ *     <li>timetable.archive.enabled - whether moves run periodically (default false)</li>
+ *     <li>timetable.archive.lessonDays - age of lessons, after which they are archived (default 180)</li>
+ *     <li>timetable.archive.graceDays - days after due date, after which homework is archived (default 30)</li>
+ *     <li>timetable.archive.intervalMinutes - interval between moves (default 1440)</li>
+ * </ul>
+ */
+public class ArchiveMover {
+
+    private static final Logger logger = Logger.getLogger("ArchiveMover");
+
+    /** Delay of the first move after start in milliseconds, so that it doesn't slow startup down */
+    private static final long INITIAL_DELAY = TimeUnit.MINUTES.toMillis(1);
+
+    /** Creates mover of application stores configured by system properties */
+    public static ArchiveMover create() {
+        return new ArchiveMover(Subjects.getInstance(), Homeworks.getInstance(), Archive.getInstance(),
+                TimeUnit.DAYS.toMillis(Integer.getInteger("timetable.archive.lessonDays", 180)),
+                TimeUnit.DAYS.toMillis(Integer.getInteger("timetable.archive.graceDays", 30)),
+                System::currentTimeMillis);
+    }
+
+    /**
+     * Result of one move
+     * @param lessons - number of archived lessons
+     * @param homeworks - number of archived homeworks
+     */
+    public record Result(int lessons, int homeworks) {}
+
+    private final Subjects subjects;
+    private final Homeworks homeworks;
+    private final Archive archive;
+    private final long lessonAge;
+    private final long grace;
+    private final LongSupplier clock;
+
+    private ScheduledExecutorService executor = null;
+
+    /** Homeworks removed from store by a move, which failed to archive them, or null. Guarded by this */
+    private List<Homework> unarchived = null;
+
+    /**
+     * @param subjects - store of subjects
+     * @param homeworks - store of homeworks
+     * @param archive - archive, to which records are moved
+     * @param lessonAge - age of lessons in milliseconds, after which they are archived
+     * @param grace - time after due date in milliseconds, after which homework is archived
+     * @param clock - source of millisecond timestamps
+     */
+    public ArchiveMover(@NonNull Subjects subjects, @NonNull Homeworks homeworks, @NonNull Archive archive,
+                        long lessonAge, long grace, @NonNull LongSupplier clock) {
+        this.subjects = subjects;
+        this.homeworks = homeworks;
+        this.archive = archive;
+        this.lessonAge = lessonAge;
+        this.grace = grace;
+        this.clock = clock;
+    }
+
+    /** Moves all records, which are old enough, into archive */
+    public synchronized Result move() throws IOException {
+        long now = clock.getAsLong();
+        int recovered = recoverHomeworks();
+        return new Result(moveLessons(now - lessonAge), recovered + moveHomeworks(now - grace));
+    }
+
+    private int moveLessons(long cutoff) throws IOException {
+        List<Archive.Lesson> lessons = new ArrayList<>();
+        Map<Short, Set<Date>> bySubject = new HashMap<>();
+        for (Subject subject : subjects.getAllSubjects()) {
+            for (Date lesson : subject.getSchedule()) {
+                if (lesson.getTime() >= cutoff) continue;
+                lessons.add(new Archive.Lesson(subject.getId(), subject.getName(), lesson.getTime()));
+                bySubject.computeIfAbsent(subject.getId(), s -> new HashSet<>()).add(lesson);
+            }
+        }
+        if (lessons.isEmpty()) return 0;
+
+        archive.appendLessons(lessons);
+        bySubject.forEach((id, dates) ->
+                subjects.updateSubject(id, EntityStorage.ANY_VERSION, s -> s.getSchedule().removeAll(dates)));
+        return lessons.size();
+    }
+
+    private int moveHomeworks(long cutoff) throws IOException {
+        List<Homework> due = homeworks.getAllHomeworks().stream()
+                .filter(h -> h.getDueDate().getTime() < cutoff)
+                .toList();
+        if (due.isEmpty()) return 0;
+
+        archive.journalHomeworks(due);
+        List<Homework> removed = new ArrayList<>(due.size());
+        for (Homework homework : due)
+            if (homeworks.removeHomeworkIfUnchanged(homework)) removed.add(homework);
+        unarchived = removed;
+        archive.archiveJournaled(removed);
+        unarchived = null;
+        return removed.size();
+    }
+
+    /**
+     * Completes journal of move, which was interrupted after homeworks were removed from store.
+     * If it was interrupted by previous run, journaled homeworks, which are missing in store, were removed by it,
+     * the rest are moved anew
+     * @return number of archived homeworks
+     */
+    private int recoverHomeworks() throws IOException {
+        List<Homework> removed = unarchived;
+        if (removed == null) {
+            List<Homework> journaled = archive.getJournaledHomeworks();
+            if (journaled.isEmpty()) return 0;
+            removed = journaled.stream().filter(h -> homeworks.getHomeworkById(h.getId()) == null).toList();
+        }
+        archive.archiveJournaled(removed);
+        unarchived = null;
+        return removed.size();
+    }
+
+    /** Completes interrupted move right away, before ids of its homeworks may be reused, and starts periodic moves */
+    public synchronized void start(long intervalMillis) {
+        if (executor != null) return;
+        try {
+            int recovered = recoverHomeworks();
+            if (recovered > 0) logger.info("Archived " + recovered + " homeworks of interrupted move");
+        } catch (IOException e) {
+            logger.severe("Failed to complete interrupted move: " + e);
+        }
+        executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "archive-mover");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.scheduleWithFixedDelay(() -> {
+            try {
+                Result result = move();
+                if (result.lessons() > 0 || result.homeworks() > 0)
+                    logger.info("Archived " + result.lessons() + " lessons and " + result.homeworks() + " homeworks");
+            } catch (IOException | RuntimeException e) {
+//                exception would cancel further moves
+                logger.severe("Failed to archive: " + e);
+            }
+        }, INITIAL_DELAY, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /** Stops periodic moves */
+    public synchronized void shutdown() {
+        if (executor != null) executor.shutdownNow();
+        executor = null;
+    }
+}
@@ -0,0 +1,133 @@
+package msu.timetable.archive;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Immutable archive file of records of one kind, sorted by time.
+ * File starts with uncompressed header, so that time range of segment is known without reading its body:
+ * <pre>int MAGIC, byte kind, int count, long minTime, long maxTime</pre>
+ * followed by deflated records, each starting with long time
+ */
+final class Segment {
+
+    static final int MAGIC = 0x54544152;
+
+    static final byte LESSONS = 'L';
+    static final byte HOMEWORKS = 'H';
+
+    /** Writer of records' bodies, after their time is written */
+    @FunctionalInterface
+    interface RecordWriter<T> {
+        void write(T record, DataOutputStream out) throws IOException;
+    }
+
+    final Path path;
+    final byte kind;
+    final int count;
+    final long minTime;
+    final long maxTime;
+
+    private Segment(Path path, byte kind, int count, long minTime, long maxTime) {
+        this.path = path;
+        this.kind = kind;
+        this.count = count;
+        this.minTime = minTime;
+        this.maxTime = maxTime;
+    }
+
+    /** Whether segment may hold records in time range [from, to) */
+    boolean overlaps(long from, long to) {
+        return minTime < to && maxTime >= from;
+    }
+
+    /** Reads header of segment file */
+    static Segment open(Path path) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path), 64))) {
+            if (in.readInt() != MAGIC) throw new IOException("Not an archive segment: " + path);
+            return new Segment(path, in.readByte(), in.readInt(), in.readLong(), in.readLong());
+        }
+    }
+
+    /**
+     * Writes records sorted by time into new segment file. File appears atomically and is synced to disk
+     * @param path - path of new file
+     * @param kind - kind of records
+     * @param times - times of records in ascending order
+     * @param records - records
+     * @param writer - writer of record bodies
+     */
+    static <T> Segment write(Path path, byte kind, long[] times, T[] records, RecordWriter<T> writer) throws IOException {
+        Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+        try (FileOutputStream file = new FileOutputStream(temporary.toFile())) {
+            DataOutputStream header = new DataOutputStream(new BufferedOutputStream(file));
+            header.writeInt(MAGIC);
+            header.writeByte(kind);
+            header.writeInt(records.length);
+            header.writeLong(times[0]);
+            header.writeLong(times[times.length - 1]);
+            header.flush();
+
+            DeflaterOutputStream deflater = new DeflaterOutputStream(file);
+            DataOutputStream body = new DataOutputStream(new BufferedOutputStream(deflater, 1 << 16));
+            for (int i = 0; i < records.length; i++) {
+                body.writeLong(times[i]);
+                writer.write(records[i], body);
+            }
+            body.flush();
+            deflater.finish();
+            file.getChannel().force(true);
+        }
+        Files.move(temporary, path, StandardCopyOption.ATOMIC_MOVE);
+        return new Segment(path, kind, records.length, times[0], times[times.length - 1]);
+    }
+
+    /**
+     * Writes segment file received as a whole, e.g. from replication leader. File appears atomically and is synced to disk
+     * @param path - path of new file
+     * @param content - header and body of segment
+     * @throws IOException if content doesn't start with segment header
+     */
+    static Segment install(Path path, byte[] content) throws IOException {
+        Segment segment;
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(content))) {
+            if (in.readInt() != MAGIC) throw new IOException("Not an archive segment: " + path);
+            segment = new Segment(path, in.readByte(), in.readInt(), in.readLong(), in.readLong());
+        } catch (EOFException e) {
+            throw new IOException("Truncated archive segment: " + path, e);
+        }
+        if (segment.kind != LESSONS && segment.kind != HOMEWORKS)
+            throw new IOException("Unknown kind of archive segment: " + path);
+
+        Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+        try (FileOutputStream file = new FileOutputStream(temporary.toFile())) {
+            file.write(content);
+            file.getChannel().force(true);
+        }
+        Files.move(temporary, path, StandardCopyOption.ATOMIC_MOVE);
+        return segment;
+    }
+
+    /** Opens stream of records positioned after header. Caller reads count records */
+    DataInputStream body() throws IOException {
+        InputStream file = Files.newInputStream(path, StandardOpenOption.READ);
+        try {
+//            header has fixed length
+            file.skipNBytes(Integer.BYTES + 1 + Integer.BYTES + 2 * Long.BYTES);
+            return new DataInputStream(new BufferedInputStream(new InflaterInputStream(file), 1 << 16));
+        } catch (IOException e) {
+            file.close();
+            throw e;
+        }
+    }
+
+    /** Size of file in bytes */
+    long size() {
+        return path.toFile().length();
+    }
+}
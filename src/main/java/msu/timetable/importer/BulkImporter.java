@@ -0,0 +1,219 @@
+package msu.timetable.importer;
+
+import msu.timetable.models.Homework;
+import msu.timetable.models.Homeworks;
+import msu.timetable.models.Subjects;
+import msu.timetable.models.TimetableCalendar;
+import org.springframework.lang.NonNull;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Imports lessons and homeworks from CSV or iCalendar stream.
+ * Input is read sequentially and cut into chunks at record boundaries, chunks are parsed in parallel
+ * while reading goes on, and their results are merged in input order.
+ * Parsed records are committed in bulk: subjects are found by name or created, lessons are merged into schedules,
+ * then homeworks are created. Caches and search index are rebuilt once at the end instead of on each change.
+ * New subjects and homeworks, which exceed free ids of stores, are rejected before commit.
+ * Single importer runs one import at a time
+ */
+public class BulkImporter {
+
+    /** Number of logical lines in a chunk, after which it is cut at the next record boundary */
+    static final int CHUNK_LINES = 8192;
+
+    private final Subjects subjects;
+    private final Homeworks homeworks;
+    private final TimetableCalendar calendar;
+    private final ForkJoinPool pool;
+
+    /** Progress of current import */
+    private volatile String phase = "parsing";
+    private final AtomicLong records = new AtomicLong();
+    private final AtomicLong committed = new AtomicLong();
+    private final AtomicLong errors = new AtomicLong();
+
+    /** Creates importer into application stores */
+    public static BulkImporter create() {
+        return new BulkImporter(Subjects.getInstance(), Homeworks.getInstance(), TimetableCalendar.getDefault(), ForkJoinPool.commonPool());
+    }
+
+    /**
+     * @param subjects - store of subjects
+     * @param homeworks - store of homeworks
+     * @param calendar - calendar, in which local dates of input are given
+     * @param pool - pool, on which chunks are parsed
+     */
+    public BulkImporter(@NonNull Subjects subjects, @NonNull Homeworks homeworks,
+                        @NonNull TimetableCalendar calendar, @NonNull ForkJoinPool pool) {
+        this.subjects = subjects;
+        this.homeworks = homeworks;
+        this.calendar = calendar;
+        this.pool = pool;
+    }
+
+    /** Returns progress of current or last import */
+    public ImportProgress getProgress() {
+        return new ImportProgress(phase, records.get(), committed.get(), errors.get());
+    }
+
+    /**
+     * Reads, parses and commits whole input. Stores aren't saved to disk
+     * @param input - UTF-8 encoded input, which isn't closed
+     * @param format - format of input
+     * @return import report with rejected records
+     * @throws IOException if input can't be read
+     * @throws IllegalArgumentException if CSV header lacks required columns
+     */
+    public synchronized ImportReport run(@NonNull InputStream input, @NonNull ImportFormat format) throws IOException {
+        long start = System.currentTimeMillis();
+        phase = "parsing";
+        records.set(0);
+        committed.set(0);
+        errors.set(0);
+
+        ImportBatch total = parse(new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8)), format);
+        rejectOverCapacity(total);
+        errors.set(total.errorCount);
+        int[] created = commit(total);
+
+        phase = "done";
+        return new ImportReport(total.records, created[0], total.lessonCount, created[1],
+                total.errorCount, List.copyOf(total.errors), System.currentTimeMillis() - start);
+    }
+
+    private ImportBatch parse(BufferedReader reader, ImportFormat format) throws IOException {
+        long number = 0;
+        RecordParser parser = switch (format) {
+            case CSV -> {
+                number++;
+                yield new CsvParser(reader.readLine(), calendar);
+            }
+            case ICS -> new IcsParser(calendar);
+        };
+
+        ImportBatch total = new ImportBatch();
+        Deque<CompletableFuture<ImportBatch>> inFlight = new ArrayDeque<>();
+        int maxInFlight = 2 * pool.getParallelism();
+
+        List<String> lines = new ArrayList<>(CHUNK_LINES);
+        long[] numbers = new long[CHUNK_LINES];
+        String logical = null;
+        long logicalNumber = 0;
+
+        String line;
+        while (true) {
+            line = reader.readLine();
+            number++;
+            if (line != null && logical != null && parser.continuesLine(line)) {
+//                unfold continuation, dropping its leading whitespace
+                logical += line.substring(1);
+                continue;
+            }
+
+            if (logical != null) {
+                if (lines.size() == numbers.length) numbers = Arrays.copyOf(numbers, numbers.length * 2);
+                numbers[lines.size()] = logicalNumber;
+                lines.add(logical);
+                if (lines.size() >= CHUNK_LINES && parser.endsRecord(logical)) {
+                    submit(parser, lines, numbers, inFlight);
+                    lines = new ArrayList<>(CHUNK_LINES);
+                    numbers = new long[CHUNK_LINES];
+                    while (inFlight.size() > maxInFlight) mergeFirst(inFlight, total);
+                }
+            }
+            if (line == null) break;
+            logical = line;
+            logicalNumber = number;
+        }
+
+        if (!lines.isEmpty()) submit(parser, lines, numbers, inFlight);
+        while (!inFlight.isEmpty()) mergeFirst(inFlight, total);
+        return total;
+    }
+
+    private void submit(RecordParser parser, List<String> lines, long[] numbers, Deque<CompletableFuture<ImportBatch>> inFlight) {
+        RecordParser.Chunk chunk = new RecordParser.Chunk(lines.toArray(String[]::new), Arrays.copyOf(numbers, lines.size()));
+        inFlight.addLast(CompletableFuture.supplyAsync(() -> {
+            ImportBatch batch = new ImportBatch();
+            parser.parse(chunk, batch);
+            return batch;
+        }, pool));
+    }
+
+    private void mergeFirst(Deque<CompletableFuture<ImportBatch>> inFlight, ImportBatch total) {
+        ImportBatch batch = inFlight.removeFirst().join();
+        total.merge(batch);
+        records.addAndGet(batch.records);
+        errors.addAndGet(batch.errorCount);
+    }
+
+    /** Removes records of new subjects and homeworks, for which stores have no free ids, and reports them as errors */
+    private void rejectOverCapacity(ImportBatch total) {
+//        new subjects in order of commit: with lessons first, then referenced only by homeworks
+        Map<String, Long> newSubjects = new LinkedHashMap<>();
+        total.lessons.forEach((name, dates) -> {
+            if (subjects.getSubjectByName(name) == null) newSubjects.put(name, dates.line);
+        });
+        for (ImportBatch.HomeworkRow row : total.homeworks)
+            if (subjects.getSubjectByName(row.subject()) == null) newSubjects.putIfAbsent(row.subject(), row.line());
+
+        Set<String> rejected = new HashSet<>();
+        int freeSubjects = subjects.freeIds();
+        for (Map.Entry<String, Long> subject : newSubjects.entrySet()) {
+            if (freeSubjects > 0) {
+                freeSubjects--;
+                continue;
+            }
+            rejected.add(subject.getKey());
+            if (total.lessons.remove(subject.getKey()) != null)
+                total.addError(subject.getValue(), "No free id for new subject \"" + subject.getKey() + "\"");
+        }
+
+        int freeHomeworks = homeworks.freeIds();
+        List<ImportBatch.HomeworkRow> accepted = new ArrayList<>(Math.min(total.homeworks.size(), freeHomeworks));
+        for (ImportBatch.HomeworkRow row : total.homeworks) {
+            if (rejected.contains(row.subject()))
+                total.addError(row.line(), "No free id for new subject \"" + row.subject() + "\"");
+            else if (accepted.size() == freeHomeworks)
+                total.addError(row.line(), "No free id for new homework");
+            else
+                accepted.add(row);
+        }
+        total.homeworks.clear();
+        total.homeworks.addAll(accepted);
+    }
+
+    /** Commits parsed records, returns numbers of touched subjects and created homeworks */
+    private int[] commit(ImportBatch total) {
+        phase = "subjects";
+        Map<String, List<Date>> lessons = new LinkedHashMap<>(total.lessons.size() * 2);
+        total.lessons.forEach((name, dates) -> lessons.put(name, dates.toDates()));
+//        subjects referenced only by homeworks are created without lessons
+        for (ImportBatch.HomeworkRow row : total.homeworks)
+            lessons.putIfAbsent(row.subject(), List.of());
+        Map<String, Short> ids = subjects.importLessons(lessons, committed::set);
+
+        phase = "homeworks";
+        long subjectCount = committed.get();
+        List<Homework> drafts = new ArrayList<>(total.homeworks.size());
+        for (ImportBatch.HomeworkRow row : total.homeworks) {
+            Homework draft = new Homework();
+            draft.setSubject(ids.get(row.subject()));
+            draft.setDescription(row.description());
+            draft.setDueDate(new Date(row.dueDate()));
+            drafts.add(draft);
+        }
+        List<Homework> created = homeworks.importHomeworks(drafts, done -> committed.set(subjectCount + done));
+
+        return new int[] { ids.size(), created.size() };
+    }
+}
@@ -0,0 +1,135 @@
+package msu.timetable.importer;
+
+import msu.timetable.models.TimetableCalendar;
+
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.TemporalAccessor;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/** Parser of CSV rows, see ImportFormat.CSV */
+final class CsvParser implements RecordParser {
+
+    private final TimetableCalendar calendar;
+    private final int subjectColumn;
+    private final int dateColumn;
+    private final int homeworkColumn;
+    private final int columns;
+
+    /**
+     * @param header - first line of input with column names
+     * @param calendar - calendar, in which local date-times are given
+     * @throws IllegalArgumentException if required columns are missing
+     */
+    CsvParser(String header, TimetableCalendar calendar) {
+        this.calendar = calendar;
+        List<String> names = split(header == null ? "" : header);
+        int subject = -1, date = -1, homework = -1;
+        for (int i = 0; i < names.size(); i++) {
+            switch (names.get(i).trim().toLowerCase(Locale.ROOT)) {
+                case "subject" -> subject = i;
+                case "date" -> date = i;
+                case "homework", "description" -> homework = i;
+                default -> {}
+            }
+        }
+        if (subject < 0 || date < 0)
+            throw new IllegalArgumentException("CSV header must contain \"subject\" and \"date\" columns");
+
+        this.subjectColumn = subject;
+        this.dateColumn = date;
+        this.homeworkColumn = homework;
+        this.columns = Math.max(subject, Math.max(date, homework)) + 1;
+    }
+
+    @Override
+    public boolean endsRecord(String line) {
+        return true;
+    }
+
+    @Override
+    public void parse(Chunk chunk, ImportBatch batch) {
+        String[] lines = chunk.lines();
+        for (int i = 0; i < lines.length; i++) {
+            if (lines[i].isBlank()) continue;
+            batch.records++;
+
+            List<String> fields = split(lines[i]);
+            if (fields.size() < columns) {
+                batch.addError(chunk.numbers()[i], "Expected at least %d columns, found %d".formatted(columns, fields.size()));
+                continue;
+            }
+
+            String subject = fields.get(subjectColumn).trim();
+            if (subject.isEmpty()) {
+                batch.addError(chunk.numbers()[i], "Subject is empty");
+                continue;
+            }
+
+            long date;
+            try {
+                date = parseDate(fields.get(dateColumn).trim());
+            } catch (DateTimeException | NumberFormatException e) {
+                batch.addError(chunk.numbers()[i], "Bad date \"" + fields.get(dateColumn) + "\"");
+                continue;
+            }
+
+            String homework = homeworkColumn >= 0 ? fields.get(homeworkColumn).trim() : "";
+            if (homework.isEmpty()) batch.addLesson(chunk.numbers()[i], subject, date);
+            else batch.addHomework(chunk.numbers()[i], subject, homework, date);
+        }
+    }
+
+    /** Parses millisecond timestamp, ISO date-time with offset, ISO local date-time or ISO date */
+    private long parseDate(String text) {
+        if (isTimestamp(text)) return Long.parseLong(text);
+        if (text.length() == 10)
+            return calendar.startOfDay(LocalDate.parse(text).toEpochDay());
+
+        TemporalAccessor parsed = DateTimeFormatter.ISO_DATE_TIME.parseBest(
+                text.replace(' ', 'T'), OffsetDateTime::from, LocalDateTime::from
+        );
+        if (parsed instanceof OffsetDateTime dateTime)
+            return dateTime.toInstant().toEpochMilli();
+
+        LocalDateTime local = (LocalDateTime) parsed;
+        return calendar.timestampOf(local.toLocalDate().toEpochDay(), local.toLocalTime().toNanoOfDay() / 1_000_000);
+    }
+
+    private static boolean isTimestamp(String text) {
+        int start = text.startsWith("-") ? 1 : 0;
+        if (text.length() == start) return false;
+        for (int i = start; i < text.length(); i++)
+            if (text.charAt(i) < '0' || text.charAt(i) > '9') return false;
+        return true;
+    }
+
+    /** Splits line by commas, unquoting values in double quotes */
+    static List<String> split(String line) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c != '"') field.append(c);
+                else if (i + 1 < line.length() && line.charAt(i + 1) == '"') field.append(line.charAt(++i));
+                else quoted = false;
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+}
@@ -0,0 +1,246 @@
+package msu.timetable.importer;
+
+import msu.timetable.models.TimetableCalendar;
+
+import java.time.DateTimeException;
+import java.time.DayOfWeek;
+import java.time.ZoneId;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/** Parser of iCalendar components, see ImportFormat.ICS */
+final class IcsParser implements RecordParser {
+
+    /** Recurrence without COUNT or UNTIL is expanded for this number of days */
+    private static final int OPEN_RECURRENCE_DAYS = 366;
+
+    /** Maximal number of lessons produced by one recurrence */
+    private static final int MAX_OCCURRENCES = 5000;
+
+    /** Calendar of floating times, which have neither "Z" suffix nor TZID */
+    private final TimetableCalendar calendar;
+
+    /** Calendars of zones referenced by TZID parameters */
+    private final Map<String, TimetableCalendar> zones = new ConcurrentHashMap<>();
+
+    IcsParser(TimetableCalendar calendar) {
+        this.calendar = calendar;
+    }
+
+    /** Property line: NAME;PARAM=VALUE:VALUE */
+    private record Property(String name, Map<String, String> parameters, String value) {}
+
+    /** Properties of a component being parsed */
+    private static final class Component {
+        final String type;
+        final long line;
+        final Map<String, Property> properties = new HashMap<>();
+        final List<Property> exceptions = new ArrayList<>();
+
+        Component(String type, long line) {
+            this.type = type;
+            this.line = line;
+        }
+    }
+
+    @Override
+    public boolean endsRecord(String line) {
+        return line.startsWith("END:VEVENT") || line.startsWith("END:VTODO");
+    }
+
+    @Override
+    public boolean continuesLine(String line) {
+        return line.startsWith(" ") || line.startsWith("\t");
+    }
+
+    @Override
+    public void parse(Chunk chunk, ImportBatch batch) {
+        Component component = null;
+        for (int i = 0; i < chunk.lines().length; i++) {
+            String line = chunk.lines()[i];
+            long number = chunk.numbers()[i];
+
+            if (line.equals("BEGIN:VEVENT") || line.equals("BEGIN:VTODO")) {
+                component = new Component(line.substring(6), number);
+            } else if (component != null && line.equals("END:" + component.type)) {
+                batch.records++;
+                try {
+                    if (component.type.equals("VEVENT")) addLessons(component, batch);
+                    else addHomework(component, batch);
+                } catch (DateTimeException | IllegalArgumentException e) {
+                    batch.addError(component.line, component.type + ": " + e.getMessage());
+                }
+                component = null;
+            } else if (component != null) {
+                Property property = parseProperty(line);
+                if (property == null) continue;
+                if (property.name().equals("EXDATE")) component.exceptions.add(property);
+                else component.properties.putIfAbsent(property.name(), property);
+            }
+        }
+    }
+
+    private void addLessons(Component event, ImportBatch batch) {
+        String subject = text(event, "SUMMARY");
+        Property start = required(event, "DTSTART");
+        long first = timestamp(start);
+
+        Property rule = event.properties.get("RRULE");
+        if (rule == null) {
+            batch.addLesson(event.line, subject, first);
+            return;
+        }
+
+        Set<Long> excluded = new HashSet<>();
+        for (Property exception : event.exceptions)
+            for (String value : exception.value().split(","))
+                excluded.add(timestamp(new Property(exception.name(), exception.parameters(), value)));
+
+        for (long lesson : expand(start, rule.value()))
+            if (!excluded.contains(lesson)) batch.addLesson(event.line, subject, lesson);
+    }
+
+    private void addHomework(Component todo, ImportBatch batch) {
+        String description = text(todo, "SUMMARY");
+        long due = timestamp(required(todo, "DUE"));
+        String categories = text(todo, "CATEGORIES");
+        String subject = categories.split(",", 2)[0].trim();
+        if (subject.isEmpty()) throw new IllegalArgumentException("CATEGORIES must name subject");
+        batch.addHomework(todo.line, subject, description, due);
+    }
+
+    /** Expands DAILY or WEEKLY recurrence, keeping local time of the first occurrence */
+    private List<Long> expand(Property start, String rule) {
+        Map<String, String> parts = new HashMap<>();
+        for (String part : rule.split(";")) {
+            int equals = part.indexOf('=');
+            if (equals > 0) parts.put(part.substring(0, equals), part.substring(equals + 1));
+        }
+
+        String frequency = parts.getOrDefault("FREQ", "");
+        if (!frequency.equals("DAILY") && !frequency.equals("WEEKLY"))
+            throw new IllegalArgumentException("Unsupported recurrence " + rule);
+        int interval = Integer.parseInt(parts.getOrDefault("INTERVAL", "1"));
+        if (interval < 1) throw new IllegalArgumentException("Bad INTERVAL in " + rule);
+        int count = parts.containsKey("COUNT") ? Integer.parseInt(parts.get("COUNT")) : MAX_OCCURRENCES;
+
+        TimetableCalendar zone = calendarOf(start);
+        long first = timestamp(start);
+        long firstDay = zone.epochDay(first);
+        long timeOfDay = localMillis(start.value()) - firstDay * TimetableCalendar.MILLIS_PER_DAY;
+        long until = parts.containsKey("UNTIL")
+                ? timestamp(new Property("UNTIL", Map.of(), parts.get("UNTIL")))
+                : zone.startOfDay(firstDay + OPEN_RECURRENCE_DAYS);
+
+//        weekdays of occurrences in ISO numbering, for DAILY or WEEKLY without BYDAY only the weekday of the first one
+        int[] weekdays = frequency.equals("WEEKLY") && parts.containsKey("BYDAY")
+                ? Arrays.stream(parts.get("BYDAY").split(",")).mapToInt(IcsParser::weekday).sorted().distinct().toArray()
+                : new int[] { TimetableCalendar.dayOfWeekOfEpochDay(firstDay) };
+
+        List<Long> result = new ArrayList<>();
+        long period = frequency.equals("DAILY") ? interval : 7L * interval;
+        long base = frequency.equals("DAILY") ? firstDay : TimetableCalendar.mondayOf(firstDay);
+        while (result.size() < Math.min(count, MAX_OCCURRENCES)) {
+            for (int weekday : weekdays) {
+                long day = frequency.equals("DAILY") ? base : base + weekday - 1;
+                if (day < firstDay) continue;
+                long lesson = zone.timestampOf(day, timeOfDay);
+                if (lesson > until || result.size() == Math.min(count, MAX_OCCURRENCES)) return result;
+                result.add(lesson);
+            }
+            base += period;
+        }
+        return result;
+    }
+
+    private static int weekday(String byDay) {
+        String day = byDay.trim();
+        return switch (day.substring(Math.max(0, day.length() - 2))) {
+            case "MO" -> DayOfWeek.MONDAY.getValue();
+            case "TU" -> DayOfWeek.TUESDAY.getValue();
+            case "WE" -> DayOfWeek.WEDNESDAY.getValue();
+            case "TH" -> DayOfWeek.THURSDAY.getValue();
+            case "FR" -> DayOfWeek.FRIDAY.getValue();
+            case "SA" -> DayOfWeek.SATURDAY.getValue();
+            case "SU" -> DayOfWeek.SUNDAY.getValue();
+            default -> throw new IllegalArgumentException("Bad BYDAY " + byDay);
+        };
+    }
+
+    /** Converts DATE or DATE-TIME value into millisecond timestamp */
+    private long timestamp(Property property) {
+        String value = property.value();
+        TimetableCalendar zone = calendarOf(property);
+        long local = localMillis(value);
+        if (value.endsWith("Z")) return local;
+        return zone.timestampOf(Math.floorDiv(local, TimetableCalendar.MILLIS_PER_DAY), Math.floorMod(local, TimetableCalendar.MILLIS_PER_DAY));
+    }
+
+    /** Parses basic ISO value "yyyyMMdd" or "yyyyMMdd'T'HHmmss" into milliseconds of local time since epoch */
+    private static long localMillis(String value) {
+        if (value.length() < 8) throw new DateTimeException("Bad date " + value);
+        long day = java.time.LocalDate.of(
+                Integer.parseInt(value.substring(0, 4)), Integer.parseInt(value.substring(4, 6)), Integer.parseInt(value.substring(6, 8))
+        ).toEpochDay();
+        long millis = day * TimetableCalendar.MILLIS_PER_DAY;
+        if (value.length() >= 15 && value.charAt(8) == 'T') {
+            int hours = Integer.parseInt(value.substring(9, 11));
+            int minutes = Integer.parseInt(value.substring(11, 13));
+            int seconds = Integer.parseInt(value.substring(13, 15));
+            millis += ((hours * 60L + minutes) * 60 + seconds) * 1000;
+        }
+        return millis;
+    }
+
+    /** Returns calendar of TZID parameter or of the timetable */
+    private TimetableCalendar calendarOf(Property property) {
+        String zone = property.parameters().get("TZID");
+        if (zone == null) return calendar;
+        return zones.computeIfAbsent(zone, z -> new TimetableCalendar(ZoneId.of(z)));
+    }
+
+    private static Property required(Component component, String name) {
+        Property property = component.properties.get(name);
+        if (property == null) throw new IllegalArgumentException(name + " is missing");
+        return property;
+    }
+
+    /** Returns unescaped TEXT value of required property */
+    private static String text(Component component, String name) {
+        String value = required(component, name).value();
+        StringBuilder text = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '\\' && i + 1 < value.length()) {
+                char escaped = value.charAt(++i);
+                text.append(escaped == 'n' || escaped == 'N' ? '\n' : escaped);
+            } else {
+                text.append(c);
+            }
+        }
+        String result = text.toString().trim();
+        if (result.isEmpty()) throw new IllegalArgumentException(name + " is empty");
+        return result;
+    }
+
+    /** Splits property line, returns null for malformed line */
+    private static Property parseProperty(String line) {
+        int colon = -1;
+        boolean quoted = false;
+        for (int i = 0; i < line.length() && colon < 0; i++) {
+            char c = line.charAt(i);
+            if (c == '"') quoted = !quoted;
+            else if (c == ':' && !quoted) colon = i;
+        }
+        if (colon <= 0) return null;
+
+        String[] head = line.substring(0, colon).split(";");
+        Map<String, String> parameters = new HashMap<>();
+        for (int i = 1; i < head.length; i++) {
+            int equals = head[i].indexOf('=');
+            if (equals > 0)
+                parameters.put(head[i].substring(0, equals).toUpperCase(Locale.ROOT), head[i].substring(equals + 1).replace("\"", ""));
+        }
+        return new Property(head[0].toUpperCase(Locale.ROOT), parameters, line.substring(colon + 1));
+    }
+}
@@ -0,0 +1,86 @@
+package msu.timetable.importer;
+
+import java.util.*;
+
+/** Records parsed from one or several chunks. Not thread-safe */
+final class ImportBatch {
+
+    /** Maximal number of errors kept for report, others are only counted */
+    static final int MAX_REPORTED_ERRORS = 1000;
+
+    /**
+     * Parsed homework
+     * @param line - number of line in input, where homework starts
+     * @param subject - name of subject
+     * @param description - description of homework
+     * @param dueDate - millisecond timestamp of due date
+     */
+    record HomeworkRow(long line, String subject, String description, long dueDate) {}
+
+    /** Growable array of lesson timestamps */
+    static final class Timestamps {
+        /** Number of line in input, where the first lesson starts */
+        final long line;
+        long[] values = new long[8];
+        int size;
+
+        Timestamps(long line) {
+            this.line = line;
+        }
+
+        void add(long value) {
+            if (size == values.length) values = Arrays.copyOf(values, size * 2);
+            values[size++] = value;
+        }
+
+        void addAll(Timestamps other) {
+            if (size + other.size > values.length)
+                values = Arrays.copyOf(values, Math.max(size + other.size, size * 2));
+            System.arraycopy(other.values, 0, values, size, other.size);
+            size += other.size;
+        }
+
+        List<Date> toDates() {
+            List<Date> dates = new ArrayList<>(size);
+            for (int i = 0; i < size; i++)
+                dates.add(new Date(values[i]));
+            return dates;
+        }
+    }
+
+    /** Lesson timestamps by subject name, in order of input */
+    final Map<String, Timestamps> lessons = new LinkedHashMap<>();
+    final List<HomeworkRow> homeworks = new ArrayList<>();
+    final List<ImportReport.RowError> errors = new ArrayList<>();
+    long records = 0;
+    long lessonCount = 0;
+    long errorCount = 0;
+
+    void addLesson(long line, String subject, long date) {
+        lessons.computeIfAbsent(subject, s -> new Timestamps(line)).add(date);
+        lessonCount++;
+    }
+
+    void addHomework(long line, String subject, String description, long dueDate) {
+        homeworks.add(new HomeworkRow(line, subject, description, dueDate));
+    }
+
+    void addError(long line, String message) {
+        if (errors.size() < MAX_REPORTED_ERRORS)
+            errors.add(new ImportReport.RowError(line, message));
+        errorCount++;
+    }
+
+    /** Appends records of batch parsed from later part of input */
+    void merge(ImportBatch later) {
+        later.lessons.forEach((subject, dates) -> lessons.computeIfAbsent(subject, s -> new Timestamps(dates.line)).addAll(dates));
+        homeworks.addAll(later.homeworks);
+        for (ImportReport.RowError error : later.errors) {
+            if (errors.size() == MAX_REPORTED_ERRORS) break;
+            errors.add(error);
+        }
+        records += later.records;
+        lessonCount += later.lessonCount;
+        errorCount += later.errorCount;
+    }
+}
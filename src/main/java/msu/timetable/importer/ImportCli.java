@@ -0,0 +1,67 @@
+package msu.timetable.importer;
+
+import msu.timetable.models.Homeworks;
+import msu.timetable.models.Subjects;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Command line import: "import FILE...". Format of each file is chosen by its extension.
+ * Prints progress every second and report of each file, saves and closes stores once all files are imported
+ */
+public final class ImportCli {
+
+    private ImportCli() {}
+
+    /**
+     * @param files - paths to .csv and .ics files
+     * @return process exit code
+     */
+    public static int run(String... files) {
+        if (files.length == 0) {
+            System.err.println("Usage: import FILE.csv|FILE.ics...");
+            return 2;
+        }
+
+        BulkImporter importer = BulkImporter.create();
+        ScheduledExecutorService printer = Executors.newSingleThreadScheduledExecutor();
+        printer.scheduleAtFixedRate(() -> System.err.println(importer.getProgress()), 1, 1, TimeUnit.SECONDS);
+
+        int exitCode = 0;
+        try {
+            for (String file : files) {
+                ImportFormat format = ImportFormat.of(file);
+                if (format == null) {
+                    System.err.println(file + ": unknown format, expected .csv or .ics");
+                    exitCode = 1;
+                    continue;
+                }
+
+                try (InputStream input = Files.newInputStream(Path.of(file))) {
+                    ImportReport report = importer.run(input, format);
+                    System.out.printf("%s: %d records, %d subjects, %d lessons, %d homeworks, %d errors in %d ms%n",
+                            file, report.records(), report.subjects(), report.lessons(), report.homeworks(),
+                            report.errorCount(), report.millis());
+                    for (ImportReport.RowError error : report.errors())
+                        System.out.printf("%s:%d: %s%n", file, error.line(), error.message());
+                    if (report.errorCount() > 0) exitCode = 1;
+                } catch (IOException | IllegalArgumentException e) {
+                    System.err.println(file + ": " + e.getMessage());
+                    exitCode = 1;
+                }
+            }
+        } finally {
+            printer.shutdownNow();
+        }
+
+        Subjects.getInstance().close();
+        Homeworks.getInstance().close();
+        return exitCode;
+    }
+}
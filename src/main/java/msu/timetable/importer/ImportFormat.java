@@ -0,0 +1,35 @@
+package msu.timetable.importer;
+
+import org.springframework.lang.Nullable;
+
+import java.util.Locale;
+
+/** Formats of timetable files accepted by BulkImporter */
+public enum ImportFormat {
+
+    /**
+     * Comma separated values with header. Columns "subject" and "date" are required.
+     * Row with non-empty "homework" (or "description") column is a homework due at date, otherwise it is a lesson.
+     * Dates are millisecond timestamps or ISO date-times, which are local to timetable unless offset is given.
+     * Quoted values may contain commas and doubled quotes, but not line breaks
+     */
+    CSV,
+
+    /**
+     * iCalendar. VEVENT is a lesson of subject named by SUMMARY, DAILY and WEEKLY recurrences are expanded.
+     * VTODO is a homework described by SUMMARY, due at DUE, of subject named by CATEGORIES
+     */
+    ICS;
+
+    /** Returns format by its name or by extension of file name, or null if it isn't known */
+    @Nullable
+    public static ImportFormat of(@Nullable String name) {
+        if (name == null) return null;
+        String extension = name.substring(name.lastIndexOf('.') + 1).toUpperCase(Locale.ROOT);
+        return switch (extension) {
+            case "CSV" -> CSV;
+            case "ICS", "ICAL", "ICALENDAR" -> ICS;
+            default -> null;
+        };
+    }
+}
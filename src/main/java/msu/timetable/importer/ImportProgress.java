@@ -0,0 +1,10 @@
+package msu.timetable.importer;
+
+/**
+ * State of running import
+ * @param phase - "parsing", "subjects", "homeworks" or "done"
+ * @param records - number of parsed records
+ * @param committed - number of committed subjects and homeworks
+ * @param errors - number of rejected records so far
+ */
+public record ImportProgress(String phase, long records, long committed, long errors) {}
@@ -0,0 +1,24 @@
+package msu.timetable.importer;
+
+import java.util.List;
+
+/**
+ * Result of finished import
+ * @param records - number of parsed rows or calendar components
+ * @param subjects - number of subjects, which were created or got new lessons
+ * @param lessons - number of parsed lessons, including those already present in schedules
+ * @param homeworks - number of created homeworks
+ * @param errorCount - number of rejected records
+ * @param errors - first rejected records
+ * @param millis - duration of import
+ */
+public record ImportReport(long records, int subjects, long lessons, int homeworks,
+                           long errorCount, List<RowError> errors, long millis) {
+
+    /**
+     * Rejected record
+     * @param line - number of line in input, starting from 1
+     * @param message - reason of rejection
+     */
+    public record RowError(long line, String message) {}
+}
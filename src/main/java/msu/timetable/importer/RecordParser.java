@@ -0,0 +1,23 @@
+package msu.timetable.importer;
+
+/** Parser of one import format. Called concurrently for different chunks, so it must not keep state between calls */
+interface RecordParser {
+
+    /**
+     * Part of input, which starts and ends at record boundaries
+     * @param lines - logical lines
+     * @param numbers - number of the first physical line of each logical line
+     */
+    record Chunk(String[] lines, long[] numbers) {}
+
+    /** Whether a chunk may be cut after given line */
+    boolean endsRecord(String line);
+
+    /** Whether physical line continues the previous one */
+    default boolean continuesLine(String line) {
+        return false;
+    }
+
+    /** Parses records of chunk into batch */
+    void parse(Chunk chunk, ImportBatch batch);
+}
@@ -0,0 +1,19 @@
+package msu.timetable.models;
+
+import org.springframework.lang.Nullable;
+
+/**
+ * Listener of changes made to entities of Subjects or Homeworks.
+ * Called synchronously by the thread, which made the change, after the change is stored
+ * @param <T> - type of entity
+ */
+@FunctionalInterface
+public interface ChangeListener<T> {
+
+    /**
+     * Called after entity was created, updated or removed
+     * @param before - entity before change, null if it was created
+     * @param after - entity after change, null if it was removed
+     */
+    void changed(@Nullable T before, @Nullable T after);
+}
@@ -0,0 +1,22 @@
+package msu.timetable.models;
+
+import java.util.Comparator;
+
+/**
+ * Free window in the timetable, i.e. a gap between lessons which is long enough for requested activity
+ * @param start - millisecond timestamp of window beginning
+ * @param end - millisecond timestamp of window ending (exclusive)
+ */
+public record FreeSlot(long start, long end) {
+
+    /** Orders slots by their beginning, earliest first */
+    public static final Comparator<FreeSlot> EARLIEST_FIRST = Comparator.comparingLong(FreeSlot::start);
+
+    /** Orders slots by their length, so that the tightest fitting window comes first */
+    public static final Comparator<FreeSlot> BEST_FIT = Comparator.comparingLong(FreeSlot::length).thenComparing(EARLIEST_FIRST);
+
+    /** Length of the window in milliseconds */
+    public long length() {
+        return end - start;
+    }
+}
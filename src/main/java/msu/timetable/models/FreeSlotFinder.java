@@ -0,0 +1,220 @@
+package msu.timetable.models;
+
+import org.springframework.lang.NonNull;
+
+import java.time.DayOfWeek;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Query engine, which looks for free windows in the timetable of several subjects.
+ * Lessons of all requested subjects are merged into a sorted list of busy intervals,
+ * which is then subtracted from daily working hours of each day in the requested range.
+ */
+public class FreeSlotFinder {
+
+    /** Default length of one lesson (one MSU "pair") */
+    public static final long DEFAULT_LESSON_LENGTH = TimeUnit.MINUTES.toMillis(90);
+
+    /** Maximal number of days in searched range */
+    public static final int MAX_DAYS = 366;
+
+    /** Maximal number of returned windows */
+    public static final int MAX_LIMIT = 1000;
+
+    /** Amount of work (days multiplied by busy intervals) after which the search is split between fork-join workers */
+    private static final long PARALLEL_THRESHOLD = 1 << 16;
+
+    /** Number of days processed by one fork-join leaf task */
+    private static final int DAYS_PER_TASK = 16;
+
+    /**
+     * Parameters of free slot search
+     * @param from - millisecond timestamp, from which windows are searched
+     * @param to - millisecond timestamp, until which windows are searched (exclusive)
+     * @param duration - minimal length of window in milliseconds
+     * @param dayStart - minute of the day, at which working hours begin
+     * @param dayEnd - minute of the day, at which working hours end
+     * @param weekdaysOnly - whether saturdays and sundays must be skipped
+     * @param limit - maximal number of returned windows
+     * @param ranking - order of returned windows
+     */
+    public record Query(long from, long to, long duration, int dayStart, int dayEnd,
+                        boolean weekdaysOnly, int limit, Comparator<FreeSlot> ranking) {}
+
+    /** Length of one lesson, used to turn lesson dates into busy intervals */
+    private final long lessonLength;
+
+    /** Calendar, in which days and working hours are measured */
+    private final TimetableCalendar calendar;
+
+    /** Pool used for large requests */
+    private final ForkJoinPool pool;
+
+    /** Default constructor. Uses 90-minute lessons, timetable's calendar and common fork-join pool */
+    public FreeSlotFinder() {
+        this(DEFAULT_LESSON_LENGTH, TimetableCalendar.getDefault(), ForkJoinPool.commonPool());
+    }
+
+    public FreeSlotFinder(long lessonLength, @NonNull TimetableCalendar calendar, @NonNull ForkJoinPool pool) {
+        this.lessonLength = lessonLength;
+        this.calendar = calendar;
+        this.pool = pool;
+    }
+
+    /** Returns length of one lesson in milliseconds */
+    public long getLessonLength() {
+        return lessonLength;
+    }
+
+    /**
+     * Finds free windows, during which none of given subjects has lessons
+     * @param subjects - subjects, which lessons are considered busy time
+     * @param query - search parameters
+     * @return list of at most query.limit() windows ordered by query.ranking()
+     * @throws IllegalArgumentException if range ends more than MAX_DAYS days after the day it begins
+     */
+    public List<FreeSlot> find(@NonNull Collection<Subject> subjects, @NonNull Query query) {
+        if (query.to() <= query.from() || query.dayEnd() <= query.dayStart() || query.limit() <= 0)
+            return List.of();
+
+        long first = calendar.epochDay(query.from());
+        long last = calendar.epochDay(query.to());
+        if (last - first > MAX_DAYS)
+            throw new IllegalArgumentException("Range is longer than %d days".formatted(MAX_DAYS));
+        int days = (int) (last - first) + 1;
+
+        long[][] busy = busyIntervals(subjects, query.from(), query.to());
+
+        SlotTask task = new SlotTask(busy[0], busy[1], query, first, 0, days);
+        List<FreeSlot> slots;
+        if (query.ranking() == FreeSlot.EARLIEST_FIRST)
+            slots = task.computeEarliest();
+        else if ((long) days * (busy[0].length + 1) > PARALLEL_THRESHOLD)
+            slots = pool.invoke(task);
+        else
+            slots = task.compute();
+
+        slots.sort(query.ranking());
+        return slots.size() > query.limit() ? new ArrayList<>(slots.subList(0, query.limit())) : slots;
+    }
+
+    /**
+     * Merges lessons of given subjects into disjoint busy intervals
+     * @return two arrays of equal length: sorted interval beginnings and their respective endings
+     */
+    private long[][] busyIntervals(Collection<Subject> subjects, long from, long to) {
+        int total = 0;
+        for (Subject s : subjects) total += s.getSchedule().size();
+
+        long[] lessons = new long[total];
+        int count = 0;
+        for (Subject s : subjects) {
+            for (Date lesson : s.getSchedule()) {
+                long start = lesson.getTime();
+//                lessons, which started before range, may still overlap with it
+                if (start + lessonLength > from && start < to)
+                    lessons[count++] = start;
+            }
+        }
+        Arrays.parallelSort(lessons, 0, count);
+
+        long[] starts = new long[count];
+        long[] ends = new long[count];
+        int merged = 0;
+        for (int i = 0; i < count; i++) {
+            long start = lessons[i];
+            long end = start + lessonLength;
+            if (merged > 0 && start <= ends[merged - 1]) {
+                ends[merged - 1] = Math.max(ends[merged - 1], end);
+            } else {
+                starts[merged] = start;
+                ends[merged] = end;
+                merged++;
+            }
+        }
+        return new long[][] { Arrays.copyOf(starts, merged), Arrays.copyOf(ends, merged) };
+    }
+
+    /** Fork-join task, which computes free windows for a range of days */
+    private class SlotTask extends RecursiveTask<List<FreeSlot>> {
+
+        private final long[] starts;
+        private final long[] ends;
+        private final Query query;
+        /** Epoch day, from which days of the task are counted */
+        private final long first;
+        private final int fromDay;
+        private final int toDay;
+
+        SlotTask(long[] starts, long[] ends, Query query, long first, int fromDay, int toDay) {
+            this.starts = starts;
+            this.ends = ends;
+            this.query = query;
+            this.first = first;
+            this.fromDay = fromDay;
+            this.toDay = toDay;
+        }
+
+        @Override
+        protected List<FreeSlot> compute() {
+            if (toDay - fromDay > DAYS_PER_TASK && inForkJoinPool()) {
+                int middle = (fromDay + toDay) >>> 1;
+                SlotTask left = new SlotTask(starts, ends, query, first, fromDay, middle);
+                SlotTask right = new SlotTask(starts, ends, query, first, middle, toDay);
+                left.fork();
+                List<FreeSlot> result = right.compute();
+                result.addAll(0, left.join());
+                return result;
+            }
+
+            List<FreeSlot> result = new ArrayList<>();
+            for (int day = fromDay; day < toDay; day++)
+                collectDay(first + day, result);
+            return result;
+        }
+
+        /** Collects windows day by day in chronological order, until there are enough of them */
+        List<FreeSlot> computeEarliest() {
+            List<FreeSlot> result = new ArrayList<>();
+            for (int day = fromDay; day < toDay && result.size() < query.limit(); day++)
+                collectDay(first + day, result);
+            return result;
+        }
+
+        /** Subtracts busy intervals from working hours of given day */
+        private void collectDay(long epochDay, List<FreeSlot> output) {
+            if (query.weekdaysOnly() && TimetableCalendar.dayOfWeekOfEpochDay(epochDay) >= DayOfWeek.SATURDAY.getValue())
+                return;
+
+            long midnight = calendar.startOfDay(epochDay);
+            long dayStart = midnight + query.dayStart() * TimetableCalendar.MILLIS_PER_MINUTE;
+            long dayEnd = midnight + query.dayEnd() * TimetableCalendar.MILLIS_PER_MINUTE;
+            long cursor = Math.max(dayStart, query.from());
+            long limit = Math.min(dayEnd, query.to());
+
+//            first busy interval, which ends after cursor
+            int i = firstEndingAfter(cursor);
+            while (cursor < limit) {
+                long gapEnd = i < starts.length ? Math.min(starts[i], limit) : limit;
+                if (gapEnd - cursor >= query.duration())
+                    output.add(new FreeSlot(cursor, gapEnd));
+                if (i >= starts.length) break;
+                cursor = Math.max(cursor, ends[i++]);
+            }
+        }
+
+        /** Binary search of the first interval, which ends strictly after given moment */
+        private int firstEndingAfter(long moment) {
+            int low = 0, high = ends.length;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (ends[middle] <= moment) low = middle + 1;
+                else high = middle;
+            }
+            return low;
+        }
+    }
+}
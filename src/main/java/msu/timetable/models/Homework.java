@@ -1,13 +1,28 @@
 package msu.timetable.models;
 
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import msu.timetable.storage.StoredEntity;
 import org.springframework.lang.NonNull;
 
 import java.util.Date;
 
-/** POJO Homework class */
-public class Homework {
+/**
+ * POJO Homework class.
+ * Homeworks acquired from Homeworks are shared between threads and must not be modified, modify their copies instead
+ */
+public class Homework implements StoredEntity {
+
+    /** Default constructor */
+    public Homework() {}
+
+    /** Copy constructor */
+    public Homework(Homework other) {
+        this.id = other.id;
+        this.version = other.version;
+        this.subject = other.subject;
+        this.description = other.description;
+        this.dueDate = other.dueDate;
+        this.extras = other.extras;
+    }
 
     /** Homework unique identifier */
     private short id;
@@ -22,6 +37,19 @@ public class Homework {
         this.id = id;
     }
 
+    /** Number of updates applied to homework */
+    private long version = 0;
+
+    /** Version getter */
+    public long getVersion() {
+        return version;
+    }
+
+    /** Version setter */
+    public void setVersion(long version) {
+        this.version = version;
+    }
+
     /**
      * Identifier of subject, to which Homework belongs
      * Cannot use Subject itself, since then saving object into JSON may result in infinite loop
@@ -66,15 +94,15 @@ public class Homework {
     }
 
     /** Extra data for homework. May contain web links, paths to images or anything else */
-    private JsonNode extras = JsonNodeFactory.instance.missingNode();
+    private RawJson extras = null;
 
     /** Extra data getter */
-    public JsonNode getExtras() {
+    public RawJson getExtras() {
         return extras;
     }
 
     /** Extra data setter */
-    public void setExtras(JsonNode extras) {
+    public void setExtras(RawJson extras) {
         this.extras = extras;
     }
 
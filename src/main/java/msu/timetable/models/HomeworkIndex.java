@@ -0,0 +1,399 @@
+package msu.timetable.models;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonStreamContext;
+import com.fasterxml.jackson.core.JsonToken;
+import org.springframework.lang.NonNull;
+import org.springframework.lang.Nullable;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.stream.IntStream;
+import java.util.logging.Logger;
+
+/**
+ * In-memory inverted index over homework descriptions and text fields of their extras.
+ * Index is updated incrementally by Homeworks and ranks results with BM25.
+ * Homeworks keep it in sync with the store by sync(), which reads the current state of homework under the index lock.
+ * Last word of a query is matched as a prefix, so that search works while user is typing.
+ */
+public class HomeworkIndex {
+
+    private static final Logger logger = Logger.getLogger("HomeworkIndex");
+
+    /** Fields of extras, which string values are indexed along with description */
+    public static final Set<String> DEFAULT_EXTRAS_FIELDS = Set.of("title", "text", "notes", "comment", "tags");
+
+    /** Maximal number of dictionary terms, to which query prefix is expanded */
+    private static final int MAX_PREFIX_EXPANSION = 128;
+
+    /** Words of a query after this one are ignored */
+    private static final int MAX_QUERY_WORDS = 32;
+
+    /** Tokens longer than this are truncated */
+    private static final int MAX_TOKEN_LENGTH = 64;
+
+    /** BM25 parameters */
+    private static final float K1 = 1.2f, B = 0.75f;
+
+    /** Number of distinct 16-bit identifiers */
+    private static final int ID_SPACE = 1 << 16;
+
+    /** Maximal number of hits returned by search */
+    public static final int MAX_LIMIT = 200;
+
+    /** Dictionary of terms, sorted to allow prefix lookups */
+    private final TreeMap<String, Postings> dictionary = new TreeMap<>();
+
+    /** Distinct terms of each indexed homework by its unsigned id, needed for removal */
+    private final String[][] documentTerms = new String[ID_SPACE][];
+
+    /** Number of words in each indexed homework, needed for ranking */
+    private final int[] documentLengths = new int[ID_SPACE];
+
+    /** Version of each indexed homework, so that concurrent put() can't replace newer text with older one */
+    private final long[] documentVersions = new long[ID_SPACE];
+
+    /** Number of indexed homeworks */
+    private int documentCount = 0;
+
+    /** Sum of lengths of all documents */
+    private long totalLength = 0;
+
+    /** Highest unsigned id of indexed homework or -1, bounds the size of search scratch arrays */
+    private int highestDoc = -1;
+
+    /** Per-document state of a search, indexed by unsigned homework id. Reused by each thread */
+    private static final class Scratch {
+        float[] scores = new float[0];
+        /** Number of query words matched by document */
+        byte[] matched = new byte[0];
+        /** Last query word, which matched document, or -1 */
+        short[] lastWord = new short[0];
+        /** Documents matched by the first word, only their entries are changed */
+        int[] touched = new int[0];
+        int touchedCount;
+
+        void ensureCapacity(int documents) {
+            if (scores.length >= documents) return;
+            scores = new float[documents];
+            matched = new byte[documents];
+            lastWord = new short[documents];
+            Arrays.fill(lastWord, (short) -1);
+            touched = new int[documents];
+        }
+
+        /** Restores initial state of touched entries */
+        void clear() {
+            for (int i = 0; i < touchedCount; i++) {
+                int doc = touched[i];
+                scores[doc] = 0;
+                matched[doc] = 0;
+                lastWord[doc] = -1;
+            }
+            touchedCount = 0;
+        }
+    }
+
+    private final ThreadLocal<Scratch> scratch = ThreadLocal.withInitial(Scratch::new);
+
+    private final Set<String> extrasFields;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * Search hit
+     * @param homework - id of found homework
+     * @param score - relevance of homework, higher is better
+     */
+    public record Hit(short homework, float score) {}
+
+    public HomeworkIndex() {
+        this(DEFAULT_EXTRAS_FIELDS);
+    }
+
+    public HomeworkIndex(@NonNull Set<String> extrasFields) {
+        this.extrasFields = extrasFields;
+    }
+
+    /**
+     * Tokenized homework ready to be indexed
+     * @param homework - indexed homework
+     * @param frequencies - number of occurrences of each term
+     * @param length - total number of words
+     */
+    private record Document(Homework homework, Map<String, Integer> frequencies, int length) {}
+
+    /** Adds homework to the index or reindexes it, if it is already present */
+    public void put(@NonNull Homework homework) {
+        Document document = analyze(homework);
+        lock.writeLock().lock();
+        try {
+            putLocked(document);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /** Adds or reindexes many homeworks. Texts are tokenized in parallel, then index is locked once */
+    public void putAll(@NonNull Collection<Homework> homeworks) {
+        List<Document> documents = homeworks.parallelStream().map(this::analyze).toList();
+        lock.writeLock().lock();
+        try {
+            documents.forEach(this::putLocked);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private Document analyze(Homework homework) {
+        Map<String, Integer> frequencies = new HashMap<>();
+        int length = tokenize(homework.getDescription(), frequencies);
+        length += tokenizeExtras(homework.getExtras(), frequencies);
+        return new Document(homework, frequencies, length);
+    }
+
+    private void putLocked(Document document) {
+        Homework homework = document.homework();
+        int doc = Short.toUnsignedInt(homework.getId());
+        if (documentTerms[doc] != null && documentVersions[doc] > homework.getVersion()) return;
+        indexLocked(homework.getId(), document, homework.getVersion());
+    }
+
+    /** Replaces entry of homework with given document regardless of indexed version */
+    private void indexLocked(short homework, Document document, long version) {
+        int doc = Short.toUnsignedInt(homework);
+        Map<String, Integer> frequencies = document.frequencies();
+        int length = document.length();
+        removeLocked(homework);
+        frequencies.forEach((term, frequency) -> dictionary.computeIfAbsent(term, t -> new Postings()).put(doc, frequency));
+        documentTerms[doc] = frequencies.keySet().toArray(String[]::new);
+        documentLengths[doc] = length;
+        documentVersions[doc] = version;
+        documentCount++;
+        totalLength += length;
+        highestDoc = Math.max(highestDoc, doc);
+    }
+
+    /**
+     * Brings entry of homework to its current state. The state is read again under the index lock,
+     * so the last synchronization after concurrent changes always indexes the latest state,
+     * and removed homework can't be put back by an update, which raced with its removal.
+     * Text is tokenized before locking and once more under the lock only if it changed meanwhile
+     * @param homework - id of homework
+     * @param current - source of current state of homework, returns null if it was removed
+     */
+    public void sync(short homework, @NonNull Function<Short, Homework> current) {
+        Homework state = current.apply(homework);
+        Document document = state != null ? analyze(state) : null;
+        lock.writeLock().lock();
+        try {
+            syncLocked(homework, document, current);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /** Synchronizes many homeworks as sync(). Texts are tokenized in parallel, then index is locked once */
+    public void syncAll(@NonNull short[] homeworks, @NonNull Function<Short, Homework> current) {
+        List<Document> documents = IntStream.range(0, homeworks.length).parallel()
+                .mapToObj(i -> {
+                    Homework state = current.apply(homeworks[i]);
+                    return state != null ? analyze(state) : null;
+                })
+                .toList();
+        lock.writeLock().lock();
+        try {
+            for (int i = 0; i < homeworks.length; i++)
+                syncLocked(homeworks[i], documents.get(i), current);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /** @param document - tokenized state of homework read before locking, null if it was absent */
+    private void syncLocked(short homework, @Nullable Document document, Function<Short, Homework> current) {
+        Homework latest = current.apply(homework);
+        if (latest == null) {
+            removeLocked(homework);
+            return;
+        }
+        if (document == null || !sameText(document.homework(), latest))
+            document = analyze(latest);
+        indexLocked(homework, document, latest.getVersion());
+    }
+
+    /** Whether homeworks have the same indexed text */
+    private static boolean sameText(Homework a, Homework b) {
+        return Objects.equals(a.getDescription(), b.getDescription()) && Objects.equals(a.getExtras(), b.getExtras());
+    }
+
+    /** Removes homework with given id from the index */
+    public void remove(short homework) {
+        lock.writeLock().lock();
+        try {
+            removeLocked(homework);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void removeLocked(short homework) {
+        int doc = Short.toUnsignedInt(homework);
+        String[] terms = documentTerms[doc];
+        if (terms == null) return;
+
+        for (String term : terms) {
+            Postings postings = dictionary.get(term);
+            if (postings != null && postings.remove(doc) && postings.size() == 0)
+                dictionary.remove(term);
+        }
+        documentTerms[doc] = null;
+        documentCount--;
+        totalLength -= documentLengths[doc];
+        while (highestDoc >= 0 && documentTerms[highestDoc] == null)
+            highestDoc--;
+    }
+
+    /**
+     * Searches homework, which contains all words of the query
+     * @param query - words to search, last one may be incomplete
+     * @param filter - additional condition on found homework ids, may be null
+     * @param limit - maximal number of hits, at most MAX_LIMIT
+     * @return hits ordered by descending score
+     */
+    public List<Hit> search(@NonNull String query, @Nullable Predicate<Short> filter, int limit) {
+        List<String> words = new ArrayList<>();
+        tokenize(query, words);
+        if (words.isEmpty() || limit <= 0) return List.of();
+        if (words.size() > MAX_QUERY_WORDS)
+            words = words.subList(0, MAX_QUERY_WORDS);
+        int maxHits = Math.min(limit, MAX_LIMIT);
+
+        Scratch state = scratch.get();
+        lock.readLock().lock();
+        try {
+            if (documentCount == 0) return List.of();
+            float averageLength = Math.max(1f, (float) totalLength / documentCount);
+
+            state.ensureCapacity(highestDoc + 1);
+            float[] scores = state.scores;
+            byte[] matched = state.matched;
+            short[] lastWord = state.lastWord;
+
+            for (int w = 0; w < words.size(); w++) {
+                String word = words.get(w);
+                Collection<Map.Entry<String, Postings>> terms = w == words.size() - 1
+                        ? expandPrefix(word)
+                        : exact(word);
+                if (terms.isEmpty()) return List.of();
+
+                short wordIndex = (short) w;
+                for (Map.Entry<String, Postings> term : terms) {
+                    Postings postings = term.getValue();
+                    float idf = (float) Math.log(1 + (documentCount - postings.size() + 0.5) / (postings.size() + 0.5));
+                    postings.forEach((doc, frequency) -> {
+//                        document must have matched all previous words, possibly through another expansion of this one
+                        if (lastWord[doc] != wordIndex) {
+                            if (matched[doc] != wordIndex) return;
+                            if (wordIndex == 0) state.touched[state.touchedCount++] = doc;
+                            lastWord[doc] = wordIndex;
+                            matched[doc]++;
+                        }
+                        float length = documentLengths[doc];
+                        scores[doc] += idf * frequency * (K1 + 1) / (frequency + K1 * (1 - B + B * length / averageLength));
+                    });
+                }
+            }
+
+            PriorityQueue<Hit> best = new PriorityQueue<>(Comparator.comparingDouble(Hit::score));
+            byte required = (byte) words.size();
+            for (int i = 0; i < state.touchedCount; i++) {
+                int doc = state.touched[i];
+                if (matched[doc] != required) continue;
+                short id = (short) doc;
+                if (filter != null && !filter.test(id)) continue;
+                best.add(new Hit(id, scores[doc]));
+                if (best.size() > maxHits) best.poll();
+            }
+
+            List<Hit> result = new ArrayList<>(best);
+            result.sort(Comparator.comparingDouble(Hit::score).reversed());
+            return result;
+        } finally {
+            state.clear();
+            lock.readLock().unlock();
+        }
+    }
+
+    /** Returns dictionary entry for exact word or nothing */
+    private Collection<Map.Entry<String, Postings>> exact(String word) {
+        Postings postings = dictionary.get(word);
+        return postings == null ? List.of() : List.of(Map.entry(word, postings));
+    }
+
+    /** Returns dictionary entries starting with given prefix */
+    private Collection<Map.Entry<String, Postings>> expandPrefix(String prefix) {
+        List<Map.Entry<String, Postings>> result = new ArrayList<>();
+        for (Map.Entry<String, Postings> entry : dictionary.tailMap(prefix, true).entrySet()) {
+            if (!entry.getKey().startsWith(prefix) || result.size() == MAX_PREFIX_EXPANSION) break;
+            result.add(entry);
+        }
+        return result;
+    }
+
+    /** Splits text into case-folded words and counts them. Returns number of words */
+    private static int tokenize(@Nullable String text, Map<String, Integer> frequencies) {
+        List<String> words = new ArrayList<>();
+        tokenize(text, words);
+        words.forEach(word -> frequencies.merge(word, 1, Integer::sum));
+        return words.size();
+    }
+
+    /** Splits text into case-folded words consisting of letters and digits */
+    static void tokenize(@Nullable String text, List<String> output) {
+        if (text == null) return;
+
+        StringBuilder word = new StringBuilder();
+        for (int i = 0; i < text.length(); ) {
+            int codePoint = text.codePointAt(i);
+            i += Character.charCount(codePoint);
+
+            if (Character.isLetterOrDigit(codePoint)) {
+                if (word.length() < MAX_TOKEN_LENGTH)
+                    word.appendCodePoint(Character.toLowerCase(codePoint));
+            } else if (word.length() > 0) {
+                output.add(word.toString());
+                word.setLength(0);
+            }
+        }
+        if (word.length() > 0)
+            output.add(word.toString());
+    }
+
+    /** Tokenizes string values of selected extras fields, including values of arrays in those fields */
+    private int tokenizeExtras(@Nullable RawJson extras, Map<String, Integer> frequencies) {
+        if (extras == null) return 0;
+
+        int length = 0;
+        try (JsonParser parser = extras.parser()) {
+            JsonToken token;
+            while ((token = parser.nextToken()) != null) {
+                if (token != JsonToken.VALUE_STRING) continue;
+
+                JsonStreamContext context = parser.getParsingContext();
+                while (context != null && context.inArray())
+                    context = context.getParent();
+                if (context != null && extrasFields.contains(context.getCurrentName()))
+                    length += tokenize(parser.getText(), frequencies);
+            }
+        } catch (IOException e) {
+//            extras are validated when assigned, so this is unlikely
+            logger.warning("Failed to index extras: " + e.getMessage());
+        }
+        return length;
+    }
+}
@@ -1,50 +1,121 @@
 package msu.timetable.models;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.type.TypeFactory;
-import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
-
-import java.io.File;
-import java.io.IOException;
-import java.util.List;
-import java.util.Random;
-import java.util.TreeMap;
+import msu.timetable.storage.EntityStorage;
+import msu.timetable.storage.Storages;
+import msu.timetable.storage.VersionConflictException;
+import org.springframework.lang.NonNull;
+import org.springframework.lang.Nullable;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
 import java.util.logging.Logger;
 
 public class Homeworks {
 
-    private static final Homeworks instance = new Homeworks();
-    private static final Subjects subjects = Subjects.getInstance();
     private static final Logger logger = Logger.getLogger("Homeworks");
-    private final ObjectMapper mapper = Jackson2ObjectMapperBuilder.json().build();
-    private final String filepath = "homeworks.json";
-    private final File fileStore = new File(filepath);
+    private static final Homeworks instance = new Homeworks();
+
+    /** Number of homeworks committed by importHomeworks() between progress reports */
+    private static final int IMPORT_BATCH = 1024;
+
+    /** Number of homeworks tokenized at once while search index is built, bounds heap used by loading */
+    private static final int INDEX_BATCH = 4096;
+
+    /** Number of ids, from which ids of new homeworks are generated: 0 to Short.MAX_VALUE exclusively */
+    public static final int ID_CAPACITY = Short.MAX_VALUE;
 
     public static Homeworks getInstance() {
         return instance;
     }
 
+    /** Loads homeworks, while subjects are loaded by another thread, unless they are loaded already */
     public Homeworks() {
-        loadJSON();
-    }
-
-    private void loadJSON() {
-        if (fileStore.exists()) {
-            try {
-                List<Homework> list = mapper.readValue(
-                        fileStore,
-                        TypeFactory.defaultInstance().constructCollectionLikeType(List.class, Homework.class)
-                );
-                list.forEach(d -> homeworkList.put(d.getId(), d));
-            } catch (IOException e) {
-                e.printStackTrace();
+        CompletableFuture<Subjects> loadingSubjects = CompletableFuture.supplyAsync(Subjects::getInstance);
+        homeworkList = Storages.create("homeworks", Homework.class);
+//        storage may be larger than heap, so homeworks are streamed rather than copied
+        indexInBatches(homeworkList.values());
+        links.rebuild(homeworkList.values());
+//        stored homework lists of subjects might have been damaged by earlier versions, so they are replaced
+        Subject.deriveHomeworksFrom(subjectId -> {
+            short[] ids = links.homeworksOf(subjectId);
+            List<Short> list = new ArrayList<>(ids.length);
+            for (short id : ids) list.add(id);
+            return Collections.unmodifiableList(list);
+        });
+        subjects = loadingSubjects.join();
+    }
+
+    /** Adds homeworks to search index in batches of INDEX_BATCH */
+    private void indexInBatches(Iterable<Homework> homeworks) {
+        List<Homework> batch = new ArrayList<>(INDEX_BATCH);
+        for (Homework homework : homeworks) {
+            batch.add(homework);
+            if (batch.size() == INDEX_BATCH) {
+                searchIndex.putAll(batch);
+                batch.clear();
             }
         }
+        searchIndex.putAll(batch);
     }
 
-    TreeMap<Short, Homework> homeworkList = new TreeMap<>();
+    /**
+     * Result of integrity check
+     * @param homeworks - number of checked homeworks
+     * @param orphans - number of homeworks, which subject doesn't exist
+     * @param indexMismatches - number of homeworks missing in relationship index or linked to wrong subject there,
+     *                        and of index entries of removed homeworks
+     * @param repaired - whether index was rebuilt
+     */
+    public record IntegrityReport(int homeworks, int orphans, int indexMismatches, boolean repaired) {
+        /** Whether index matched homeworks. Orphans aren't inconsistency of the index */
+        public boolean consistent() {
+            return indexMismatches == 0;
+        }
+    }
+
+    private final EntityStorage<Homework> homeworkList;
+
+    private final Subjects subjects;
+
+    /** Full-text index over descriptions and extras, kept in sync with homeworkList */
+    private final HomeworkIndex searchIndex = new HomeworkIndex();
+
+    /**
+     * Subject of each homework and homeworks of each subject, kept in sync with homeworkList.
+     * Homework lists of subjects are derived from this index, so homework changes don't write subjects
+     */
+    private final SubjectHomeworkIndex links = new SubjectHomeworkIndex();
+
+    /** Listeners notified about every change of homeworks */
+    private final List<ChangeListener<Homework>> listeners = new CopyOnWriteArrayList<>();
+
+    /** Listeners notified after bulk changes, which aren't reported homework by homework */
+    private final List<Runnable> bulkListeners = new CopyOnWriteArrayList<>();
+
+    /** Registers listener of homework changes */
+    public void addListener(@NonNull ChangeListener<Homework> listener) {
+        listeners.add(listener);
+    }
+
+    /** Registers listener of bulk changes, after which any homework may be different */
+    public void addBulkListener(@NonNull Runnable listener) {
+        bulkListeners.add(listener);
+    }
 
     public Homework createHomework(short subjectId, String description) {
+        return createHomework(subjectId, hw -> hw.setDescription(description));
+    }
+
+    /**
+     * Creates new homework of given subject with fields set by given function
+     * @param subjectId - id of subject, to which homework belongs
+     * @param init - initialization of new homework, id, version and subject are assigned afterwards
+     * @return created homework or null, if subject isn't found
+     */
+    public Homework createHomework(short subjectId, @NonNull Consumer<Homework> init) {
 //        check subject presence
         Subject hwSubject = subjects.getSubjectById(subjectId);
         if (hwSubject == null) {
@@ -52,33 +123,261 @@ public class Homeworks {
             return null;
         }
 
-//        allocate index
-        short index = generator.generateIndex();
-
         Homework homework = new Homework();
-        homework.setId(index);
+        init.accept(homework);
         homework.setSubject(hwSubject.getId());
-        homework.setDescription(description);
+        homework.setVersion(0);
+
+//        allocate index, which may be taken by concurrently created homework
+        do {
+            homework.setId(generator.generateIndex());
+        } while (!homeworkList.insert(homework));
 
-        homeworkList.put(index, homework);
-        hwSubject.getHomeworks().add(index);
+        relink(homework.getId());
+        searchIndex.sync(homework.getId(), homeworkList::get);
+        listeners.forEach(l -> l.changed(null, homework));
         return homework;
     }
 
+    /**
+     * Creates homeworks in bulk. Homeworks are committed one by one without notifying listeners,
+     * then they are linked to their subjects, indexed for search at once and bulk listeners are notified
+     * @param drafts - homeworks to create, their ids and versions are ignored
+     * @param progress - receives number of committed homeworks after each batch
+     * @return created homeworks. Homeworks of missing subjects are skipped
+     * @throws IllegalStateException if there are no free ids for the rest of homeworks, see freeIds()
+     */
+    public List<Homework> importHomeworks(@NonNull List<Homework> drafts, @NonNull IntConsumer progress) {
+        List<Homework> created = new ArrayList<>(drafts.size());
+        try {
+            for (Homework draft : drafts) {
+                if (subjects.getSubjectById(draft.getSubject()) == null) {
+                    logger.warning("Invalid subject ID provided: " + draft.getSubject());
+                    continue;
+                }
+
+                Homework homework = new Homework(draft);
+                homework.setVersion(0);
+                do {
+                    homework.setId(generator.generateIndex());
+                } while (!homeworkList.insert(homework));
+
+                created.add(homework);
+                if (created.size() % IMPORT_BATCH == 0) progress.accept(created.size());
+            }
+        } finally {
+            short[] ids = new short[created.size()];
+            for (int i = 0; i < ids.length; i++) {
+                ids[i] = created.get(i).getId();
+                relink(ids[i]);
+            }
+            searchIndex.syncAll(ids, homeworkList::get);
+            bulkListeners.forEach(Runnable::run);
+            progress.accept(created.size());
+        }
+        return created;
+    }
+
+    /**
+     * Applies change received from replication leader and notifies listeners
+     * @param id - Homework identifier
+     * @param homework - new state of homework, null if it was removed
+     */
+    public void applyReplicated(short id, @Nullable Homework homework) {
+        Homework previous = homeworkList.get(id);
+        if (homework != null) homeworkList.put(homework);
+        else if (previous != null) homeworkList.remove(id);
+        else return;
+//        homework may be removed and created anew with the same id, then its version starts over
+        searchIndex.sync(id, homeworkList::get);
+        relink(id);
+        listeners.forEach(l -> l.changed(previous, homework));
+    }
+
+    /**
+     * Replaces all homeworks with those of replication leader's snapshot.
+     * Readers may see partially installed snapshot, bulk listeners are notified once it is installed
+     * @param snapshot - all homeworks of leader
+     */
+    public void installReplicated(@NonNull Collection<Homework> snapshot) {
+        Set<Short> ids = new HashSet<>();
+        for (Homework homework : snapshot) {
+            homeworkList.put(homework);
+            ids.add(homework.getId());
+        }
+        for (Homework homework : List.copyOf(homeworkList.values())) {
+            searchIndex.remove(homework.getId());
+            if (!ids.contains(homework.getId())) homeworkList.remove(homework.getId());
+        }
+        searchIndex.putAll(snapshot);
+        links.rebuild(homeworkList.values());
+        bulkListeners.forEach(Runnable::run);
+    }
+
+    /** Removes homework, also from relationship index */
     public void removeHomework(Homework hw) {
-        homeworkList.remove(hw.getId());
+        Homework removed = homeworkList.remove(hw.getId());
+        searchIndex.sync(hw.getId(), homeworkList::get);
+        if (removed != null) {
+            relink(hw.getId());
+            listeners.forEach(l -> l.changed(removed, null));
+        }
+    }
+
+    /**
+     * Removes homework, if it wasn't changed since given copy was acquired
+     * @param expected - homework previously acquired from store
+     * @return whether homework was removed
+     */
+    public boolean removeHomeworkIfUnchanged(@NonNull Homework expected) {
+        if (!homeworkList.remove(expected)) return false;
+        searchIndex.sync(expected.getId(), homeworkList::get);
+        relink(expected.getId());
+        listeners.forEach(l -> l.changed(expected, null));
+        return true;
+    }
+
+    /**
+     * Replaces description of homework
+     * @return updated homework or null, if it isn't found
+     * @throws VersionConflictException if homework was changed since expected version
+     */
+    public Homework setHomeworkContent(short hwId, long expectedVersion, String description) {
+        return updateHomework(hwId, expectedVersion, hw -> hw.setDescription(description));
+    }
+
+    /**
+     * Replaces extra data of homework
+     * @return updated homework or null, if it isn't found
+     * @throws VersionConflictException if homework was changed since expected version
+     */
+    public Homework setHomeworkExtras(short hwId, long expectedVersion, RawJson extras) {
+        return updateHomework(hwId, expectedVersion, hw -> hw.setExtras(extras));
+    }
+
+    /**
+     * Replaces due date of homework
+     * @return updated homework or null, if it isn't found
+     * @throws VersionConflictException if homework was changed since expected version
+     */
+    public Homework setHomeworkDate(short hwId, long expectedVersion, @NonNull Date dueDate) {
+        return updateHomework(hwId, expectedVersion, hw -> hw.setDueDate(dueDate));
+    }
+
+    /**
+     * Assigns homework to another subject
+     * @return updated homework or null, if it isn't found
+     * @throws VersionConflictException if homework was changed since expected version
+     */
+    public Homework setHomeworkSubject(short hwId, long expectedVersion, short subjectId) {
+        return updateHomework(hwId, expectedVersion, hw -> hw.setSubject(subjectId));
+    }
+
+    /**
+     * Applies change to a copy of homework and atomically replaces homework with it.
+     * Change may be applied several times, if homework is concurrently updated by someone else.
+     * Homework is reindexed for search, if its description or extras changed,
+     * and relinked in relationship index, if its subject changed
+     * @param hwId - Homework identifier
+     * @param expectedVersion - version seen by caller or EntityStorage.ANY_VERSION
+     * @param change - modification of homework copy
+     * @return updated homework or null, if it isn't found
+     * @throws VersionConflictException if homework was changed since expected version
+     */
+    public Homework updateHomework(short hwId, long expectedVersion, @NonNull Consumer<Homework> change) {
+        Homework[] previous = new Homework[1];
+        Homework updated = homeworkList.update(hwId, expectedVersion, current -> {
+            previous[0] = current;
+            Homework copy = new Homework(current);
+            change.accept(copy);
+            copy.setVersion(current.getVersion() + 1);
+            return copy;
+        });
+
+        if (updated != null) {
+            if (!Objects.equals(previous[0].getDescription(), updated.getDescription())
+                    || !Objects.equals(previous[0].getExtras(), updated.getExtras()))
+                searchIndex.sync(hwId, homeworkList::get);
+            if (previous[0].getSubject() != updated.getSubject())
+                relink(hwId);
+            listeners.forEach(l -> l.changed(previous[0], updated));
+        }
+        return updated;
+    }
+
+    /**
+     * Searches homework by words of description and extras
+     * @param query - words to search, last one may be incomplete
+     * @param subjectId - if not null, only homework of this subject is returned
+     * @param from - if not null, only homework due not before this date is returned
+     * @param to - if not null, only homework due before this date is returned
+     * @param limit - maximal number of results
+     * @return homework ordered by relevance
+     */
+    public List<Homework> searchHomework(String query, Short subjectId, Date from, Date to, int limit) {
+        List<HomeworkIndex.Hit> hits = searchIndex.search(query, id -> {
+            Homework hw = homeworkList.get(id);
+            return hw != null
+                    && (subjectId == null || hw.getSubject() == subjectId)
+                    && (from == null || !hw.getDueDate().before(from))
+                    && (to == null || hw.getDueDate().before(to));
+        }, limit);
+        return hits.stream().map(hit -> homeworkList.get(hit.homework())).filter(Objects::nonNull).toList();
+    }
+
+    /** Returns homeworks of subject ordered by id */
+    public List<Homework> getHomeworksOfSubject(short subjectId) {
+        return homeworkList.getAll(links.homeworksOf(subjectId));
+    }
+
+    /**
+     * Compares relationship index with subjects of stored homeworks, streaming them from storage.
+     * Homeworks changed during the check may be reported as mismatches
+     * @param repair - whether to rebuild index, if anything differs. Index is kept on heap only, so nothing is written
+     */
+    public IntegrityReport checkIntegrity(boolean repair) {
+        int checked = 0, orphans = 0, indexMismatches = 0, indexed = 0;
+        for (Homework homework : homeworkList.values()) {
+            checked++;
+            if (subjects.getSubjectById(homework.getSubject()) == null) orphans++;
+            int linked = links.subjectOf(homework.getId());
+            if (linked >= 0) indexed++;
+            if (linked != Short.toUnsignedInt(homework.getSubject())) indexMismatches++;
+        }
+//        entries of homeworks, which are no longer stored
+        indexMismatches += links.size() - indexed;
+
+        boolean repaired = repair && indexMismatches > 0;
+        if (repaired) links.rebuild(homeworkList.values());
+        return new IntegrityReport(checked, orphans, indexMismatches, repaired);
+    }
+
+    /** Brings relationship index up to date with current state of homework */
+    private void relink(short hwId) {
+        links.sync(hwId, () -> homeworkList.get(hwId));
     }
 
     public Homework getHomeworkById(short hwId) {
         return homeworkList.get(hwId);
     }
 
+    /** Returns all homeworks ordered by id */
+    public Collection<Homework> getAllHomeworks() {
+        return homeworkList.values();
+    }
+
     public void save() {
-        try {
-            mapper.writerWithDefaultPrettyPrinter().writeValue(fileStore, homeworkList.values());
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
+        homeworkList.flush();
+    }
+
+    /** Persists all changes and releases storage, which mustn't be used afterwards */
+    public void close() {
+        homeworkList.close();
+    }
+
+    /** Number of ids left for new homeworks. Homeworks with ids out of generated range may make it smaller than real */
+    public int freeIds() {
+        return Math.max(0, ID_CAPACITY - homeworkList.size());
     }
 
     private final IndexGenerator generator = new IndexGenerator();
@@ -86,18 +385,28 @@ public class Homeworks {
 
     private class IndexGenerator {
 
+        /** Number of random indices tried before sequential search */
+        private static final int RANDOM_ATTEMPTS = 64;
+
         private final Random random = new Random();
 
         private short nextIndex() {
-            return (short) random.nextInt(Short.MAX_VALUE);
+            return (short) random.nextInt(ID_CAPACITY);
         }
 
+        /** @throws IllegalStateException if all indices are taken */
         public short generateIndex() {
-            short index;
-            do {
-                index = nextIndex();
-            } while (homeworkList.containsKey(index));
-            return index;
+            for (int i = 0; i < RANDOM_ATTEMPTS; i++) {
+                short index = nextIndex();
+                if (!homeworkList.contains(index)) return index;
+            }
+//            storage is nearly full, so free index is searched sequentially from random position
+            int start = random.nextInt(ID_CAPACITY);
+            for (int i = 0; i < ID_CAPACITY; i++) {
+                short index = (short) ((start + i) % ID_CAPACITY);
+                if (!homeworkList.contains(index)) return index;
+            }
+            throw new IllegalStateException("All " + ID_CAPACITY + " homework ids are taken");
         }
 
     }
@@ -0,0 +1,179 @@
+package msu.timetable.models;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Compressed postings list of one term: sorted homework ids with their term frequencies.
+ * Entries are split into small blocks, each encoded as variable-length deltas,
+ * so that incremental insertion or removal only re-encodes one block.
+ * Not thread-safe, guarded by HomeworkIndex.
+ */
+final class Postings {
+
+    /** Preferred number of entries in a block. Blocks are split when twice as large */
+    private static final int BLOCK_SIZE = 128;
+
+    /** Consumer of decoded entries */
+    interface Visitor {
+        void visit(int doc, int frequency);
+    }
+
+    /** Encoded block of entries */
+    private static final class Block {
+        /** Smallest document in block, used for binary search */
+        int first;
+        /** Number of entries */
+        int count;
+        /** Pairs of (delta of document, frequency) encoded as varints */
+        byte[] data;
+    }
+
+    private final ArrayList<Block> blocks = new ArrayList<>();
+
+    /** Total number of entries, i.e. document frequency of the term */
+    private int size;
+
+    /** Document frequency getter */
+    int size() {
+        return size;
+    }
+
+    /** Inserts document or replaces its frequency. Documents are unsigned 16-bit ids */
+    void put(int doc, int frequency) {
+        if (blocks.isEmpty()) {
+            blocks.add(encode(new int[] { doc }, new int[] { frequency }, 0, 1));
+            size = 1;
+            return;
+        }
+
+        int index = blockOf(doc);
+        Block block = blocks.get(index);
+        int[] docs = new int[block.count + 1];
+        int[] frequencies = new int[block.count + 1];
+        decode(block, docs, frequencies);
+
+        int position = Arrays.binarySearch(docs, 0, block.count, doc);
+        if (position >= 0) {
+            if (frequencies[position] == frequency) return;
+            frequencies[position] = frequency;
+            blocks.set(index, encode(docs, frequencies, 0, block.count));
+            return;
+        }
+
+        position = -position - 1;
+        System.arraycopy(docs, position, docs, position + 1, block.count - position);
+        System.arraycopy(frequencies, position, frequencies, position + 1, block.count - position);
+        docs[position] = doc;
+        frequencies[position] = frequency;
+        int count = block.count + 1;
+        size++;
+
+        if (count >= 2 * BLOCK_SIZE) {
+            int half = count / 2;
+            blocks.set(index, encode(docs, frequencies, 0, half));
+            blocks.add(index + 1, encode(docs, frequencies, half, count));
+        } else {
+            blocks.set(index, encode(docs, frequencies, 0, count));
+        }
+    }
+
+    /** Removes document from the list. Returns whether list changed */
+    boolean remove(int doc) {
+        if (blocks.isEmpty()) return false;
+
+        int index = blockOf(doc);
+        Block block = blocks.get(index);
+        int[] docs = new int[block.count];
+        int[] frequencies = new int[block.count];
+        decode(block, docs, frequencies);
+
+        int position = Arrays.binarySearch(docs, doc);
+        if (position < 0) return false;
+
+        size--;
+        if (block.count == 1) {
+            blocks.remove(index);
+            return true;
+        }
+        System.arraycopy(docs, position + 1, docs, position, block.count - position - 1);
+        System.arraycopy(frequencies, position + 1, frequencies, position, block.count - position - 1);
+        blocks.set(index, encode(docs, frequencies, 0, block.count - 1));
+        return true;
+    }
+
+    /** Visits all entries in ascending order of documents */
+    void forEach(Visitor visitor) {
+        for (Block block : blocks)
+            visitBlock(block, visitor);
+    }
+
+    /** Index of the last block, which begins not after given document (or first block) */
+    private int blockOf(int doc) {
+        int low = 0, high = blocks.size() - 1;
+        while (low < high) {
+            int middle = (low + high + 1) >>> 1;
+            if (blocks.get(middle).first <= doc) low = middle;
+            else high = middle - 1;
+        }
+        return low;
+    }
+
+    private static void decode(Block block, int[] docs, int[] frequencies) {
+        int[] position = { 0 };
+        Visitor collector = (doc, frequency) -> {
+            docs[position[0]] = doc;
+            frequencies[position[0]++] = frequency;
+        };
+        visitBlock(block, collector);
+    }
+
+    private static void visitBlock(Block block, Visitor visitor) {
+        byte[] data = block.data;
+        int offset = 0;
+        int doc = 0;
+        for (int i = 0; i < block.count; i++) {
+            int delta = 0;
+            for (int shift = 0; ; shift += 7) {
+                byte b = data[offset++];
+                delta |= (b & 0x7F) << shift;
+                if (b >= 0) break;
+            }
+            int frequency = 0;
+            for (int shift = 0; ; shift += 7) {
+                byte b = data[offset++];
+                frequency |= (b & 0x7F) << shift;
+                if (b >= 0) break;
+            }
+            doc += delta;
+            visitor.visit(doc, frequency);
+        }
+    }
+
+    private static Block encode(int[] docs, int[] frequencies, int from, int to) {
+//        each varint of 16-bit document delta takes at most 3 bytes, frequency at most 5
+        byte[] buffer = new byte[(to - from) * 8];
+        int offset = 0;
+        int previous = 0;
+        for (int i = from; i < to; i++) {
+            offset = writeVarint(buffer, offset, docs[i] - previous);
+            offset = writeVarint(buffer, offset, frequencies[i]);
+            previous = docs[i];
+        }
+
+        Block block = new Block();
+        block.first = docs[from];
+        block.count = to - from;
+        block.data = Arrays.copyOf(buffer, offset);
+        return block;
+    }
+
+    private static int writeVarint(byte[] buffer, int offset, int value) {
+        while ((value & ~0x7F) != 0) {
+            buffer[offset++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        buffer[offset++] = (byte) value;
+        return offset;
+    }
+}
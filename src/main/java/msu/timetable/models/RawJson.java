@@ -0,0 +1,203 @@
+package msu.timetable.models;
+
+import com.fasterxml.jackson.core.*;
+import com.fasterxml.jackson.core.io.JsonStringEncoder;
+import com.fasterxml.jackson.databind.*;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import org.springframework.lang.NonNull;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Validated JSON value kept as compact UTF-8 bytes.
+ * Used for extra data of subjects and homeworks, which is opaque for the server:
+ * it is written into responses and JSON files verbatim and parsed only on demand.
+ */
+@JsonSerialize(using = RawJson.Serializer.class)
+@JsonDeserialize(using = RawJson.Deserializer.class)
+public final class RawJson {
+
+    /** Factory of streaming parsers and generators. Thread-safe */
+    private static final JsonFactory factory = new JsonFactory();
+
+    /** Compact UTF-8 representation of the value */
+    private final byte[] bytes;
+
+    private RawJson(byte[] bytes) {
+        this.bytes = bytes;
+    }
+
+    /**
+     * Validates given UTF-8 data and strips insignificant whitespace from it
+     * @param utf8 - exactly one JSON value
+     * @throws JsonProcessingException if data isn't a single valid JSON value
+     */
+    public static RawJson parse(@NonNull byte[] utf8) throws IOException {
+        try (JsonParser parser = factory.createParser(utf8)) {
+            if (parser.nextToken() == null)
+                throw new JsonParseException(parser, "No JSON value found");
+            RawJson result = copyOf(parser);
+            if (parser.nextToken() != null)
+                throw new JsonParseException(parser, "Unexpected data after JSON value");
+            return result;
+        }
+    }
+
+    /**
+     * Copies value, at which parser currently points, without building a tree.
+     * Parser is left at the last token of the value
+     */
+    public static RawJson copyOf(@NonNull JsonParser parser) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        try (JsonGenerator generator = factory.createGenerator(output)) {
+            generator.copyCurrentStructure(parser);
+        }
+        return new RawJson(output.toByteArray());
+    }
+
+    /** Size of UTF-8 representation in bytes */
+    public int size() {
+        return bytes.length;
+    }
+
+    /** Creates streaming parser over the value */
+    public JsonParser parser() throws IOException {
+        return factory.createParser(bytes);
+    }
+
+    /** Parses the value into a tree. Should only be used, when server needs to look inside */
+    public JsonNode toTree(@NonNull ObjectMapper mapper) throws IOException {
+        return mapper.readTree(bytes);
+    }
+
+    /** Returns JSON text of the value */
+    @Override
+    public String toString() {
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /** Values are equal, if their compact representations are equal */
+    @Override
+    public boolean equals(Object other) {
+        return other instanceof RawJson json && Arrays.equals(bytes, json.bytes);
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(bytes);
+    }
+
+    /** Writes value as is. Byte-based generators copy the bytes, others decode them into text */
+    public static class Serializer extends JsonSerializer<RawJson> {
+        @Override
+        public void serialize(RawJson value, JsonGenerator generator, SerializerProvider provider) throws IOException {
+            generator.writeRawValue(value.new Utf8());
+        }
+    }
+
+    /** Copies data into buffer, if it fits, returns its length or -1 */
+    private static int append(byte[] data, byte[] buffer, int offset) {
+        if (data.length > buffer.length - offset) return -1;
+        System.arraycopy(data, 0, buffer, offset, data.length);
+        return data.length;
+    }
+
+    private static int append(char[] data, char[] buffer, int offset) {
+        if (data.length > buffer.length - offset) return -1;
+        System.arraycopy(data, 0, buffer, offset, data.length);
+        return data.length;
+    }
+
+    private static int put(byte[] data, ByteBuffer buffer) {
+        if (data.length > buffer.remaining()) return -1;
+        buffer.put(data);
+        return data.length;
+    }
+
+    /** Raw value as serializable string, which gives its UTF-8 bytes without decoding. Quoted forms are never written */
+    private final class Utf8 implements SerializableString {
+
+        @Override
+        public String getValue() {
+            return RawJson.this.toString();
+        }
+
+        @Override
+        public int charLength() {
+            return getValue().length();
+        }
+
+        @Override
+        public char[] asQuotedChars() {
+            return JsonStringEncoder.getInstance().quoteAsString(getValue());
+        }
+
+        /** Returns bytes of the value themselves, generators only read them */
+        @Override
+        public byte[] asUnquotedUTF8() {
+            return bytes;
+        }
+
+        @Override
+        public byte[] asQuotedUTF8() {
+            return JsonStringEncoder.getInstance().quoteAsUTF8(getValue());
+        }
+
+        @Override
+        public int appendQuotedUTF8(byte[] buffer, int offset) {
+            return append(asQuotedUTF8(), buffer, offset);
+        }
+
+        @Override
+        public int appendQuoted(char[] buffer, int offset) {
+            return append(asQuotedChars(), buffer, offset);
+        }
+
+        @Override
+        public int appendUnquotedUTF8(byte[] buffer, int offset) {
+            return append(bytes, buffer, offset);
+        }
+
+        @Override
+        public int appendUnquoted(char[] buffer, int offset) {
+            return append(getValue().toCharArray(), buffer, offset);
+        }
+
+        @Override
+        public int writeQuotedUTF8(OutputStream out) throws IOException {
+            byte[] quoted = asQuotedUTF8();
+            out.write(quoted);
+            return quoted.length;
+        }
+
+        @Override
+        public int writeUnquotedUTF8(OutputStream out) throws IOException {
+            out.write(bytes);
+            return bytes.length;
+        }
+
+        @Override
+        public int putQuotedUTF8(ByteBuffer buffer) {
+            return put(asQuotedUTF8(), buffer);
+        }
+
+        @Override
+        public int putUnquotedUTF8(ByteBuffer buffer) {
+            return put(bytes, buffer);
+        }
+    }
+
+    /** Copies value from input without building a tree */
+    public static class Deserializer extends JsonDeserializer<RawJson> {
+        @Override
+        public RawJson deserialize(JsonParser parser, DeserializationContext context) throws IOException {
+            return copyOf(parser);
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package msu.timetable.models;
+
+import java.util.Arrays;
+
+/**
+ * Set of 16-bit ids kept as sorted primitive array, ordered as unsigned numbers.
+ * Sets of one subject's homework are small, so binary search and array copying beat hashing and boxing.
+ * Not thread-safe, guarded by SubjectHomeworkIndex
+ */
+final class ShortSet {
+
+    private short[] values = new short[4];
+    private int size = 0;
+
+    int size() {
+        return size;
+    }
+
+    boolean contains(short value) {
+        return indexOf(value) >= 0;
+    }
+
+    /** Adds value, returns whether it was absent */
+    boolean add(short value) {
+        int index = indexOf(value);
+        if (index >= 0) return false;
+        index = -index - 1;
+        if (size == values.length) values = Arrays.copyOf(values, size * 2);
+        System.arraycopy(values, index, values, index + 1, size - index);
+        values[index] = value;
+        size++;
+        return true;
+    }
+
+    /** Removes value, returns whether it was present */
+    boolean remove(short value) {
+        int index = indexOf(value);
+        if (index < 0) return false;
+        System.arraycopy(values, index + 1, values, index, size - index - 1);
+        size--;
+        return true;
+    }
+
+    /** Returns sorted copy of values */
+    short[] toArray() {
+        return Arrays.copyOf(values, size);
+    }
+
+    /** Binary search by unsigned value, returns (-insertion point - 1) if value is absent */
+    private int indexOf(short value) {
+        int key = Short.toUnsignedInt(value);
+        int low = 0, high = size - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int current = Short.toUnsignedInt(values[middle]);
+            if (current < key) low = middle + 1;
+            else if (current > key) high = middle - 1;
+            else return middle;
+        }
+        return -low - 1;
+    }
+}
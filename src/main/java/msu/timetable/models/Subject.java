@@ -1,17 +1,31 @@
 package msu.timetable.models;
 
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import msu.timetable.storage.StoredEntity;
 
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
 import java.util.Objects;
+import java.util.function.Function;
 
 /**
- * Subject is a POJO class
+ * Subject is a POJO class.
+ * Subjects acquired from Subjects are shared between threads and must not be modified, modify their copies instead
  */
-public class Subject {
+public class Subject implements StoredEntity {
+
+    /** Default constructor */
+    public Subject() {}
+
+    /** Copy constructor. Lists are copied, so that copy may be modified independently */
+    public Subject(Subject other) {
+        this.id = other.id;
+        this.version = other.version;
+        this.name = other.name;
+        this.homeworks = new ArrayList<>(other.homeworks);
+        this.schedule.addAll(other.schedule);
+        this.extras = other.extras;
+    }
 
     /** Identifier of subject */
     private short id;
@@ -26,6 +40,19 @@ public class Subject {
         this.id = id;
     }
 
+    /** Number of updates applied to subject */
+    private long version = 0;
+
+    /** Version getter */
+    public long getVersion() {
+        return version;
+    }
+
+    /** Version setter */
+    public void setVersion(long version) {
+        this.version = version;
+    }
+
     /** Name of the subject */
     private String name = "UNNAMED";
 
@@ -39,15 +66,27 @@ public class Subject {
         this.name = name;
     }
 
-    /** List of homeworks by their respective identifiers*/
+    /**
+     * Source of homework ids of each subject, installed by Homeworks, which own the relationship.
+     * Null until homeworks are loaded
+     */
+    private static volatile Function<Short, List<Short>> homeworkSource = null;
+
+    /** Makes homework lists of all subjects derived from given source, so that they are never written by hand */
+    static void deriveHomeworksFrom(Function<Short, List<Short>> source) {
+        homeworkSource = source;
+    }
+
+    /** List of homeworks by their respective identifiers, as it was loaded. Used until homeworks are loaded */
     private List<Short> homeworks = new ArrayList<>();
 
-    /** Getter for homeworks list */
+    /** Getter for homeworks list. Once homeworks are loaded, the list is derived from their subjects */
     public List<Short> getHomeworks() {
-        return homeworks;
+        Function<Short, List<Short>> source = homeworkSource;
+        return source != null ? source.apply(id) : homeworks;
     }
 
-    /** Setter for homeworks list */
+    /** Setter for homeworks list, which is replaced by derived one once homeworks are loaded */
     public void setHomeworks(List<Short> newHomeworks) {
         this.homeworks = newHomeworks;
     }
@@ -72,15 +111,15 @@ public class Subject {
     }
 
     /** Extra data */
-    private JsonNode extras = JsonNodeFactory.instance.missingNode();
+    private RawJson extras = null;
 
     /** Getter for extra date*/
-    public JsonNode getExtras() {
+    public RawJson getExtras() {
         return extras;
     }
 
     /** Setter for extra date*/
-    public void setExtras(JsonNode node) {
+    public void setExtras(RawJson node) {
         extras = node;
     }
 }
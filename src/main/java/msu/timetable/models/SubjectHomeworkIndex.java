@@ -0,0 +1,98 @@
+package msu.timetable.models;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.function.Supplier;
+
+/**
+ * Bidirectional index between subjects and their homework: set of homework ids of each subject
+ * and subject id of each homework. Derived from Homework.getSubject(), which is the source of truth.
+ * Homework is synchronized by reading its current state under the index lock,
+ * so the last synchronization after concurrent changes always sees the latest state
+ */
+final class SubjectHomeworkIndex {
+
+    /** Number of distinct 16-bit identifiers */
+    private static final int ID_SPACE = 1 << 16;
+
+    /**
+     * Result of synchronization
+     * @param before - unsigned id of subject, to which homework belonged, or -1
+     * @param after - unsigned id of subject, to which homework belongs now, or -1
+     */
+    record Link(int before, int after) {
+        boolean moved() {
+            return before != after;
+        }
+    }
+
+    /** Homework of each subject by unsigned subject id. Guarded by this */
+    private final ShortSet[] homeworksOf = new ShortSet[ID_SPACE];
+
+    /** Subject of each indexed homework by unsigned homework id. Guarded by this */
+    private final short[] subjectOf = new short[ID_SPACE];
+    private final BitSet indexed = new BitSet(ID_SPACE);
+
+    /**
+     * Brings homework's entry to its current state
+     * @param homework - id of homework
+     * @param current - source of current state of homework, returns null if it was removed
+     */
+    synchronized Link sync(short homework, Supplier<Homework> current) {
+        Homework state = current.get();
+        int before = subjectOfLocked(homework);
+        int after = state != null ? Short.toUnsignedInt(state.getSubject()) : -1;
+        if (before != after) {
+            if (before >= 0) unlinkLocked(homework, before);
+            if (after >= 0) linkLocked(homework, after);
+        }
+        return new Link(before, after);
+    }
+
+    /** Replaces index contents with links of given homework */
+    synchronized void rebuild(Iterable<Homework> homeworks) {
+        Arrays.fill(homeworksOf, null);
+        indexed.clear();
+        for (Homework homework : homeworks)
+            linkLocked(homework.getId(), Short.toUnsignedInt(homework.getSubject()));
+    }
+
+    /** Returns ids of subject's homework in ascending unsigned order */
+    synchronized short[] homeworksOf(short subject) {
+        ShortSet set = homeworksOf[Short.toUnsignedInt(subject)];
+        return set != null ? set.toArray() : new short[0];
+    }
+
+    /** Number of indexed homeworks */
+    synchronized int size() {
+        return indexed.cardinality();
+    }
+
+    /** Returns unsigned id of homework's subject, or -1 if homework isn't indexed */
+    synchronized int subjectOf(short homework) {
+        return subjectOfLocked(homework);
+    }
+
+    private int subjectOfLocked(short homework) {
+        int index = Short.toUnsignedInt(homework);
+        return indexed.get(index) ? Short.toUnsignedInt(subjectOf[index]) : -1;
+    }
+
+    private void linkLocked(short homework, int subject) {
+        int index = Short.toUnsignedInt(homework);
+        if (indexed.get(index)) unlinkLocked(homework, Short.toUnsignedInt(subjectOf[index]));
+        if (homeworksOf[subject] == null) homeworksOf[subject] = new ShortSet();
+        homeworksOf[subject].add(homework);
+        subjectOf[index] = (short) subject;
+        indexed.set(index);
+    }
+
+    private void unlinkLocked(short homework, int subject) {
+        ShortSet set = homeworksOf[subject];
+        if (set != null) {
+            set.remove(homework);
+            if (set.size() == 0) homeworksOf[subject] = null;
+        }
+        indexed.clear(Short.toUnsignedInt(homework));
+    }
+}
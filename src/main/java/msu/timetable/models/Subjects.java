@@ -1,19 +1,19 @@
 package msu.timetable.models;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.type.TypeFactory;
-import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import msu.timetable.storage.EntityStorage;
+import msu.timetable.storage.Storages;
+import msu.timetable.storage.VersionConflictException;
 import org.springframework.lang.NonNull;
 import org.springframework.lang.Nullable;
 
-import java.io.File;
-import java.io.IOException;
 import java.time.DayOfWeek;
 import java.util.*;
-import java.util.stream.Stream;
-
-import static msu.timetable.models.DateUtils.dayOfWeek;
-import static msu.timetable.models.DateUtils.hasLessonsAt;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
 
 /**
  * Subjects contains all Subject classes and provides access to them
@@ -25,44 +25,50 @@ public final class Subjects {
     /** Subjects exploits singleton pattern */
     private static final Subjects singleton = new Subjects();
 
-    /**
-     * Object mapper is required for serialization and deserialization.
-     * Between runs data is stored in JSON format
-     */
-    private final ObjectMapper mapper = Jackson2ObjectMapperBuilder.json().build();
-
     /** Singleton acquisition method */
     public static Subjects getInstance() {
         return singleton;
     }
 
-    /** Path to the file containing JSON data */
-    private final String filepath = "subjects.json";
-
-    /** File object which stores JSON data */
-    private final File fileStore = new File(filepath);
-
-    /** Singleton constructor. Involves cache initialization, JSON parsing, cache generation */
+    /** Singleton constructor. Involves cache initialization, loading of storage, cache generation */
     private Subjects() {
-        initCache();
-        loadJSON();
+        subjectsList = Storages.create("subjects", Subject.class);
+        subjectsList.values().stream()
+                .filter(s -> s.getName() != null)
+                .forEach(s -> nameIndex.putIfAbsent(s.getName(), s.getId()));
         updateAllCache();
     }
 
-    /** Method for loading JSON data */
-    private void loadJSON() {
-        if (fileStore.exists()) {
-            try {
-                Set<Subject> list = mapper.readValue(fileStore, TypeFactory.defaultInstance().constructCollectionLikeType(Set.class, Subject.class));
-                list.forEach(s -> subjectsList.put(s.getId(), s));
-            } catch (IOException e) {
-                e.printStackTrace();
-            }
-        }
+    /** Number of subjects committed by importLessons() between progress reports */
+    private static final int IMPORT_BATCH = 1024;
+
+    /** Number of ids, from which ids of new subjects are generated: 0 to Short.MAX_VALUE exclusively */
+    public static final int ID_CAPACITY = Short.MAX_VALUE;
+
+    /** subjectList stores all "Subject"s and provides access to them by their ID. Between runs data is persisted */
+    private final EntityStorage<Subject> subjectsList;
+
+    /** Calendar, by which lessons are assigned to weekdays */
+    private final TimetableCalendar calendar = TimetableCalendar.getDefault();
+
+    /** Id of the first subject with each name */
+    private final Map<String, Short> nameIndex = new ConcurrentHashMap<>();
+
+    /** Listeners notified about every change of subjects */
+    private final List<ChangeListener<Subject>> listeners = new CopyOnWriteArrayList<>();
+
+    /** Listeners notified after bulk changes, which aren't reported subject by subject */
+    private final List<Runnable> bulkListeners = new CopyOnWriteArrayList<>();
+
+    /** Registers listener of subject changes */
+    public void addListener(@NonNull ChangeListener<Subject> listener) {
+        listeners.add(listener);
     }
 
-    /** subjectList stores all "Subject"s and provides access to them by their ID */
-    private final TreeMap<Short, Subject> subjectsList = new TreeMap<>();
+    /** Registers listener of bulk changes, after which any subject may be different */
+    public void addBulkListener(@NonNull Runnable listener) {
+        bulkListeners.add(listener);
+    }
 
     /** Returns immutable collection of all subjects */
     public Collection<Subject> getAllSubjects() {
@@ -75,20 +81,29 @@ public final class Subjects {
      * @param schedule may be null
      * */
     public Subject createSubject(@NonNull String name, @Nullable List<Date> schedule) {
-        Subject subject = new Subject();
+        return createSubject(s -> {
+            s.setName(name);
+            s.setSchedule(schedule);
+        });
+    }
 
-        short index = generator.generateIndex();
-        subject.setId(index);
-        subject.setName(name);
-        subject.setSchedule(schedule);
+    /**
+     * Creates new subject with fields set by given function
+     * @param init - initialization of new subject, id and version are assigned afterwards
+     */
+    public Subject createSubject(@NonNull Consumer<Subject> init) {
+        Subject subject = new Subject();
+        init.accept(subject);
+        subject.setVersion(0);
 
-        for (Date lesson :
-                subject.getSchedule()) {
-            int weekday = dayOfWeek(lesson);
-            dropCacheForDay(weekday);
-        }
+//        index may be taken by concurrently created subject, then another one is generated
+        do {
+            subject.setId(generator.generateIndex());
+        } while (!subjectsList.insert(subject));
 
-        subjectsList.put(index, subject);
+        nameIndex.putIfAbsent(subject.getName(), subject.getId());
+        dropCacheFor(subject);
+        listeners.forEach(l -> l.changed(null, subject));
         return subject;
     }
 
@@ -97,7 +112,73 @@ public final class Subjects {
      * @param id - Subject identifier
      * */
     public Subject getSubjectById(short id) {
-        return subjectsList.getOrDefault(id, null);
+        return subjectsList.get(id);
+    }
+
+    /**
+     * Renames subject
+     * @param id - Subject identifier
+     * @param expectedVersion - version seen by caller or EntityStorage.ANY_VERSION
+     * @param name - new name
+     * @return renamed subject or null, if it isn't found
+     * @throws VersionConflictException if subject was changed since expected version
+     */
+    public Subject renameSubject(short id, long expectedVersion, @NonNull String name) {
+        return updateSubject(id, expectedVersion, s -> s.setName(name));
+    }
+
+    /**
+     * Replaces schedule of subject
+     * @param id - Subject identifier
+     * @param expectedVersion - version seen by caller or EntityStorage.ANY_VERSION
+     * @param schedule - new lesson dates
+     * @return updated subject or null, if it isn't found
+     * @throws VersionConflictException if subject was changed since expected version
+     */
+    public Subject setSubjectSchedule(short id, long expectedVersion, @Nullable List<Date> schedule) {
+        return updateSubject(id, expectedVersion, s -> s.setSchedule(schedule));
+    }
+
+    /**
+     * Replaces extra data of subject
+     * @param id - Subject identifier
+     * @param expectedVersion - version seen by caller or EntityStorage.ANY_VERSION
+     * @param extras - new extra data
+     * @return updated subject or null, if it isn't found
+     * @throws VersionConflictException if subject was changed since expected version
+     */
+    public Subject setSubjectExtras(short id, long expectedVersion, @Nullable RawJson extras) {
+        return updateSubject(id, expectedVersion, s -> s.setExtras(extras));
+    }
+
+    /**
+     * Applies change to a copy of subject and atomically replaces subject with it.
+     * Change may be applied several times, if subject is concurrently updated by someone else
+     * @param id - Subject identifier
+     * @param expectedVersion - version seen by caller or EntityStorage.ANY_VERSION
+     * @param change - modification of subject copy
+     * @return updated subject or null, if it isn't found
+     * @throws VersionConflictException if subject was changed since expected version
+     */
+    public Subject updateSubject(short id, long expectedVersion, @NonNull Consumer<Subject> change) {
+        Subject[] previous = new Subject[1];
+        Subject updated = subjectsList.update(id, expectedVersion, current -> {
+            previous[0] = current;
+            Subject copy = new Subject(current);
+            change.accept(copy);
+            copy.setVersion(current.getVersion() + 1);
+            return copy;
+        });
+
+        if (updated != null) {
+            if (!Objects.equals(previous[0].getName(), updated.getName()))
+                renamed(previous[0].getName(), updated);
+//            both old and new lessons may change weekday lists
+            dropCacheFor(previous[0]);
+            dropCacheFor(updated);
+            listeners.forEach(l -> l.changed(previous[0], updated));
+        }
+        return updated;
     }
 
     /**
@@ -105,36 +186,161 @@ public final class Subjects {
      * @param name - name of the subject
      * */
     public Subject getSubjectByName(String name) {
-        Optional<Subject> candidate = subjectsList
-                .values()
-                .stream()
-                .filter(s -> s.getName().equals(name))
-                .findFirst();
-        return candidate.orElse(null);
+        if (name == null) return null;
+        Short id = nameIndex.get(name);
+        return id != null ? subjectsList.get(id) : null;
+    }
+
+    /** Moves subject to its new name in name index */
+    private void renamed(String oldName, Subject subject) {
+        if (subject.getName() != null)
+            nameIndex.putIfAbsent(subject.getName(), subject.getId());
+        forgetName(oldName, subject.getId());
+    }
+
+    /** Removes name of subject from name index. The name passes to another subject with it, if there is one */
+    private void forgetName(String name, short id) {
+        if (name != null && nameIndex.remove(name, id)) {
+//            renames are rare, so scan is affordable
+            subjectsList.values().stream()
+                    .filter(s -> name.equals(s.getName()))
+                    .findFirst()
+                    .ifPresent(s -> nameIndex.putIfAbsent(name, s.getId()));
+        }
+    }
+
+    /**
+     * Applies change received from replication leader and notifies listeners
+     * @param id - Subject identifier
+     * @param subject - new state of subject, null if it was removed
+     */
+    public void applyReplicated(short id, @Nullable Subject subject) {
+        Subject previous = subjectsList.get(id);
+        if (subject != null) subjectsList.put(subject);
+        else if (previous != null) subjectsList.remove(id);
+        else return;
+
+        if (previous != null) dropCacheFor(previous);
+        if (subject != null) {
+            dropCacheFor(subject);
+            String oldName = previous != null ? previous.getName() : null;
+            if (previous == null || !Objects.equals(oldName, subject.getName())) renamed(oldName, subject);
+        } else {
+            forgetName(previous.getName(), id);
+        }
+        listeners.forEach(l -> l.changed(previous, subject));
+    }
+
+    /**
+     * Replaces all subjects with those of replication leader's snapshot.
+     * Readers may see partially installed snapshot, bulk listeners are notified once it is installed
+     * @param snapshot - all subjects of leader
+     */
+    public void installReplicated(@NonNull Collection<Subject> snapshot) {
+        Set<Short> ids = new HashSet<>();
+        for (Subject subject : snapshot) {
+            subjectsList.put(subject);
+            ids.add(subject.getId());
+        }
+        for (Subject subject : List.copyOf(subjectsList.values()))
+            if (!ids.contains(subject.getId())) subjectsList.remove(subject.getId());
+
+        nameIndex.clear();
+        subjectsList.values().stream()
+                .filter(s -> s.getName() != null)
+                .forEach(s -> nameIndex.putIfAbsent(s.getName(), s.getId()));
+        for (DayOfWeek weekday : DayOfWeek.values())
+            dropCacheForDay(weekday.getValue());
+        bulkListeners.forEach(Runnable::run);
     }
 
     /**
-     * Returns all subjects, which are taught on given weekday
+     * Adds lessons to subjects found by name, creating missing subjects.
+     * Subjects are committed one by one without notifying listeners,
+     * instead weekday cache is dropped and bulk listeners are notified once at the end
+     * @param lessons - dates of lessons by subject name. Dates already present in schedule are skipped
+     * @param progress - receives number of committed subjects after each batch
+     * @return ids of all given subjects by their names
+     * @throws IllegalStateException if there are no free ids for new subjects, see freeIds()
+     */
+    public Map<String, Short> importLessons(@NonNull Map<String, List<Date>> lessons, @NonNull IntConsumer progress) {
+        Map<String, Short> ids = new HashMap<>(lessons.size() * 2);
+        int done = 0;
+        try {
+            for (Map.Entry<String, List<Date>> entry : lessons.entrySet()) {
+                String name = entry.getKey();
+                Subject existing = getSubjectByName(name);
+                Subject subject = existing == null ? null : subjectsList.update(existing.getId(), EntityStorage.ANY_VERSION, current -> {
+                    Subject copy = new Subject(current);
+                    addLessons(copy, entry.getValue());
+                    copy.setVersion(current.getVersion() + 1);
+                    return copy;
+                });
+
+                if (subject == null) {
+                    Subject created = new Subject();
+                    created.setName(name);
+                    addLessons(created, entry.getValue());
+                    do {
+                        created.setId(generator.generateIndex());
+                    } while (!subjectsList.insert(created));
+                    nameIndex.putIfAbsent(name, created.getId());
+                    subject = created;
+                }
+
+                ids.put(name, subject.getId());
+                if (++done % IMPORT_BATCH == 0) progress.accept(done);
+            }
+        } finally {
+            for (DayOfWeek weekday : DayOfWeek.values())
+                dropCacheForDay(weekday.getValue());
+            bulkListeners.forEach(Runnable::run);
+            progress.accept(done);
+        }
+        return ids;
+    }
+
+    /** Appends lessons, which aren't in schedule of subject yet */
+    private static void addLessons(Subject subject, List<Date> lessons) {
+        Set<Date> present = new HashSet<>(subject.getSchedule());
+        for (Date lesson : lessons)
+            if (present.add(lesson)) subject.getSchedule().add(lesson);
+    }
+
+    /**
+     * Returns all subjects, which are taught on given weekday.
+     * If cache for the weekday was dropped, only one caller rebuilds it, while others wait for its result
      * @param weekday - weekday number from 1 (MONDAY) to 7 (SUNDAY)
      */
     public Collection<Subject> getSubjectsOn(int weekday) {
-        weekday %= cacheCapacity;
-        List<Subject> response = weekdaySubjectCache[weekday];
+        int index = weekday - 1;
+        while (true) {
+            CompletableFuture<List<Subject>> cached = weekdaySubjectCache.get(index);
+            if (cached != null) return cached.join();
 
-//        logger.info("Cache for " + DayOfWeek.of(weekday) + " was" + (response == null ? "n't": "") +" found");
-        if (response == null)
-            response = createCacheForDay(weekday, weekdaySubjectCache[weekday]);
+            CompletableFuture<List<Subject>> rebuild = new CompletableFuture<>();
+            if (!weekdaySubjectCache.compareAndSet(index, null, rebuild)) continue;
 
-        return response;
+//            logger.info("Cache for " + DayOfWeek.of(weekday) + " wasn't found");
+            try {
+                rebuild.complete(createCacheForDay(weekday));
+            } catch (RuntimeException e) {
+//                let next caller try again instead of caching the failure
+                weekdaySubjectCache.compareAndSet(index, rebuild, null);
+                rebuild.completeExceptionally(e);
+            }
+            return rebuild.join();
+        }
     }
 
-    /** Saves all subjects in JSON file located at "filepath" variable */
+    /** Persists all subjects */
     public void save() {
-        try {
-            mapper.writerWithDefaultPrettyPrinter().writeValue(fileStore, subjectsList.values());
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
+        subjectsList.flush();
+    }
+
+    /** Persists all changes and releases storage, which mustn't be used afterwards */
+    public void close() {
+        subjectsList.close();
     }
 
     /**
@@ -146,62 +352,55 @@ public final class Subjects {
     /**
      * Weekday subject cache is used by getSubjectOn(int weekday): Subject function
      * To avoid repetitive filtering subjects by weekday and ordering of them by date, cache is used.
-     *
+     * Slot holds either finished list, or a future of list being rebuilt, or null if it was dropped
      */
-    private List<Subject>[] weekdaySubjectCache = null;
-
-    /** Creates weekdaySubjectCache list and fills it with nulls*/
-    private void initCache() {
-        //noinspection unchecked
-        weekdaySubjectCache = new List[cacheCapacity];
-        for (int i = 0; i < cacheCapacity; i++) {
-            weekdaySubjectCache[i] = new LinkedList<>();
-        }
-    }
+    private final AtomicReferenceArray<CompletableFuture<List<Subject>>> weekdaySubjectCache = new AtomicReferenceArray<>(cacheCapacity);
 
     /** Renews all cache */
-    @SuppressWarnings("unchecked")
     private void updateAllCache() {
-        List<Subject>[] cache = new List[cacheCapacity];
-
         for (DayOfWeek weekday :
                 DayOfWeek.values()) {
             int index = weekday.getValue() - 1;
-            cache[index] = new LinkedList<>();
-            createCacheForDay(index + 1, cache[index]);
+            weekdaySubjectCache.set(index, CompletableFuture.completedFuture(createCacheForDay(index + 1)));
         }
-
-        weekdaySubjectCache = cache;
     }
 
     /**
-     * Reset cache for specific weekday
+     * Reset cache for specific weekday.
+     * If cache is being rebuilt, callers already waiting for it get its result, but the result isn't kept
      * @param weekday - number of weekday
      */
     private void dropCacheForDay(int weekday) {
-        weekdaySubjectCache[weekday - 1] = null;
+        weekdaySubjectCache.set(weekday - 1, null);
     }
 
-    /** Creates cache for specific day and puts it into output list
+    /** Resets cache for all weekdays, at which subject has lessons */
+    private void dropCacheFor(Subject subject) {
+        for (Date lesson : subject.getSchedule())
+            dropCacheForDay(calendar.dayOfWeek(lesson.getTime()));
+    }
+
+    /** Creates cache for specific day
      * @param weekday - number of weekday
-     * @param output - non-null list, to which the cache will be inserted
+     * @return immutable list of subjects ordered by their lessons
      */
-    private List<Subject> createCacheForDay(int weekday, @NonNull List<Subject> output) {
+    private List<Subject> createCacheForDay(int weekday) {
 //        logger.info("Updating weekday cache for " + DayOfWeek.of(weekday));
-        TreeMap<Date, Short> subjectTree = new TreeMap<>();
-
-        Stream<Subject> filtered = getAllSubjects().stream().filter(hasLessonsAt(weekday));
-        filtered.forEach(s -> {
-            List<Date> dates = s.getSchedule();
-            dates.stream().filter(d -> dayOfWeek(d) == weekday).forEach(d ->
-                    subjectTree.put(d, s.getId())
-            );
-        });
+        TreeMap<Date, Subject> subjectTree = new TreeMap<>();
+
+        for (Subject s : getAllSubjects()) {
+            for (Date d : s.getSchedule()) {
+                if (calendar.dayOfWeek(d.getTime()) == weekday)
+                    subjectTree.put(d, s);
+            }
+        }
 
-        List<Subject> cache = subjectTree.values().stream().map(this::getSubjectById).toList();
-        output.clear();
-        output.addAll(cache);
-        return output;
+        return List.copyOf(subjectTree.values());
+    }
+
+    /** Number of ids left for new subjects. Subjects with ids out of generated range may make it smaller than real */
+    public int freeIds() {
+        return Math.max(0, ID_CAPACITY - subjectsList.size());
     }
 
     /** Instance of IndexGenerator */
@@ -210,20 +409,32 @@ public final class Subjects {
     /** Utility class for index generation. Helpful for encapsulation of index generation */
     private class IndexGenerator {
 
+        /** Number of random indices tried before sequential search */
+        private static final int RANDOM_ATTEMPTS = 64;
+
         private final Random random = new Random();
 
         /** Generates new index, which, however, may already be occupied by older subjects */
         private short nextIndex() {
-            return (short) random.nextInt(Short.MAX_VALUE);
+            return (short) random.nextInt(ID_CAPACITY);
         }
 
-        /** Generates new index to be used by newly created subject */
+        /**
+         * Generates new index to be used by newly created subject
+         * @throws IllegalStateException if all indices are taken
+         */
         public short generateIndex() {
-            short index;
-            do {
-                index = nextIndex();
-            } while (subjectsList.containsKey(index));
-            return index;
+            for (int i = 0; i < RANDOM_ATTEMPTS; i++) {
+                short index = nextIndex();
+                if (!subjectsList.contains(index)) return index;
+            }
+//            storage is nearly full, so free index is searched sequentially from random position
+            int start = random.nextInt(ID_CAPACITY);
+            for (int i = 0; i < ID_CAPACITY; i++) {
+                short index = (short) ((start + i) % ID_CAPACITY);
+                if (!subjectsList.contains(index)) return index;
+            }
+            throw new IllegalStateException("All " + ID_CAPACITY + " subject ids are taken");
         }
 
     }
@@ -0,0 +1,196 @@
+package msu.timetable.models;
+
+import org.springframework.lang.NonNull;
+
+import java.time.*;
+import java.time.zone.ZoneOffsetTransition;
+import java.time.zone.ZoneRules;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * Calendar arithmetic of one timetable over millisecond timestamps.
+ * Days are counted as epoch days (0 is 1970-01-01) of timetable's time zone, weekdays are ISO (1 - Monday, 7 - Sunday).
+ * Transitions of the zone within TRANSITION_WINDOW_YEARS around creation are precomputed and binary searched,
+ * so that usual calls neither lock, allocate nor write shared state. Moments outside the window are handled by zone rules.
+ * Instances are immutable and thread-safe.
+ */
+public final class TimetableCalendar {
+
+    private static final Logger logger = Logger.getLogger("TimetableCalendar");
+
+    public static final long MILLIS_PER_MINUTE = TimeUnit.MINUTES.toMillis(1);
+    public static final long MILLIS_PER_DAY = TimeUnit.DAYS.toMillis(1);
+
+    /** Number of years before and after creation, for which transitions of the zone are precomputed */
+    static final int TRANSITION_WINDOW_YEARS = 100;
+
+    /** Epoch day 0 (1970-01-01) was Thursday */
+    private static final int EPOCH_DAY_OF_WEEK = DayOfWeek.THURSDAY.getValue();
+
+    /** Calendar of the zone configured by "timetable.zone" system property, system zone by default */
+    private static volatile TimetableCalendar defaultCalendar = null;
+
+    /** Returns calendar of the zone configured for the timetable */
+    public static TimetableCalendar getDefault() {
+        TimetableCalendar calendar = defaultCalendar;
+        if (calendar == null) {
+            calendar = new TimetableCalendar(configuredZone());
+            defaultCalendar = calendar;
+        }
+        return calendar;
+    }
+
+    private static ZoneId configuredZone() {
+        String zone = System.getProperty("timetable.zone");
+        if (zone == null) return ZoneId.systemDefault();
+        try {
+            return ZoneId.of(zone);
+        } catch (DateTimeException e) {
+            logger.warning("Unknown zone \"" + zone + "\", falling back to system zone");
+            return ZoneId.systemDefault();
+        }
+    }
+
+    private final ZoneId zone;
+    private final ZoneRules rules;
+
+    /** Bounds of precomputed window in milliseconds, end is exclusive */
+    private final long windowStart, windowEnd;
+
+    /** Moments of transitions within window in ascending order */
+    private final long[] transitions;
+
+    /** Offsets in milliseconds: i-th one is in effect before i-th transition, the last one after the last transition */
+    private final long[] offsets;
+
+    public TimetableCalendar(@NonNull ZoneId zone) {
+        this.zone = zone;
+        this.rules = zone.getRules();
+        if (rules.isFixedOffset()) {
+            windowStart = Long.MIN_VALUE;
+            windowEnd = Long.MAX_VALUE;
+            transitions = new long[0];
+            offsets = new long[] { rules.getOffset(Instant.EPOCH).getTotalSeconds() * 1000L };
+            return;
+        }
+
+        ZonedDateTime now = ZonedDateTime.now(zone);
+        Instant start = now.minusYears(TRANSITION_WINDOW_YEARS).toInstant();
+        Instant end = now.plusYears(TRANSITION_WINDOW_YEARS).toInstant();
+        windowStart = start.toEpochMilli();
+        windowEnd = end.toEpochMilli();
+
+        long[] moments = new long[16];
+        long[] after = new long[16];
+        int count = 0;
+        for (ZoneOffsetTransition t = rules.nextTransition(start); t != null && t.getInstant().isBefore(end);
+             t = rules.nextTransition(t.getInstant())) {
+            if (count == moments.length) {
+                moments = Arrays.copyOf(moments, count * 2);
+                after = Arrays.copyOf(after, count * 2);
+            }
+            moments[count] = t.toEpochSecond() * 1000L;
+            after[count++] = t.getOffsetAfter().getTotalSeconds() * 1000L;
+        }
+        transitions = Arrays.copyOf(moments, count);
+        offsets = new long[count + 1];
+        offsets[0] = rules.getOffset(start).getTotalSeconds() * 1000L;
+        System.arraycopy(after, 0, offsets, 1, count);
+    }
+
+    /** Time zone getter */
+    public ZoneId getZone() {
+        return zone;
+    }
+
+    /** Returns offset of local time from UTC at given moment in milliseconds */
+    public long offsetAt(long timestamp) {
+        if (timestamp < windowStart || timestamp >= windowEnd)
+            return rules.getOffset(Instant.ofEpochMilli(timestamp)).getTotalSeconds() * 1000L;
+        return offsets[periodIndex(timestamp)];
+    }
+
+    /** Returns index of the period of constant offset, which contains given moment of window: number of transitions up to it */
+    private int periodIndex(long timestamp) {
+        int low = 0, high = transitions.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (transitions[middle] <= timestamp) low = middle + 1;
+            else high = middle;
+        }
+        return low;
+    }
+
+    /** First moment of period with given index, bounded by window */
+    private long periodStart(int index) {
+        return index > 0 ? transitions[index - 1] : windowStart;
+    }
+
+    /** First moment after period with given index, bounded by window */
+    private long periodEnd(int index) {
+        return index < transitions.length ? transitions[index] : windowEnd;
+    }
+
+    /** Returns local epoch day of given moment */
+    public long epochDay(long timestamp) {
+        return Math.floorDiv(timestamp + offsetAt(timestamp), MILLIS_PER_DAY);
+    }
+
+    /** Returns ISO weekday (1 - Monday, 7 - Sunday) of given moment */
+    public int dayOfWeek(long timestamp) {
+        return dayOfWeekOfEpochDay(epochDay(timestamp));
+    }
+
+    /** Returns ISO weekday (1 - Monday, 7 - Sunday) of given epoch day */
+    public static int dayOfWeekOfEpochDay(long epochDay) {
+        return (int) Math.floorMod(epochDay + EPOCH_DAY_OF_WEEK - 1, 7L) + 1;
+    }
+
+    /** Returns epoch day of Monday of the week, which contains given epoch day */
+    public static long mondayOf(long epochDay) {
+        return epochDay - dayOfWeekOfEpochDay(epochDay) + 1;
+    }
+
+    /** Returns epoch day of Monday of the week, which contains given moment */
+    public long weekOf(long timestamp) {
+        return mondayOf(epochDay(timestamp));
+    }
+
+    /**
+     * Returns first moment of given local day.
+     * If midnight is skipped by a transition, day starts right after the transition, as in java.time
+     */
+    public long startOfDay(long epochDay) {
+        return toTimestamp(epochDay * MILLIS_PER_DAY);
+    }
+
+    /**
+     * Returns moment of given local time
+     * @param epochDay - local day
+     * @param millisOfDay - milliseconds since local midnight
+     */
+    public long timestampOf(long epochDay, long millisOfDay) {
+        return toTimestamp(epochDay * MILLIS_PER_DAY + millisOfDay);
+    }
+
+    /**
+     * Converts local time into a moment
+     * @param local - milliseconds of local time since 1970-01-01T00:00
+     */
+    private long toTimestamp(long local) {
+        int period = periodIndex(local - offsets[periodIndex(local)]);
+        long timestamp = local - offsets[period];
+
+//        far from transitions local time has exactly one meaning, near them it may fall into a gap or an overlap.
+//        Outside of window the period is a guess, which fails this check
+        if (timestamp >= periodStart(period) + MILLIS_PER_DAY && timestamp < periodEnd(period) - MILLIS_PER_DAY)
+            return timestamp;
+
+        LocalDateTime dateTime = LocalDateTime.ofEpochSecond(
+                Math.floorDiv(local, 1000L), (int) Math.floorMod(local, 1000L) * 1_000_000, ZoneOffset.UTC
+        );
+        return ZonedDateTime.ofLocal(dateTime, zone, null).toInstant().toEpochMilli();
+    }
+}
@@ -0,0 +1,272 @@
+package msu.timetable.models;
+
+import msu.timetable.archive.Archive;
+import org.springframework.lang.NonNull;
+import org.springframework.lang.Nullable;
+
+import java.time.*;
+import java.time.temporal.IsoFields;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Materialized views of ISO weeks: ordered lessons of the week and homework due that week.
+ * Views are kept in size-bounded LRU cache, each view is built by one thread while others wait for it.
+ * Cache is invalidated precisely: a change of subject or homework drops only the weeks it touches.
+ * Weeks before archive horizon are completed with archived lessons and homework
+ */
+public class WeekViews {
+
+    /** Default number of cached weeks, about two semesters */
+    public static final int DEFAULT_CAPACITY = 64;
+
+    /** WeekViews exploits singleton pattern, subscribed to changes of both stores and archive */
+    private static WeekViews singleton = null;
+
+    /** Singleton acquisition method */
+    public static synchronized WeekViews getInstance() {
+        if (singleton == null) {
+            singleton = new WeekViews(Subjects.getInstance()::getAllSubjects, Homeworks.getInstance()::getAllHomeworks,
+                    TimetableCalendar.getDefault(), DEFAULT_CAPACITY, Archive.getInstance());
+            Subjects.getInstance().addListener(singleton::subjectChanged);
+            Subjects.getInstance().addBulkListener(singleton::invalidateAll);
+            Homeworks.getInstance().addListener(singleton::homeworkChanged);
+            Homeworks.getInstance().addBulkListener(singleton::invalidateAll);
+//            views built while moved homework was neither in store nor in archive are dropped
+            Archive.getInstance().addSegmentListener(segment -> singleton.invalidateAll());
+        }
+        return singleton;
+    }
+
+    /**
+     * One lesson in week view
+     * @param subject - id of subject
+     * @param name - name of subject
+     * @param date - millisecond timestamp of lesson beginning
+     */
+    public record Lesson(short subject, String name, long date) {}
+
+    /**
+     * View of one week
+     * @param year - ISO week-based year
+     * @param week - ISO week number
+     * @param start - millisecond timestamp of week beginning (Monday midnight)
+     * @param end - millisecond timestamp of next week beginning
+     * @param lessons - lessons of the week ordered by date
+     * @param homeworks - homework due that week ordered by due date
+     */
+    public record WeekView(int year, int week, long start, long end, List<Lesson> lessons, List<Homework> homeworks) {}
+
+    /**
+     * Cache statistics
+     * @param size - number of cached weeks
+     * @param capacity - maximal number of cached weeks
+     * @param hits - number of requests served from cache
+     * @param misses - number of requests, which built a view
+     * @param evictions - number of views evicted as least recently used
+     * @param invalidations - number of views dropped because of changes
+     */
+    public record Stats(int size, int capacity, long hits, long misses, long evictions, long invalidations) {
+        /** Fraction of requests served from cache */
+        public double getHitRate() {
+            long total = hits + misses;
+            return total == 0 ? 0 : (double) hits / total;
+        }
+    }
+
+    private final Supplier<Collection<Subject>> subjects;
+    private final Supplier<Collection<Homework>> homeworks;
+    private final TimetableCalendar calendar;
+    private final int capacity;
+    private final Archive archive;
+
+    /** Views by epoch day of week's Monday, in access order. Guarded by itself */
+    private final LinkedHashMap<Long, CompletableFuture<WeekView>> cache;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong invalidations = new AtomicLong();
+
+    /**
+     * @param subjects - source of all subjects
+     * @param homeworks - source of all homeworks
+     * @param calendar - calendar, in which weeks are measured
+     * @param capacity - maximal number of cached weeks
+     * @param archive - archive of old lessons and homework, may be null
+     */
+    public WeekViews(@NonNull Supplier<Collection<Subject>> subjects, @NonNull Supplier<Collection<Homework>> homeworks,
+                     @NonNull TimetableCalendar calendar, int capacity, @Nullable Archive archive) {
+        this.subjects = subjects;
+        this.homeworks = homeworks;
+        this.calendar = calendar;
+        this.capacity = capacity;
+        this.archive = archive;
+        this.cache = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, CompletableFuture<WeekView>> eldest) {
+                boolean evict = size() > WeekViews.this.capacity;
+                if (evict) evictions.incrementAndGet();
+                return evict;
+            }
+        };
+    }
+
+    /** Returns view of the week containing given moment */
+    public WeekView getWeekOf(long timestamp) {
+        return getWeek(calendar.weekOf(timestamp));
+    }
+
+    /** Years, which weeks fit into millisecond timestamps, exclusive bounds */
+    private static final int MIN_YEAR = Instant.ofEpochMilli(Long.MIN_VALUE).atOffset(ZoneOffset.UTC).getYear();
+    private static final int MAX_YEAR = Instant.ofEpochMilli(Long.MAX_VALUE).atOffset(ZoneOffset.UTC).getYear();
+
+    /**
+     * Checks whether ISO week exists and can be viewed
+     * @param year - ISO week-based year, which weeks fit into millisecond timestamps
+     * @param week - ISO week number
+     */
+    public static boolean isValidWeek(int year, int week) {
+        if (year <= MIN_YEAR || year >= MAX_YEAR) return false;
+        return IsoFields.WEEK_OF_WEEK_BASED_YEAR.rangeRefinedBy(LocalDate.of(year, 1, 4)).isValidIntValue(week);
+    }
+
+    /**
+     * Returns view of ISO week
+     * @param year - ISO week-based year
+     * @param week - ISO week number, from 1 to 52 or 53
+     * @throws IllegalArgumentException if there's no such week, see isValidWeek()
+     */
+    public WeekView getWeek(int year, int week) {
+        if (!isValidWeek(year, week))
+            throw new IllegalArgumentException("Year %d has no week %d".formatted(year, week));
+        LocalDate monday = LocalDate.of(year, 1, 4)
+                .with(IsoFields.WEEK_OF_WEEK_BASED_YEAR, week)
+                .with(DayOfWeek.MONDAY);
+        return getWeek(monday.toEpochDay());
+    }
+
+    /** Returns view of the week, which begins at given epoch day */
+    private WeekView getWeek(long monday) {
+        CompletableFuture<WeekView> view;
+        boolean build = false;
+        synchronized (cache) {
+            view = cache.get(monday);
+            if (view == null) {
+                view = new CompletableFuture<>();
+                cache.put(monday, view);
+                build = true;
+            }
+        }
+
+        if (!build) {
+            hits.incrementAndGet();
+            return view.join();
+        }
+
+        misses.incrementAndGet();
+        try {
+            view.complete(buildWeek(monday));
+        } catch (RuntimeException e) {
+            synchronized (cache) {
+                cache.remove(monday, view);
+            }
+            view.completeExceptionally(e);
+        }
+        return view.join();
+    }
+
+    /** Builds view by scanning subjects and homeworks */
+    private WeekView buildWeek(long monday) {
+        long start = calendar.startOfDay(monday);
+        long end = calendar.startOfDay(monday + 7);
+
+        List<Lesson> lessons = new ArrayList<>();
+        for (Subject subject : subjects.get()) {
+            for (Date lesson : subject.getSchedule()) {
+                long date = lesson.getTime();
+                if (date >= start && date < end)
+                    lessons.add(new Lesson(subject.getId(), subject.getName(), date));
+            }
+        }
+
+        List<Homework> due = new ArrayList<>();
+        for (Homework homework : homeworks.get()) {
+            long date = homework.getDueDate().getTime();
+            if (date >= start && date < end)
+                due.add(homework);
+        }
+
+        if (archive != null && start < archive.getHorizon())
+            addArchived(start, end, lessons, due);
+
+        lessons.sort(Comparator.comparingLong(Lesson::date));
+        due.sort(Comparator.comparing(Homework::getDueDate));
+
+        LocalDate date = LocalDate.ofEpochDay(monday);
+        return new WeekView(
+                date.get(IsoFields.WEEK_BASED_YEAR), date.get(IsoFields.WEEK_OF_WEEK_BASED_YEAR),
+                start, end, List.copyOf(lessons), List.copyOf(due)
+        );
+    }
+
+    /** Adds archived records, skipping those, which are still in stores because their move was interrupted */
+    private void addArchived(long start, long end, List<Lesson> lessons, List<Homework> due) {
+        Set<Map.Entry<Short, Long>> hotLessons = new HashSet<>();
+        lessons.forEach(l -> hotLessons.add(Map.entry(l.subject(), l.date())));
+        for (Archive.Lesson lesson : archive.getLessons(start, end))
+            if (!hotLessons.contains(Map.entry(lesson.subject(), lesson.date())))
+                lessons.add(new Lesson(lesson.subject(), lesson.name(), lesson.date()));
+
+//        ids of archived homeworks may be reused, so only the same version of the same homework is skipped
+        Set<List<Object>> hotHomeworks = new HashSet<>();
+        due.forEach(h -> hotHomeworks.add(List.of(h.getId(), h.getVersion(), h.getDueDate())));
+        for (Homework homework : archive.getHomeworks(start, end))
+            if (!hotHomeworks.contains(List.of(homework.getId(), homework.getVersion(), homework.getDueDate())))
+                due.add(homework);
+    }
+
+    /** Drops view of the week containing given moment */
+    public void invalidate(long timestamp) {
+        long key = calendar.weekOf(timestamp);
+        synchronized (cache) {
+            if (cache.remove(key) != null) invalidations.incrementAndGet();
+        }
+    }
+
+    /** Drops all views */
+    public void invalidateAll() {
+        synchronized (cache) {
+            invalidations.addAndGet(cache.size());
+            cache.clear();
+        }
+    }
+
+    /** Returns cache statistics */
+    public Stats getStats() {
+        int size;
+        synchronized (cache) {
+            size = cache.size();
+        }
+        return new Stats(size, capacity, hits.get(), misses.get(), evictions.get(), invalidations.get());
+    }
+
+    /** Drops weeks of old and new lessons, if lessons or name of subject changed */
+    void subjectChanged(Subject before, Subject after) {
+        if (before != null && after != null
+                && before.getName().equals(after.getName())
+                && before.getSchedule().equals(after.getSchedule()))
+            return;
+
+        if (before != null) before.getSchedule().forEach(d -> invalidate(d.getTime()));
+        if (after != null) after.getSchedule().forEach(d -> invalidate(d.getTime()));
+    }
+
+    /** Drops weeks, in which homework was and is due */
+    void homeworkChanged(Homework before, Homework after) {
+        if (before != null) invalidate(before.getDueDate().getTime());
+        if (after != null) invalidate(after.getDueDate().getTime());
+    }
+}
@@ -0,0 +1,12 @@
+package msu.timetable.reminders;
+
+/**
+ * Reminder about approaching due date of homework
+ * @param homework - id of homework
+ * @param subject - id of subject, to which homework belongs
+ * @param description - description of homework
+ * @param dueDate - millisecond timestamp of due date
+ * @param offset - milliseconds between reminder and due date
+ * @param fireAt - millisecond timestamp, at which reminder is due
+ */
+public record Reminder(short homework, short subject, String description, long dueDate, long offset, long fireAt) {}
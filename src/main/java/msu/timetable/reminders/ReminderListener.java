@@ -0,0 +1,7 @@
+package msu.timetable.reminders;
+
+/** Receiver of fired reminders. Called on delivery executor, so it may block for a short time */
+@FunctionalInterface
+public interface ReminderListener {
+    void remind(Reminder reminder);
+}
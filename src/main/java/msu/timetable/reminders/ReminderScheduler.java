@@ -0,0 +1,275 @@
+package msu.timetable.reminders;
+
+import msu.timetable.models.Homework;
+import msu.timetable.models.Homeworks;
+import msu.timetable.replication.Replication;
+import org.springframework.lang.NonNull;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+import java.util.logging.Logger;
+
+/**
+ * Fires reminders at configured offsets before due date of each homework.
+ * Pending reminders are kept in a timer wheel, which is rebuilt from the store on startup
+ * and updated whenever homework is created, removed, moved to another subject or gets new due date.
+ * Fired reminders are delivered to listeners on a bounded executor, reminders are dropped if it is overloaded.
+ * Reminders, which were due while server was down, are not fired.
+ * <p>
+ * Configured by system properties:
+ * <ul>
+ *     <li>timetable.reminders.offsets - comma separated offsets like "24h,1h" or "30m" (default "24h,1h")</li>
+ *     <li>timetable.reminders.webhook - URL, to which reminders are posted as JSON (none by default, ignored by replication followers)</li>
+ *     <li>timetable.reminders.threads - number of delivery threads (default 2)</li>
+ *     <li>timetable.reminders.queue - number of reminders waiting for delivery (default 10000)</li>
+ * </ul>
+ */
+public class ReminderScheduler {
+
+    private static final Logger logger = Logger.getLogger("ReminderScheduler");
+
+    /** Default offsets: a day and an hour before due date */
+    public static final List<Duration> DEFAULT_OFFSETS = List.of(Duration.ofHours(24), Duration.ofHours(1));
+
+    /** Length of one tick of timer wheel in milliseconds */
+    public static final long TICK = 1000;
+
+    /** Number of distinct 16-bit identifiers */
+    private static final int ID_SPACE = 1 << 16;
+
+    /** ReminderScheduler exploits singleton pattern, subscribed to changes of homeworks */
+    private static ReminderScheduler singleton = null;
+
+    /** Singleton acquisition method. Schedules reminders of all stored homework and starts the clock */
+    public static synchronized ReminderScheduler getInstance() {
+        if (singleton == null) {
+            Homeworks homeworks = Homeworks.getInstance();
+            singleton = new ReminderScheduler(homeworks::getHomeworkById, configuredOffsets(), newDeliveryExecutor(), System::currentTimeMillis);
+//            subscribe before rebuild, so that homework changed meanwhile is refreshed afterwards
+            homeworks.addListener(singleton::homeworkChanged);
+            homeworks.addBulkListener(() -> singleton.rebuild(homeworks.getAllHomeworks()));
+            singleton.rebuild(homeworks.getAllHomeworks());
+
+            String webhook = System.getProperty("timetable.reminders.webhook");
+//            followers keep reminders for their subscribers, while the webhook is called by leader only
+            if (webhook != null && Replication.getRole() != Replication.Role.FOLLOWER)
+                singleton.addListener(new WebhookReminderListener(URI.create(webhook)));
+            singleton.start();
+        }
+        return singleton;
+    }
+
+    /**
+     * Scheduler statistics
+     * @param pending - number of reminders waiting for their time
+     * @param fired - number of reminders, which time came
+     * @param dropped - number of fired reminders, which didn't fit into delivery queue
+     * @param failed - number of deliveries, in which listener threw an exception
+     */
+    public record Stats(int pending, long fired, long dropped, long failed) {}
+
+    private final Function<Short, Homework> homeworks;
+    private final long[] offsets;
+    private final ExecutorService delivery;
+    private final LongSupplier clock;
+
+    /** Pending reminders. Guarded by this */
+    private final TimerWheel<Reminder> wheel;
+
+    /** Pending reminders of each homework by its unsigned id, needed for cancellation. Guarded by this */
+    @SuppressWarnings("unchecked")
+    private final TimerWheel.Timeout<Reminder>[][] scheduled = new TimerWheel.Timeout[ID_SPACE][];
+
+    private final List<ReminderListener> listeners = new CopyOnWriteArrayList<>();
+
+    private final AtomicLong fired = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+
+    /** Thread, which moves timer wheel forward every tick */
+    private ScheduledExecutorService ticker = null;
+
+    /**
+     * @param homeworks - source of current state of homework by its id
+     * @param offsets - times between reminders and due date
+     * @param delivery - executor, on which listeners are called
+     * @param clock - source of millisecond timestamps
+     */
+    public ReminderScheduler(@NonNull Function<Short, Homework> homeworks, @NonNull List<Duration> offsets,
+                             @NonNull ExecutorService delivery, @NonNull LongSupplier clock) {
+        this.homeworks = homeworks;
+        this.offsets = offsets.stream().mapToLong(Duration::toMillis).distinct().toArray();
+        this.delivery = delivery;
+        this.clock = clock;
+        this.wheel = new TimerWheel<>(Math.floorDiv(clock.getAsLong(), TICK));
+    }
+
+    /** Registers receiver of fired reminders */
+    public void addListener(@NonNull ReminderListener listener) {
+        listeners.add(listener);
+    }
+
+    /** Removes receiver of fired reminders */
+    public void removeListener(@NonNull ReminderListener listener) {
+        listeners.remove(listener);
+    }
+
+    /** Replaces reminders of given homework */
+    public synchronized void rebuild(@NonNull Collection<Homework> all) {
+        for (Homework homework : all) {
+            cancelLocked(homework.getId());
+            scheduleLocked(homework);
+        }
+    }
+
+    /** Reschedules reminders of homework according to its current state, cancels them if it was removed */
+    public synchronized void refresh(short homework) {
+        cancelLocked(homework);
+//        state is read under lock, so the last refresh always sees the latest change
+        Homework current = homeworks.apply(homework);
+        if (current != null) scheduleLocked(current);
+    }
+
+    /** Refreshes reminders, if change affects them */
+    void homeworkChanged(Homework before, Homework after) {
+        if (before != null && after != null
+                && before.getDueDate().equals(after.getDueDate())
+                && before.getSubject() == after.getSubject()
+                && Objects.equals(before.getDescription(), after.getDescription()))
+            return;
+        refresh(after != null ? after.getId() : before.getId());
+    }
+
+    private void scheduleLocked(Homework homework) {
+        long due = homework.getDueDate().getTime();
+        List<TimerWheel.Timeout<Reminder>> timeouts = new ArrayList<>(offsets.length);
+        for (long offset : offsets) {
+            long fireAt = due - offset;
+            long deadline = Math.floorDiv(fireAt + TICK - 1, TICK);
+//            moments before the last processed tick are gone, including those missed while server was down
+            if (deadline < wheel.getTick()) continue;
+            Reminder reminder = new Reminder(homework.getId(), homework.getSubject(), homework.getDescription(), due, offset, fireAt);
+            timeouts.add(wheel.schedule(reminder, deadline));
+        }
+        scheduled[Short.toUnsignedInt(homework.getId())] = timeouts.isEmpty() ? null : timeouts.toArray(TimerWheel.Timeout[]::new);
+    }
+
+    private void cancelLocked(short homework) {
+        int index = Short.toUnsignedInt(homework);
+        TimerWheel.Timeout<Reminder>[] timeouts = scheduled[index];
+        if (timeouts == null) return;
+        for (TimerWheel.Timeout<Reminder> timeout : timeouts)
+            wheel.cancel(timeout);
+        scheduled[index] = null;
+    }
+
+    /** Fires all reminders, which are due by now */
+    public void advance() {
+        List<Reminder> due = new ArrayList<>();
+        synchronized (this) {
+            wheel.advance(Math.floorDiv(clock.getAsLong(), TICK), due::add);
+        }
+        due.forEach(this::deliver);
+    }
+
+    private void deliver(Reminder reminder) {
+        fired.incrementAndGet();
+        try {
+            delivery.execute(() -> {
+                for (ReminderListener listener : listeners) {
+                    try {
+                        listener.remind(reminder);
+                    } catch (RuntimeException e) {
+                        failed.incrementAndGet();
+                        logger.warning("Reminder listener failed: " + e);
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            dropped.incrementAndGet();
+            logger.warning("Delivery queue is full, reminder about homework %x dropped".formatted(reminder.homework()));
+        }
+    }
+
+    /** Starts moving timer wheel every tick */
+    public synchronized void start() {
+        if (ticker != null) return;
+        ticker = Executors.newSingleThreadScheduledExecutor(daemon("reminder-clock"));
+        ticker.scheduleAtFixedRate(() -> {
+            try {
+                advance();
+            } catch (RuntimeException e) {
+//                exception would cancel further ticks
+                logger.severe("Failed to advance reminders: " + e);
+            }
+        }, TICK, TICK, TimeUnit.MILLISECONDS);
+    }
+
+    /** Stops the clock and delivery */
+    public synchronized void shutdown() {
+        if (ticker != null) ticker.shutdownNow();
+        ticker = null;
+        delivery.shutdown();
+    }
+
+    /** Returns scheduler statistics */
+    public Stats getStats() {
+        int pending;
+        synchronized (this) {
+            pending = wheel.size();
+        }
+        return new Stats(pending, fired.get(), dropped.get(), failed.get());
+    }
+
+    /** Parses offsets configured by "timetable.reminders.offsets" property */
+    static List<Duration> configuredOffsets() {
+        String property = System.getProperty("timetable.reminders.offsets");
+        if (property == null) return DEFAULT_OFFSETS;
+
+        List<Duration> result = new ArrayList<>();
+        for (String offset : property.split(",")) {
+            try {
+                result.add(parseOffset(offset.trim()));
+            } catch (IllegalArgumentException e) {
+                logger.warning("Bad reminder offsets \"" + property + "\", falling back to 24h,1h");
+                return DEFAULT_OFFSETS;
+            }
+        }
+        return result;
+    }
+
+    /** Parses offset like "24h", "90m", "2d" or "30s" */
+    static Duration parseOffset(String offset) {
+        if (offset.length() < 2) throw new IllegalArgumentException(offset);
+        long amount = Long.parseLong(offset.substring(0, offset.length() - 1));
+        return switch (offset.charAt(offset.length() - 1)) {
+            case 'd' -> Duration.ofDays(amount);
+            case 'h' -> Duration.ofHours(amount);
+            case 'm' -> Duration.ofMinutes(amount);
+            case 's' -> Duration.ofSeconds(amount);
+            default -> throw new IllegalArgumentException(offset);
+        };
+    }
+
+    private static ExecutorService newDeliveryExecutor() {
+        int threads = Integer.getInteger("timetable.reminders.threads", 2);
+        int queue = Integer.getInteger("timetable.reminders.queue", 10_000);
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queue), daemon("reminder-delivery"));
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    private static ThreadFactory daemon(String name) {
+        return runnable -> {
+            Thread thread = new Thread(runnable, name);
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
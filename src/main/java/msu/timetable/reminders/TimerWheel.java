@@ -0,0 +1,166 @@
+package msu.timetable.reminders;
+
+import org.springframework.lang.NonNull;
+
+import java.util.function.Consumer;
+
+/**
+ * Hierarchical timer wheel counting time in abstract ticks.
+ * Each of LEVELS wheels has 64 slots, a slot of level i spans 64^i ticks,
+ * so timeouts up to 64^LEVELS ticks ahead are kept without sorting and far ones are cascaded down as time passes.
+ * Slots are circular doubly-linked lists, so both insertion and cancellation take constant time.
+ * Not thread-safe, guarded by its owner.
+ * @param <T> - type of values attached to timeouts
+ */
+public final class TimerWheel<T> {
+
+    private static final int SLOT_BITS = 6;
+    private static final int SLOTS = 1 << SLOT_BITS;
+    private static final int MASK = SLOTS - 1;
+
+    /** Number of wheels. With one-second ticks the wheel spans 64^6 seconds, about 2177 years */
+    private static final int LEVELS = 6;
+
+    /** Timeouts further than this are parked in the last slot reachable by the top wheel */
+    private static final long MAX_SPAN = 1L << (SLOT_BITS * LEVELS);
+
+    /** Pending timeout, also a node of slot list */
+    public static final class Timeout<T> {
+        private final T value;
+        private final long deadline;
+        private Timeout<T> previous;
+        private Timeout<T> next;
+
+        private Timeout(T value, long deadline) {
+            this.value = value;
+            this.deadline = deadline;
+        }
+
+        /** Value getter */
+        public T getValue() {
+            return value;
+        }
+
+        /** Tick, at which timeout expires */
+        public long getDeadline() {
+            return deadline;
+        }
+
+        /** Whether timeout neither expired nor was cancelled */
+        public boolean isPending() {
+            return next != null;
+        }
+    }
+
+    /** Sentinel heads of slot lists: LEVELS wheels of SLOTS slots each */
+    private final Timeout<T>[] slots;
+
+    /** Next tick to be processed */
+    private long tick;
+
+    /** Number of pending timeouts */
+    private int size = 0;
+
+    /** @param tick - current tick, from which wheel starts */
+    @SuppressWarnings("unchecked")
+    public TimerWheel(long tick) {
+        this.tick = tick;
+        this.slots = new Timeout[LEVELS * SLOTS];
+        for (int i = 0; i < slots.length; i++) {
+            Timeout<T> head = new Timeout<>(null, 0);
+            head.previous = head;
+            head.next = head;
+            slots[i] = head;
+        }
+    }
+
+    /** Number of pending timeouts */
+    public int size() {
+        return size;
+    }
+
+    /** Next tick to be processed */
+    public long getTick() {
+        return tick;
+    }
+
+    /**
+     * Adds timeout. Timeouts with passed deadline expire at the next processed tick
+     * @param value - value attached to timeout
+     * @param deadline - tick, at which timeout expires
+     * @return handle, which may be used to cancel timeout
+     */
+    public Timeout<T> schedule(@NonNull T value, long deadline) {
+        Timeout<T> timeout = new Timeout<>(value, deadline);
+        place(timeout);
+        size++;
+        return timeout;
+    }
+
+    /** Cancels pending timeout. Returns false, if it already expired or was cancelled */
+    public boolean cancel(@NonNull Timeout<T> timeout) {
+        if (!timeout.isPending()) return false;
+        unlink(timeout);
+        size--;
+        return true;
+    }
+
+    /**
+     * Processes all ticks up to given one inclusively
+     * @param until - last tick to be processed
+     * @param expired - receives values of expired timeouts in order of ticks
+     */
+    public void advance(long until, @NonNull Consumer<T> expired) {
+        while (tick <= until) {
+//            lower slots are exhausted once per turn of the wheel, then the next slot of upper wheel is spread over them
+            for (int level = 1; level < LEVELS && (tick & ((1L << (SLOT_BITS * level)) - 1)) == 0; level++)
+                cascade(level);
+
+            Timeout<T> head = slots[(int) (tick & MASK)];
+            while (head.next != head) {
+                Timeout<T> timeout = head.next;
+                unlink(timeout);
+                size--;
+                expired.accept(timeout.value);
+            }
+            tick++;
+        }
+    }
+
+    /** Moves timeouts of the current slot of given wheel to lower wheels */
+    private void cascade(int level) {
+        Timeout<T> head = slots[level * SLOTS + (int) ((tick >>> (SLOT_BITS * level)) & MASK)];
+        Timeout<T> timeout = head.next;
+        head.previous = head;
+        head.next = head;
+        while (timeout != head) {
+            Timeout<T> next = timeout.next;
+            place(timeout);
+            timeout = next;
+        }
+    }
+
+    /** Links timeout into slot, which is processed or cascaded at its deadline */
+    private void place(Timeout<T> timeout) {
+        long deadline = Math.max(timeout.deadline, tick);
+        long delta = deadline - tick;
+        if (delta >= MAX_SPAN) deadline = tick + MAX_SPAN - 1;
+
+        int level = 0;
+        while (level < LEVELS - 1 && delta >= 1L << (SLOT_BITS * (level + 1)))
+            level++;
+
+        Timeout<T> head = slots[level * SLOTS + (int) ((deadline >>> (SLOT_BITS * level)) & MASK)];
+        timeout.previous = head.previous;
+        timeout.next = head;
+        head.previous.next = timeout;
+        head.previous = timeout;
+    }
+
+    private static <T> void unlink(Timeout<T> timeout) {
+        timeout.previous.next = timeout.next;
+        timeout.next.previous = timeout.previous;
+        timeout.previous = null;
+        timeout.next = null;
+    }
+}
@@ -0,0 +1,51 @@
+package msu.timetable.reminders;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.lang.NonNull;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.logging.Logger;
+
+/** Posts fired reminders as JSON to given URL, e.g. to a local notification service */
+public class WebhookReminderListener implements ReminderListener {
+
+    private static final Logger logger = Logger.getLogger("WebhookReminderListener");
+
+    /** Time given to webhook to respond, so that slow receiver doesn't hold delivery threads for long */
+    private static final Duration TIMEOUT = Duration.ofSeconds(5);
+
+    private static final ObjectMapper mapper = new ObjectMapper();
+
+    private final URI target;
+    private final HttpClient client = HttpClient.newBuilder().connectTimeout(TIMEOUT).build();
+
+    public WebhookReminderListener(@NonNull URI target) {
+        this.target = target;
+    }
+
+    @Override
+    public void remind(Reminder reminder) {
+        try {
+            HttpRequest request = HttpRequest.newBuilder(target)
+                    .timeout(TIMEOUT)
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofByteArray(mapper.writeValueAsBytes(reminder)))
+                    .build();
+            HttpResponse<Void> response = client.send(request, HttpResponse.BodyHandlers.discarding());
+            if (response.statusCode() >= 300)
+                logger.warning("Webhook " + target + " answered " + response.statusCode());
+        } catch (JsonProcessingException e) {
+            logger.warning("Failed to serialize reminder: " + e.getMessage());
+        } catch (IOException e) {
+            logger.warning("Webhook " + target + " is unreachable: " + e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
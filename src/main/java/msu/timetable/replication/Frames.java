@@ -0,0 +1,46 @@
+package msu.timetable.replication;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+/**
+ * Replication protocol. Follower opens connection and sends handshake:
+ * <pre>UTF magic, long log id, long sequence of the last applied entry, int number of archive segments and their UTF names</pre>
+ * Leader answers with a stream of frames, each starting with its type:
+ * <ul>
+ *     <li>SNAPSHOT: long log id, long sequence, int number of storages,
+ *     then for each storage UTF name, int number of entities and entities as int length and JSON bytes</li>
+ *     <li>ENTRIES: long last sequence of leader, int number of entries,
+ *     then for each entry long sequence, UTF storage, short id, int length and JSON bytes (length -1 for removal)</li>
+ *     <li>HEARTBEAT: long last sequence of leader</li>
+ *     <li>SEGMENT: long sequence (0 for segments missing at connection), UTF file name of archive segment,
+ *     int length and bytes of the file (length -1 if follower already has it)</li>
+ * </ul>
+ * After a snapshot or on continuation leader sends segments, which follower lacks, the later ones come in log order
+ */
+final class Frames {
+
+    static final String MAGIC = "timetable-replication/2";
+
+    static final byte SNAPSHOT = 'S';
+    static final byte ENTRIES = 'E';
+    static final byte HEARTBEAT = 'H';
+    static final byte SEGMENT = 'A';
+
+    /** Storage name of log entries of archive segments, entity of such entry is UTF-8 file name of segment */
+    static final String ARCHIVE = "archive";
+
+    /** Log id sent by follower, which has nothing applied yet */
+    static final long NO_LOG = 0;
+
+    /** Interval of heartbeats on idle connection in milliseconds */
+    static final long HEARTBEAT_INTERVAL = 1000;
+
+    /** Maximal number of entries in one frame */
+    static final int MAX_ENTRIES = 512;
+
+    /** Mapper of entities, configured as in JSON file storage */
+    static final ObjectMapper mapper = Jackson2ObjectMapperBuilder.json().build();
+
+    private Frames() {}
+}
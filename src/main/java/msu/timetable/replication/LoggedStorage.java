@@ -0,0 +1,137 @@
+package msu.timetable.replication;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import msu.timetable.storage.EntityStorage;
+import msu.timetable.storage.StoredEntity;
+import org.springframework.lang.NonNull;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Storage, which appends every successful mutation of underlying storage to replication log.
+ * Mutation and its append are done under lock stripe of the entity, so entries of one entity are in order of its mutations,
+ * while writes of different entities don't wait for each other. Log is locked only to assign sequence of the entry.
+ * Entries of different entities may be appended not in order of mutations, which is fine, since each entry holds full state of one entity
+ * @param <T> - type of entity
+ */
+final class LoggedStorage<T extends StoredEntity> implements EntityStorage<T> {
+
+    /** Number of lock stripes, must be a power of two */
+    private static final int STRIPES = 64;
+
+    private final EntityStorage<T> storage;
+    private final String name;
+    private final ReplicationLog log;
+
+    /** Mutation locks, entity uses stripe determined by its id */
+    private final Object[] stripes = new Object[STRIPES];
+
+    LoggedStorage(EntityStorage<T> storage, String name, ReplicationLog log) {
+        this.storage = storage;
+        this.name = name;
+        this.log = log;
+        Arrays.setAll(stripes, i -> new Object());
+    }
+
+    @Override
+    public T get(short id) {
+        return storage.get(id);
+    }
+
+    @Override
+    public List<T> getAll(short[] ids) {
+        return storage.getAll(ids);
+    }
+
+    @Override
+    public boolean contains(short id) {
+        return storage.contains(id);
+    }
+
+    @Override
+    public void put(@NonNull T entity) {
+        byte[] json = serialize(entity);
+        synchronized (stripeOf(entity.getId())) {
+            storage.put(entity);
+            log.append(name, entity.getId(), json);
+        }
+    }
+
+    @Override
+    public boolean insert(@NonNull T entity) {
+        byte[] json = serialize(entity);
+        synchronized (stripeOf(entity.getId())) {
+            boolean inserted = storage.insert(entity);
+            if (inserted) log.append(name, entity.getId(), json);
+            return inserted;
+        }
+    }
+
+    @Override
+    public boolean replace(@NonNull T expected, @NonNull T updated) {
+        byte[] json = serialize(updated);
+        synchronized (stripeOf(updated.getId())) {
+            boolean replaced = storage.replace(expected, updated);
+            if (replaced) log.append(name, updated.getId(), json);
+            return replaced;
+        }
+    }
+
+    @Override
+    public T remove(short id) {
+        synchronized (stripeOf(id)) {
+            T removed = storage.remove(id);
+            if (removed != null) log.append(name, id, null);
+            return removed;
+        }
+    }
+
+    @Override
+    public boolean remove(@NonNull T expected) {
+        synchronized (stripeOf(expected.getId())) {
+            boolean removed = storage.remove(expected);
+            if (removed) log.append(name, expected.getId(), null);
+            return removed;
+        }
+    }
+
+    @Override
+    public Collection<T> values() {
+        return storage.values();
+    }
+
+    @Override
+    public Collection<T> frozenValues() {
+        return storage.frozenValues();
+    }
+
+    @Override
+    public int size() {
+        return storage.size();
+    }
+
+    @Override
+    public void flush() {
+        storage.flush();
+    }
+
+    @Override
+    public void close() {
+        storage.close();
+    }
+
+    private Object stripeOf(short id) {
+        return stripes[id & (STRIPES - 1)];
+    }
+
+//    entities are immutable once stored, so they are serialized before taking the lock
+    private byte[] serialize(T entity) {
+        try {
+            return Frames.mapper.writeValueAsBytes(entity);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Failed to serialize entity %x of %s".formatted(entity.getId(), name), e);
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package msu.timetable.replication;
+
+import msu.timetable.storage.StoredEntity;
+import org.springframework.lang.Nullable;
+
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Follower's store, into which entities of one replicated storage are applied
+ * @param type - class of entity, into which JSON is read
+ * @param applier - stores entity or removes it, if it is null
+ * @param installer - replaces all entities with those of snapshot
+ * @param <T> - type of entity
+ */
+record Replica<T extends StoredEntity>(Class<T> type, Applier<T> applier, Consumer<List<T>> installer) {
+
+    @FunctionalInterface
+    interface Applier<T> {
+        void apply(short id, @Nullable T entity);
+    }
+}
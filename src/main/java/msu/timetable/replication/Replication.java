@@ -0,0 +1,140 @@
+package msu.timetable.replication;
+
+import msu.timetable.archive.Archive;
+import msu.timetable.models.Homework;
+import msu.timetable.models.Homeworks;
+import msu.timetable.models.Subject;
+import msu.timetable.models.Subjects;
+import msu.timetable.storage.EntityStorage;
+import msu.timetable.storage.StoredEntity;
+import org.springframework.lang.NonNull;
+import org.springframework.lang.Nullable;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.util.Locale;
+import java.util.Map;
+import java.util.logging.Logger;
+
+/**
+ * Leader-follower replication of stores. Leader logs every mutation of its storages and streams the log over TCP
+ * to followers. Follower catches up from leader's snapshot, applies the log to its own stores and serves reads,
+ * while writes are redirected to leader. Segments of leader's archive are shipped to followers too,
+ * so that records moved into archive by leader remain readable on followers.
+ * <p>
+ * Configured by system properties:
+ * <ul>
+ *     <li>timetable.replication.role - "standalone" (default), "leader" or "follower"</li>
+ *     <li>timetable.replication.port - TCP port, on which leader accepts followers (default 7070)</li>
+ *     <li>timetable.replication.log - number of latest entries kept by leader for reconnecting followers (default 100000)</li>
+ *     <li>timetable.replication.leader - "host:port" of leader's replication port, required for follower</li>
+ *     <li>timetable.replication.leaderUrl - base URL of leader's API, to which follower redirects writes</li>
+ * </ul>
+ * Several instances may run on one machine, if each one has its own server.port and timetable.storage.dir
+ */
+public final class Replication {
+
+    private static final Logger logger = Logger.getLogger("Replication");
+
+    public enum Role { STANDALONE, LEADER, FOLLOWER }
+
+    private static final Role role = configuredRole();
+
+    /** Log of leader's storages, null for other roles */
+    private static final ReplicationLog log = role == Role.LEADER
+            ? new ReplicationLog(Integer.getInteger("timetable.replication.log", 100_000))
+            : null;
+
+    private static ReplicationServer server = null;
+    private static ReplicationClient client = null;
+
+    private Replication() {}
+
+    /** Returns configured role of this instance */
+    public static Role getRole() {
+        return role;
+    }
+
+    /** Returns base URL of leader's API, to which follower redirects writes, or null if it isn't configured */
+    @Nullable
+    public static String getLeaderUrl() {
+        return System.getProperty("timetable.replication.leaderUrl");
+    }
+
+    /**
+     * Makes storage replicated, if this instance is leader
+     * @param name - name of storage, under which followers apply it
+     * @param storage - storage of entities
+     * @return storage, which logs its mutations, or the same storage
+     */
+    public static <T extends StoredEntity> EntityStorage<T> logged(@NonNull String name, @NonNull EntityStorage<T> storage) {
+        if (log == null) return storage;
+        log.register(name, storage);
+        return new LoggedStorage<>(storage, name, log);
+    }
+
+    /** Starts accepting followers or following leader according to role */
+    public static synchronized void start() {
+        if (server != null || client != null) return;
+        switch (role) {
+            case LEADER -> {
+//                stores register their storages in log on creation
+                Subjects.getInstance();
+                Homeworks.getInstance();
+                Archive archive = Archive.getInstance();
+                archive.addSegmentListener(log::appendSegment);
+                try {
+                    server = new ReplicationServer(log, Integer.getInteger("timetable.replication.port", 7070), archive);
+                } catch (IOException e) {
+                    throw new UncheckedIOException("Failed to open replication port", e);
+                }
+                server.start();
+            }
+            case FOLLOWER -> {
+                Subjects subjects = Subjects.getInstance();
+                Homeworks homeworks = Homeworks.getInstance();
+                client = new ReplicationClient(leaderAddress(), Map.of(
+                        "subjects", new Replica<>(Subject.class, subjects::applyReplicated, subjects::installReplicated),
+                        "homeworks", new Replica<>(Homework.class, homeworks::applyReplicated, homeworks::installReplicated)
+                ), Archive.getInstance());
+                client.start();
+            }
+            case STANDALONE -> {}
+        }
+    }
+
+    /** Stops replication */
+    public static synchronized void shutdown() {
+        if (server != null) server.shutdown();
+        if (client != null) client.shutdown();
+        server = null;
+        client = null;
+    }
+
+    /** Returns replication state of this instance */
+    public static synchronized ReplicationStatus getStatus() {
+        if (client != null) return client.getStatus();
+        long sequence = log != null ? log.lastSequence() : 0;
+        return new ReplicationStatus(role, sequence, sequence, 0, 0, true, server != null ? server.getFollowers() : 0);
+    }
+
+    private static Role configuredRole() {
+        String property = System.getProperty("timetable.replication.role", "standalone");
+        try {
+            return Role.valueOf(property.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            logger.warning("Unknown replication role \"" + property + "\", running standalone");
+            return Role.STANDALONE;
+        }
+    }
+
+    private static InetSocketAddress leaderAddress() {
+        String property = System.getProperty("timetable.replication.leader");
+        if (property == null)
+            throw new IllegalStateException("timetable.replication.leader must be set for follower");
+        int colon = property.lastIndexOf(':');
+        if (colon < 0) return new InetSocketAddress(property, 7070);
+        return new InetSocketAddress(property.substring(0, colon), Integer.parseInt(property.substring(colon + 1)));
+    }
+}
@@ -0,0 +1,207 @@
+package msu.timetable.replication;
+
+import msu.timetable.archive.Archive;
+import msu.timetable.storage.StoredEntity;
+import org.springframework.lang.Nullable;
+
+import java.io.*;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Logger;
+
+/**
+ * Follower side of replication: keeps connection to leader, catches up from snapshot when needed and applies log.
+ * Archive segments of leader are installed into follower's archive, so that it serves past ranges as well.
+ * Reconnects after failures, continuing from the last applied entry, if leader still has it
+ */
+final class ReplicationClient {
+
+    private static final Logger logger = Logger.getLogger("ReplicationClient");
+
+    /** Pause between reconnection attempts in milliseconds */
+    private static final long RECONNECT_DELAY = 1000;
+
+    private final InetSocketAddress leader;
+    private final Map<String, Replica<?>> replicas;
+    private final Archive archive;
+
+    private volatile boolean running = false;
+    private volatile Socket socket = null;
+
+//    state is written by the replication thread only
+    private volatile long logId = Frames.NO_LOG;
+    private volatile long applied = 0;
+    private volatile long leaderSequence = 0;
+    private volatile boolean connected = false;
+    /** Time, when follower learned about entries it hasn't applied, 0 if it is up to date */
+    private volatile long behindSince = 0;
+    private volatile long lastContact = 0;
+
+    /**
+     * @param leader - address of leader's replication port
+     * @param replicas - stores, into which storages of leader are applied, by storage name
+     * @param archive - archive, into which segments of leader are installed, may be null
+     */
+    ReplicationClient(InetSocketAddress leader, Map<String, Replica<?>> replicas, @Nullable Archive archive) {
+        this.leader = leader;
+        this.replicas = replicas;
+        this.archive = archive;
+    }
+
+    void start() {
+        running = true;
+        Thread thread = new Thread(this::run, "replication-follower");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    void shutdown() {
+        running = false;
+        Socket current = socket;
+        if (current != null) {
+            try {
+                current.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    /** Returns replication state of this follower */
+    ReplicationStatus getStatus() {
+        long now = System.currentTimeMillis();
+        long lag;
+        if (!connected) lag = lastContact == 0 ? -1 : now - (behindSince != 0 ? behindSince : lastContact);
+        else lag = behindSince != 0 ? now - behindSince : 0;
+        return new ReplicationStatus(Replication.Role.FOLLOWER, applied, leaderSequence,
+                Math.max(0, leaderSequence - applied), lag, connected, 0);
+    }
+
+    private void run() {
+        while (running) {
+            try (Socket socket = new Socket()) {
+                this.socket = socket;
+                socket.connect(leader, (int) (3 * Frames.HEARTBEAT_INTERVAL));
+                socket.setSoTimeout((int) (3 * Frames.HEARTBEAT_INTERVAL));
+                socket.setTcpNoDelay(true);
+
+                DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+                out.writeUTF(Frames.MAGIC);
+                out.writeLong(logId);
+                out.writeLong(applied);
+                List<String> segments = archive != null ? archive.getSegmentNames() : List.of();
+                out.writeInt(segments.size());
+                for (String segment : segments)
+                    out.writeUTF(segment);
+                out.flush();
+
+                connected = true;
+                logger.info("Connected to replication leader " + leader);
+                DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream(), 1 << 16));
+                while (running) {
+                    byte type = in.readByte();
+                    lastContact = System.currentTimeMillis();
+                    switch (type) {
+                        case Frames.SNAPSHOT -> readSnapshot(in);
+                        case Frames.ENTRIES -> readEntries(in);
+                        case Frames.HEARTBEAT -> learned(in.readLong());
+                        case Frames.SEGMENT -> readSegment(in);
+                        default -> throw new IOException("Unknown frame " + type);
+                    }
+                }
+            } catch (IOException e) {
+                if (running) logger.warning("Replication from " + leader + " failed: " + e.getMessage());
+            } finally {
+                connected = false;
+                socket = null;
+            }
+
+            if (running) {
+                try {
+                    Thread.sleep(RECONNECT_DELAY);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }
+    }
+
+    /** Records leader's last sequence */
+    private void learned(long sequence) {
+        leaderSequence = Math.max(leaderSequence, sequence);
+        if (applied >= leaderSequence) behindSince = 0;
+        else if (behindSince == 0) behindSince = System.currentTimeMillis();
+    }
+
+    private void readSnapshot(DataInputStream in) throws IOException {
+        long snapshotLog = in.readLong();
+        long sequence = in.readLong();
+        int storages = in.readInt();
+        for (int i = 0; i < storages; i++) {
+            String name = in.readUTF();
+            int count = in.readInt();
+            install(replicas.get(name), in, count);
+        }
+        logId = snapshotLog;
+        applied = sequence;
+//        new leader log starts over, so its sequence replaces the old one
+        leaderSequence = sequence;
+        behindSince = 0;
+        logger.info("Installed snapshot at " + sequence);
+    }
+
+    private static <T extends StoredEntity> void install(Replica<T> replica, DataInputStream in, int count) throws IOException {
+        List<T> entities = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            byte[] json = new byte[in.readInt()];
+            in.readFully(json);
+//            storages unknown to follower are skipped
+            if (replica != null) entities.add(Frames.mapper.readValue(json, replica.type()));
+        }
+        if (replica != null) replica.installer().accept(entities);
+    }
+
+    private void readEntries(DataInputStream in) throws IOException {
+        learned(in.readLong());
+        int count = in.readInt();
+        for (int i = 0; i < count; i++) {
+            long sequence = in.readLong();
+            String storage = in.readUTF();
+            short id = in.readShort();
+            int length = in.readInt();
+            byte[] json = null;
+            if (length >= 0) {
+                json = new byte[length];
+                in.readFully(json);
+            }
+
+            apply(replicas.get(storage), id, json);
+            applied = sequence;
+        }
+        learned(leaderSequence);
+    }
+
+    private static <T extends StoredEntity> void apply(Replica<T> replica, short id, byte[] json) throws IOException {
+        if (replica == null) return;
+        replica.applier().apply(id, json == null ? null : Frames.mapper.readValue(json, replica.type()));
+    }
+
+    private void readSegment(DataInputStream in) throws IOException {
+        long sequence = in.readLong();
+        String name = in.readUTF();
+        int length = in.readInt();
+        if (length >= 0) {
+            byte[] content = new byte[length];
+            in.readFully(content);
+            if (archive != null) archive.installSegment(name, content);
+        }
+
+//        segments missing at connection aren't entries of log
+        if (sequence != 0) {
+            applied = sequence;
+            learned(leaderSequence);
+        }
+    }
+}
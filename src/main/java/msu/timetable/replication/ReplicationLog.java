@@ -0,0 +1,143 @@
+package msu.timetable.replication;
+
+import msu.timetable.storage.EntityStorage;
+import msu.timetable.storage.StoredEntity;
+import org.springframework.lang.Nullable;
+
+import java.nio.charset.StandardCharsets;
+import java.security.SecureRandom;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Ordered log of store mutations kept by replication leader.
+ * Each entry holds full state of one entity after the mutation, so entries may be applied more than once.
+ * Only the latest entries are kept in a ring, followers, which fell further behind, catch up from a snapshot.
+ * Storages are mutated before their entries are appended, so snapshot may already contain mutations appended after its sequence,
+ * followers apply them once more
+ */
+final class ReplicationLog {
+
+    /**
+     * Mutation of one entity
+     * @param sequence - position in log, starting from 1
+     * @param storage - name of storage, e.g. "subjects", or Frames.ARCHIVE for new archive segment
+     * @param id - identifier of entity
+     * @param entity - JSON of entity after mutation, null if it was removed
+     */
+    record Entry(long sequence, String storage, short id, @Nullable byte[] entity) {}
+
+    /**
+     * Consistent view of all storages
+     * @param sequence - sequence of the last entry included in the view
+     * @param storages - frozen entities of each storage by its name, see EntityStorage.frozenValues()
+     */
+    record Snapshot(long sequence, Map<String, Collection<? extends StoredEntity>> storages) {}
+
+    /** Identity of this log, never equal to Frames.NO_LOG. Leader restart starts a new log, which followers can't continue */
+    final long id = new SecureRandom().nextLong() | 1;
+
+    /** Guards the ring, storages aren't mutated under it */
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition appended = lock.newCondition();
+
+    private final Entry[] ring;
+    private long last = 0;
+
+    private final Map<String, EntityStorage<? extends StoredEntity>> storages = new LinkedHashMap<>();
+
+    /** @param capacity - number of latest entries kept for followers */
+    ReplicationLog(int capacity) {
+        this.ring = new Entry[capacity];
+    }
+
+    /** Adds storage to snapshots */
+    void register(String name, EntityStorage<? extends StoredEntity> storage) {
+        lock.lock();
+        try {
+            storages.put(name, storage);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Appends mutation, which was already applied to storage */
+    void append(String storage, short id, @Nullable byte[] entity) {
+        lock.lock();
+        try {
+            last++;
+            ring[(int) (last % ring.length)] = new Entry(last, storage, id, entity);
+            appended.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Appends new archive segment, see Frames.ARCHIVE */
+    void appendSegment(String name) {
+        append(Frames.ARCHIVE, (short) 0, name.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /** Returns sequence of the last entry */
+    long lastSequence() {
+        lock.lock();
+        try {
+            return last;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Whether follower, which applied entries up to given sequence, may continue from this log */
+    boolean canContinue(long applied) {
+        lock.lock();
+        try {
+            return applied <= last && applied >= last - ring.length;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Waits for entries starting from given sequence
+     * @param from - sequence of the first requested entry
+     * @param max - maximal number of returned entries
+     * @param timeout - maximal time to wait in milliseconds
+     * @return entries, empty if none appeared in time, or null if the first entry was already evicted
+     */
+    @Nullable
+    List<Entry> read(long from, int max, long timeout) throws InterruptedException {
+        lock.lock();
+        try {
+            long nanos = TimeUnit.MILLISECONDS.toNanos(timeout);
+            while (last < from && nanos > 0)
+                nanos = appended.awaitNanos(nanos);
+            if (from <= last - ring.length) return null;
+
+            long to = Math.min(last, from + max - 1);
+            List<Entry> entries = new ArrayList<>((int) Math.max(0, to - from + 1));
+            for (long sequence = from; sequence <= to; sequence++)
+                entries.add(ring[(int) (sequence % ring.length)]);
+            return entries;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Takes frozen views of all storages. Appends wait only while views are taken,
+     * entities are serialized and sent afterwards
+     */
+    Snapshot snapshot() {
+        lock.lock();
+        try {
+            Map<String, Collection<? extends StoredEntity>> views = new LinkedHashMap<>();
+            storages.forEach((name, storage) -> views.put(name, storage.frozenValues()));
+            return new Snapshot(last, views);
+        } finally {
+            lock.unlock();
+        }
+    }
+}
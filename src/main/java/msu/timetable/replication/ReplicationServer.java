@@ -0,0 +1,208 @@
+package msu.timetable.replication;
+
+import msu.timetable.archive.Archive;
+import msu.timetable.storage.StoredEntity;
+import org.springframework.lang.Nullable;
+
+import java.io.*;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Logger;
+
+/** Leader side of replication: accepts followers and streams log to each of them on its own thread */
+final class ReplicationServer {
+
+    private static final Logger logger = Logger.getLogger("ReplicationServer");
+
+    private final ReplicationLog log;
+    private final Archive archive;
+    private final ServerSocket serverSocket;
+    private final Set<Socket> followers = ConcurrentHashMap.newKeySet();
+
+    /**
+     * @param log - log of leader's storages
+     * @param port - TCP port to listen, 0 for any free port
+     * @param archive - archive, which segments are shipped to followers, may be null
+     */
+    ReplicationServer(ReplicationLog log, int port, @Nullable Archive archive) throws IOException {
+        this.log = log;
+        this.archive = archive;
+        this.serverSocket = new ServerSocket(port);
+    }
+
+    /** Port, on which followers are accepted */
+    int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    /** Number of connected followers */
+    int getFollowers() {
+        return followers.size();
+    }
+
+    void start() {
+        Thread acceptor = new Thread(this::accept, "replication-acceptor");
+        acceptor.setDaemon(true);
+        acceptor.start();
+        logger.info("Replication leader listens on port " + getPort());
+    }
+
+    void shutdown() {
+        try {
+            serverSocket.close();
+        } catch (IOException ignored) {
+        }
+        for (Socket follower : followers) {
+            try {
+                follower.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    private void accept() {
+        while (!serverSocket.isClosed()) {
+            try {
+                Socket follower = serverSocket.accept();
+                follower.setTcpNoDelay(true);
+                Thread sender = new Thread(() -> serve(follower), "replication-sender-" + follower.getRemoteSocketAddress());
+                sender.setDaemon(true);
+                sender.start();
+            } catch (IOException e) {
+                if (!serverSocket.isClosed()) logger.warning("Failed to accept follower: " + e.getMessage());
+            }
+        }
+    }
+
+    private void serve(Socket follower) {
+        followers.add(follower);
+        try (follower;
+             DataInputStream in = new DataInputStream(new BufferedInputStream(follower.getInputStream()));
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(follower.getOutputStream(), 1 << 16))) {
+            if (!Frames.MAGIC.equals(in.readUTF())) {
+                logger.warning("Unknown protocol of " + follower.getRemoteSocketAddress());
+                return;
+            }
+            long logId = in.readLong();
+            long applied = in.readLong();
+            Set<String> segments = new HashSet<>();
+            for (int i = in.readInt(); i > 0; i--)
+                segments.add(in.readUTF());
+
+            long next;
+            if (logId == log.id && log.canContinue(applied)) {
+                next = applied + 1;
+            } else {
+                next = writeSnapshot(out) + 1;
+            }
+//            segments published later are in log after next
+            writeMissingSegments(out, segments);
+
+            while (true) {
+                List<ReplicationLog.Entry> entries = log.read(next, Frames.MAX_ENTRIES, Frames.HEARTBEAT_INTERVAL);
+                if (entries == null) {
+//                    follower fell behind the ring, so it starts over from a snapshot
+                    next = writeSnapshot(out) + 1;
+                    writeMissingSegments(out, segments);
+                } else if (entries.isEmpty()) {
+                    out.writeByte(Frames.HEARTBEAT);
+                    out.writeLong(log.lastSequence());
+                } else {
+                    writeEntries(out, entries, segments);
+                    next = entries.get(entries.size() - 1).sequence() + 1;
+                }
+                out.flush();
+            }
+        } catch (EOFException | SocketException e) {
+            logger.info("Follower " + follower.getRemoteSocketAddress() + " disconnected");
+        } catch (IOException e) {
+            logger.warning("Replication to " + follower.getRemoteSocketAddress() + " failed: " + e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            followers.remove(follower);
+        }
+    }
+
+    /** Writes snapshot and returns its sequence */
+    private long writeSnapshot(DataOutputStream out) throws IOException {
+        ReplicationLog.Snapshot snapshot = log.snapshot();
+        out.writeByte(Frames.SNAPSHOT);
+        out.writeLong(log.id);
+        out.writeLong(snapshot.sequence());
+        out.writeInt(snapshot.storages().size());
+        for (Map.Entry<String, Collection<? extends StoredEntity>> storage : snapshot.storages().entrySet()) {
+            out.writeUTF(storage.getKey());
+            out.writeInt(storage.getValue().size());
+            for (StoredEntity entity : storage.getValue()) {
+                byte[] json = Frames.mapper.writeValueAsBytes(entity);
+                out.writeInt(json.length);
+                out.write(json);
+            }
+        }
+        return snapshot.sequence();
+    }
+
+    /**
+     * Writes segments of archive, which follower doesn't have
+     * @param segments - names of follower's segments, sent segments are added to them
+     */
+    private void writeMissingSegments(DataOutputStream out, Set<String> segments) throws IOException {
+        if (archive == null) return;
+        for (String name : archive.getSegmentNames())
+            if (segments.add(name)) writeSegment(out, 0, name, archive.readSegment(name));
+    }
+
+    private void writeSegment(DataOutputStream out, long sequence, String name, @Nullable byte[] content) throws IOException {
+        out.writeByte(Frames.SEGMENT);
+        out.writeLong(sequence);
+        out.writeUTF(name);
+        if (content == null) {
+            out.writeInt(-1);
+        } else {
+            out.writeInt(content.length);
+            out.write(content);
+        }
+    }
+
+    /**
+     * Writes entries in ENTRIES frames, interrupted by SEGMENT frame for each entry of archive segment
+     * @param segments - names of follower's segments, sent segments are added to them
+     */
+    private void writeEntries(DataOutputStream out, List<ReplicationLog.Entry> entries, Set<String> segments) throws IOException {
+        int from = 0;
+        for (int i = 0; i < entries.size(); i++) {
+            ReplicationLog.Entry entry = entries.get(i);
+            if (!Frames.ARCHIVE.equals(entry.storage())) continue;
+            writeEntries(out, entries.subList(from, i));
+            from = i + 1;
+
+            String name = new String(entry.entity(), StandardCharsets.UTF_8);
+            byte[] content = archive != null && segments.add(name) ? archive.readSegment(name) : null;
+            writeSegment(out, entry.sequence(), name, content);
+        }
+        writeEntries(out, entries.subList(from, entries.size()));
+    }
+
+    private void writeEntries(DataOutputStream out, List<ReplicationLog.Entry> entries) throws IOException {
+        if (entries.isEmpty()) return;
+        out.writeByte(Frames.ENTRIES);
+        out.writeLong(log.lastSequence());
+        out.writeInt(entries.size());
+        for (ReplicationLog.Entry entry : entries) {
+            out.writeLong(entry.sequence());
+            out.writeUTF(entry.storage());
+            out.writeShort(entry.id());
+            if (entry.entity() == null) {
+                out.writeInt(-1);
+            } else {
+                out.writeInt(entry.entity().length);
+                out.write(entry.entity());
+            }
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package msu.timetable.replication;
+
+/**
+ * Replication state of this instance
+ * @param role - role of instance
+ * @param sequence - sequence of the last entry written (leader) or applied (follower)
+ * @param leaderSequence - sequence of the last entry known to exist on leader
+ * @param lagEntries - number of leader's entries, which aren't applied yet
+ * @param lagMillis - time, for which follower's data has been behind leader, or -1 if it never reached leader
+ * @param connected - whether follower is connected to leader, always true for leader
+ * @param followers - number of followers connected to leader
+ */
+public record ReplicationStatus(Replication.Role role, long sequence, long leaderSequence,
+                                long lagEntries, long lagMillis, boolean connected, int followers) {}
@@ -0,0 +1,19 @@
+package msu.timetable.rest;
+
+import msu.timetable.APIResponse;
+import msu.timetable.storage.VersionConflictException;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.RestControllerAdvice;
+
+/** Converts exceptions thrown by endpoints into API responses with proper HTTP statuses */
+@RestControllerAdvice
+public class ApiExceptionHandler {
+
+    /** Entity was updated by someone else since the version client has seen */
+    @ExceptionHandler(VersionConflictException.class)
+    public ResponseEntity<APIResponse> onVersionConflict(VersionConflictException e) {
+        return ResponseEntity.status(HttpStatus.CONFLICT).body(new APIResponse(-3, e.getMessage()));
+    }
+}
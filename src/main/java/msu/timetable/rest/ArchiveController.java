@@ -0,0 +1,65 @@
+package msu.timetable.rest;
+
+import msu.timetable.APIResponse;
+import msu.timetable.archive.Archive;
+import msu.timetable.archive.ArchiveMover;
+import msu.timetable.replication.Replication;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import javax.annotation.PreDestroy;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Controller of archive of past lessons and overdue homework.
+ * Creating the controller starts periodic moves into archive, if they are enabled, see ArchiveMover.
+ * Replication followers don't move records themselves, they receive removals and archive segments from leader
+ */
+@RestController
+public class ArchiveController {
+
+    private final Archive archive = Archive.getInstance();
+    private final ArchiveMover mover = ArchiveMover.create();
+
+    public ArchiveController() {
+        if (Boolean.getBoolean("timetable.archive.enabled") && Replication.getRole() != Replication.Role.FOLLOWER)
+            mover.start(TimeUnit.MINUTES.toMillis(Integer.getInteger("timetable.archive.intervalMinutes", 1440)));
+    }
+
+    /**
+     * Returns archived lessons and homework in time range
+     * @param from - inclusive millisecond timestamp
+     * @param to - exclusive millisecond timestamp
+     * @return APIResponse{ int status; JsonNode data }
+     * @see APIResponse
+     */
+    @GetMapping("/api/getArchive")
+    public APIResponse getArchive(@RequestParam long from, @RequestParam long to) {
+        if (from >= to)
+            return new APIResponse(-1, "Empty time range");
+        return new APIResponse(0, Map.of(
+                "lessons", archive.getLessons(from, to),
+                "homeworks", archive.getHomeworks(from, to)
+        ));
+    }
+
+    /**
+     * Returns statistics of archive
+     * @return APIResponse{ int status; JsonNode data }
+     * @see APIResponse
+     * @see Archive.Stats
+     */
+    @GetMapping("/api/getArchiveStats")
+    public APIResponse getArchiveStats() {
+        return new APIResponse(0, archive.getStats());
+    }
+
+    /** Method executed before server shutdown responsible for stopping moves */
+    @PreDestroy
+    public void onShutdown() {
+        mover.shutdown();
+    }
+
+}
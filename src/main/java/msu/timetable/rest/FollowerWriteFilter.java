@@ -0,0 +1,57 @@
+package msu.timetable.rest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import msu.timetable.APIResponse;
+import msu.timetable.replication.Replication;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.stereotype.Component;
+
+import javax.servlet.*;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Redirects writes, which reach replication follower, to leader with 307 Temporary Redirect,
+ * so that clients repeat them with the same method and body.
+ * Write is any request, which isn't GET, or GET of an endpoint named like create*, update*, remove*, set*, import* or rebuild*
+ */
+@Component
+public class FollowerWriteFilter implements Filter {
+
+    private static final List<String> WRITE_PREFIXES = List.of("create", "update", "remove", "set", "import", "rebuild");
+
+    private static final ObjectMapper mapper = Jackson2ObjectMapperBuilder.json().build();
+
+    @Override
+    public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain) throws IOException, ServletException {
+        if (Replication.getRole() != Replication.Role.FOLLOWER
+                || !(request instanceof HttpServletRequest http) || !isWrite(http)) {
+            chain.doFilter(request, response);
+            return;
+        }
+
+        HttpServletResponse httpResponse = (HttpServletResponse) response;
+        String leader = Replication.getLeaderUrl();
+        if (leader == null) {
+            httpResponse.setStatus(HttpStatus.SERVICE_UNAVAILABLE.value());
+            httpResponse.setContentType("application/json");
+            mapper.writeValue(httpResponse.getOutputStream(), new APIResponse(-1, "Read-only replica, leader URL isn't configured"));
+            return;
+        }
+
+        String query = http.getQueryString();
+        httpResponse.setStatus(HttpStatus.TEMPORARY_REDIRECT.value());
+        httpResponse.setHeader("Location", leader + http.getRequestURI() + (query != null ? "?" + query : ""));
+    }
+
+    static boolean isWrite(HttpServletRequest request) {
+        String method = request.getMethod();
+        if (!method.equals("GET") && !method.equals("HEAD") && !method.equals("OPTIONS")) return true;
+        String path = request.getRequestURI();
+        String endpoint = path.substring(path.lastIndexOf('/') + 1);
+        return WRITE_PREFIXES.stream().anyMatch(endpoint::startsWith);
+    }
+}
@@ -1,18 +1,24 @@
 package msu.timetable.rest;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
 import msu.timetable.APIResponse;
+import msu.timetable.models.FreeSlot;
+import msu.timetable.models.FreeSlotFinder;
 import msu.timetable.models.Homework;
+import msu.timetable.models.HomeworkIndex;
 import msu.timetable.models.Homeworks;
-import msu.timetable.models.Subject;
+import msu.timetable.models.RawJson;
 import msu.timetable.models.Subjects;
-import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import msu.timetable.models.TimetableCalendar;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PatchMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
 import javax.annotation.PreDestroy;
 import java.io.IOException;
+import java.io.InputStream;
 import java.util.*;
 import java.util.logging.Logger;
 
@@ -42,118 +48,255 @@ public class HomeworkController {
     }
 
     /**
-     * Deletes Homework
+     * Creates new Homework from JSON body: {"subject": id, "description": string, "dueDate": timestamp, "extras": any}.
+     * Only subject is required
+     * @param body - request body, at most JsonBodies.MAX_BODY_SIZE bytes
+     * @return APIResponse{ int status; JsonNode data }
+     * @see APIResponse
+     */
+    @PostMapping("/api/createHomework")
+    public APIResponse postHomework(InputStream body) {
+        JsonBodies.HomeworkBody fields = JsonBodies.readHomework(body);
+        if (fields.subject() == null)
+            return new APIResponse(-1, "Subject is required");
+
+        Homework hw = homeworks.createHomework(fields.subject(), fields::applyTo);
+        if (hw == null)
+            return new APIResponse(-1, "Subject with ID=%x not found".formatted(fields.subject()));
+        return new APIResponse(0, hw);
+    }
+
+    /**
+     * Updates fields of Homework present in JSON body: {"subject": id, "description": string, "dueDate": timestamp, "extras": any}.
+     * All fields are changed at once, "extras": null removes extra data
+     * @param homework - id of the homework
+     * @param body - request body, at most JsonBodies.MAX_BODY_SIZE bytes
+     * @param ifMatch - If-Match header with version of entity seen by client
+     * @param version - version of entity seen by client, alternative to If-Match header
+     * @return APIResponse{ int status; JsonNode data }
+     * @see APIResponse
+     */
+    @PatchMapping("/api/updateHomework")
+    public APIResponse patchHomework(@RequestParam short homework, InputStream body,
+                                     @RequestHeader(value = "If-Match", required = false) String ifMatch,
+                                     @RequestParam(required = false) Long version) {
+        long expectedVersion = RequestVersions.expectedVersion(ifMatch, version);
+        JsonBodies.HomeworkBody fields = JsonBodies.readHomework(body);
+        if (fields.subject() != null && subjects.getSubjectById(fields.subject()) == null)
+            return new APIResponse(-1, "Subject with ID=%x not found".formatted(fields.subject()));
+
+        Homework hw = homeworks.updateHomework(homework, expectedVersion, fields::applyTo);
+        if (hw == null) return APIResponse.NOT_FOUND;
+        return new APIResponse(0, hw);
+    }
+
+    /**
+     * Deletes Homework, also from homework list of its subject
      * @param homework - id of the homework */
     @GetMapping("/api/removeHomework")
     public APIResponse removeHomework(@RequestParam short homework) {
         Homework hw = homeworks.getHomeworkById(homework);
         if (hw == null) return APIResponse.NOT_FOUND;
 
-        short subId = hw.getSubject();
-        Subject sub = subjects.getSubjectById(subId);
-        if (sub != null)
-            sub.getHomeworks().remove(subId);
         homeworks.removeHomework(hw);
         return APIResponse.SUCCESS;
     }
 
     /**
-     * Returns all homeworks for subject
+     * Returns all homeworks for subject ordered by id
      * @param subject - id of the subject
      * */
     @GetMapping("/api/getSubjectHomework")
     public APIResponse getHomeworksFor(@RequestParam short subject) {
-        Subject sub = subjects.getSubjectById(subject);
-        if (sub == null) return APIResponse.NOT_FOUND;
+        if (subjects.getSubjectById(subject) == null) return APIResponse.NOT_FOUND;
+        return new APIResponse(0, homeworks.getHomeworksOfSubject(subject));
+    }
 
-        List<Short> homeworkIds = sub.getHomeworks();
-        List<Homework> subHomeworks = homeworkIds.stream().map(homeworks::getHomeworkById).toList();
-        return new APIResponse(0, subHomeworks);
+    /**
+     * Checks, whether relationship index matches subjects of homeworks
+     * @return APIResponse{ int status; JsonNode data }
+     * @see APIResponse
+     */
+    @GetMapping("/api/checkHomeworkIndex")
+    public APIResponse checkHomeworkIndex() {
+        return new APIResponse(0, homeworks.checkIntegrity(false));
     }
 
     /**
-     * Assigns Homework with "homework" ID to subject with "subject" ID
+     * Checks relationship index and rebuilds it, if it doesn't match subjects of homeworks
+     * @return APIResponse{ int status; JsonNode data }
+     * @see APIResponse
+     */
+    @GetMapping("/api/rebuildHomeworkIndex")
+    public APIResponse rebuildHomeworkIndex() {
+        return new APIResponse(0, homeworks.checkIntegrity(true));
+    }
+
+    /**
+     * Searches homework by words of its description and text fields of extras
+     * @param query - words to search, last one is matched as a prefix
+     * @param subject - optional id of subject, which homework is searched
+     * @param from - optional millisecond timestamp, before which homework isn't due
+     * @param to - optional millisecond timestamp, after which homework isn't due
+     * @param limit - maximal number of results, at most HomeworkIndex.MAX_LIMIT
+     * @return APIResponse{ int status; JsonNode data }
+     * @see APIResponse
+     */
+    @GetMapping("/api/searchHomework")
+    public APIResponse searchHomework(@RequestParam String query,
+                                      @RequestParam(required = false) Short subject,
+                                      @RequestParam(required = false) Long from,
+                                      @RequestParam(required = false) Long to,
+                                      @RequestParam(defaultValue = "20") int limit) {
+        if (limit <= 0 || limit > HomeworkIndex.MAX_LIMIT)
+            return new APIResponse(-1, "Limit must be between 1 and %d".formatted(HomeworkIndex.MAX_LIMIT));
+        List<Homework> found = homeworks.searchHomework(
+                query,
+                subject,
+                from != null ? new Date(from) : null,
+                to != null ? new Date(to) : null,
+                limit
+        );
+        return new APIResponse(0, found);
+    }
+
+    /**
+     * Assigns Homework with "homework" ID to subject with "subject" ID and returns updated homework
      * @param subject - id of subject
      * @param homework - id of homework
+     * @param ifMatch - If-Match header with version of entity seen by client
+     * @param version - version of entity seen by client, alternative to If-Match header
      * @return APIResponse{ int status; JsonNode data }
      * @see APIResponse
      * */
     @GetMapping("/api/setHomeworkSubject")
-    public APIResponse setSubject(@RequestParam short homework, @RequestParam short subject) {
-        Homework hw = homeworks.getHomeworkById(homework);
-        if (hw != null && subjects.getSubjectById(subject) != null) {
-            hw.setSubject(subject);
-            return APIResponse.SUCCESS;
-        } else {
-            return APIResponse.NOT_FOUND;
-        }
+    public APIResponse setSubject(@RequestParam short homework, @RequestParam short subject,
+                                  @RequestHeader(value = "If-Match", required = false) String ifMatch,
+                                  @RequestParam(required = false) Long version) {
+        if (subjects.getSubjectById(subject) == null) return APIResponse.NOT_FOUND;
+        Homework hw = homeworks.setHomeworkSubject(homework, RequestVersions.expectedVersion(ifMatch, version), subject);
+        if (hw == null) return APIResponse.NOT_FOUND;
+        return new APIResponse(0, hw);
     }
 
     /**
-     * Assigns new content to given Homework
+     * Assigns new content to given Homework and returns it with new version
      * @param homework - id of homework
      * @param b64 - Base64 encoded content
+     * @param ifMatch - If-Match header with version of entity seen by client
+     * @param version - version of entity seen by client, alternative to If-Match header
      * @return APIResponse{ int status; JsonNode data }
      * @see APIResponse
      */
     @GetMapping("/api/setHomeworkContent")
-    public APIResponse setHomeworkContent(@RequestParam short homework, @RequestParam("content") String b64) {
+    public APIResponse setHomeworkContent(@RequestParam short homework, @RequestParam("content") String b64,
+                                          @RequestHeader(value = "If-Match", required = false) String ifMatch,
+                                          @RequestParam(required = false) Long version) {
+        Homework hw;
         try{
             String content = new String(b64Decoder.decode(b64));
-            Homework hw = homeworks.getHomeworkById(homework);
+            hw = homeworks.setHomeworkContent(homework, RequestVersions.expectedVersion(ifMatch, version), content);
             if (hw == null) return APIResponse.NOT_FOUND;
-            hw.setDescription(content);
         } catch (IllegalArgumentException e) {
             return new APIResponse(-2, e.getMessage());
         }
-        return APIResponse.SUCCESS;
+        return new APIResponse(0, hw);
     }
 
     /**
-     * Assigns new date to given Homework
+     * Assigns new date to given Homework and returns updated homework
      * @param homework - id of Homework
      * @param timestamp - milliseconds timestamp of new due date
+     * @param ifMatch - If-Match header with version of entity seen by client
+     * @param version - version of entity seen by client, alternative to If-Match header
      * @return APIResponse{ int status; JsonNode data }
      * @see APIResponse
      */
     @GetMapping("/api/setHomeworkDate")
-    public APIResponse setHomeworkDate(@RequestParam short homework, @RequestParam long timestamp) {
-        Homework hw = homeworks.getHomeworkById(homework);
+    public APIResponse setHomeworkDate(@RequestParam short homework, @RequestParam long timestamp,
+                                       @RequestHeader(value = "If-Match", required = false) String ifMatch,
+                                       @RequestParam(required = false) Long version) {
+        Homework hw = homeworks.setHomeworkDate(homework, RequestVersions.expectedVersion(ifMatch, version), new Date(timestamp));
         if (hw == null) return APIResponse.NOT_FOUND;
-        hw.setDueDate(new Date(timestamp));
-        return APIResponse.SUCCESS;
+        return new APIResponse(0, hw);
     }
 
 
+    /** Query engine used by suggestStudySlots() */
+    private final FreeSlotFinder slotFinder = new FreeSlotFinder();
+
+    /**
+     * Suggests free windows before homework due date, which may be used to do the homework.
+     * Windows are searched at most FreeSlotFinder.MAX_DAYS days ahead
+     * @param homework - id of Homework
+     * @param duration - length of study block in minutes
+     * @param dayStart - hour, at which working day begins
+     * @param dayEnd - hour, at which working day ends
+     * @param limit - maximal number of suggested windows, at most FreeSlotFinder.MAX_LIMIT
+     * @param rank - either "earliest" or "bestFit"
+     * @return APIResponse{ int status; JsonNode data }
+     * @see APIResponse
+     */
+    @GetMapping("/api/suggestStudySlots")
+    public APIResponse suggestStudySlots(@RequestParam short homework,
+                                         @RequestParam(defaultValue = "90") int duration,
+                                         @RequestParam(defaultValue = "9") int dayStart,
+                                         @RequestParam(defaultValue = "18") int dayEnd,
+                                         @RequestParam(defaultValue = "10") int limit,
+                                         @RequestParam(defaultValue = "earliest") String rank) {
+        Homework hw = homeworks.getHomeworkById(homework);
+        if (hw == null) return APIResponse.NOT_FOUND;
+        if (duration <= 0 || dayStart < 0 || dayEnd > 24 || dayStart >= dayEnd)
+            return new APIResponse(-1, "Invalid duration or working hours");
+        if (limit <= 0 || limit > FreeSlotFinder.MAX_LIMIT)
+            return new APIResponse(-1, "Limit must be between 1 and %d".formatted(FreeSlotFinder.MAX_LIMIT));
+
+        Comparator<FreeSlot> ranking = SubjectController.rankingOf(rank);
+        if (ranking == null)
+            return new APIResponse(-1, "Unknown ranking: " + rank);
 
-    // JSON parser user in setHomeworkExtras()
-    private final ObjectMapper mapper = Jackson2ObjectMapperBuilder.json().build();
+//        any lesson of the timetable is busy time, not only lessons of the homework's subject
+        long now = System.currentTimeMillis();
+        long until = Math.min(hw.getDueDate().getTime(), now + FreeSlotFinder.MAX_DAYS * TimetableCalendar.MILLIS_PER_DAY);
+        FreeSlotFinder.Query query = new FreeSlotFinder.Query(
+                now, until,
+                duration * 60_000L, dayStart * 60, dayEnd * 60, false, limit, ranking
+        );
+        return new APIResponse(0, slotFinder.find(subjects.getAllSubjects(), query));
+    }
 
     // Base64 decoder used for String decoding
     // TODO move Base64 decoding into function stored elsewhere
     private final Base64.Decoder b64Decoder = Base64.getUrlDecoder();
 
     /**
-     * Assigns new extra data to given Homework
+     * Assigns new extra data to given Homework and returns updated homework
      * @param homework - id of the homework
      * @param extras - base64 encoded JSON data
+     * @param ifMatch - If-Match header with version of entity seen by client
+     * @param version - version of entity seen by client, alternative to If-Match header
      * @return APIResponse{ int status; JsonNode data }
      * @see APIResponse
      */
     @GetMapping("/api/setHomeworkExtras")
-    public APIResponse setHomeworkExtras(@RequestParam short homework, @RequestParam String extras) {
-        Homework hw = homeworks.getHomeworkById(homework);
-        if (Objects.isNull(hw)) {
+    public APIResponse setHomeworkExtras(@RequestParam short homework, @RequestParam String extras,
+                                         @RequestHeader(value = "If-Match", required = false) String ifMatch,
+                                         @RequestParam(required = false) Long version) {
+        if (Objects.isNull(homeworks.getHomeworkById(homework))) {
             return new APIResponse(-1, "Homework with ID=%x not found".formatted(homework));
         } else {
             byte[] b64 = b64Decoder.decode(extras);
+            Homework hw;
             try {
-                hw.setExtras(mapper.readTree(b64));
+                hw = homeworks.setHomeworkExtras(homework, RequestVersions.expectedVersion(ifMatch, version), RawJson.parse(b64));
             } catch (IOException e) {
                 Logger.getGlobal().warning("Bad JsonNode data: " + new String(b64));
                 return new APIResponse(-1, "Bad data");
             }
-            return APIResponse.SUCCESS;
+//            homework may be removed meanwhile
+            if (hw == null)
+                return new APIResponse(-1, "Homework with ID=%x not found".formatted(homework));
+            return new APIResponse(0, hw);
         }
     }
 
@@ -166,7 +309,7 @@ public class HomeworkController {
     /** Method executed before server shutdown responsible for data saving */
     @PreDestroy
     public void onShutdown() {
-        homeworks.save();
+        homeworks.close();
     }
 
 }
\ No newline at end of file
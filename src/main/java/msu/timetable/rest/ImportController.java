@@ -0,0 +1,71 @@
+package msu.timetable.rest;
+
+import msu.timetable.APIResponse;
+import msu.timetable.importer.BulkImporter;
+import msu.timetable.importer.ImportFormat;
+import msu.timetable.importer.ImportReport;
+import msu.timetable.models.Homeworks;
+import msu.timetable.models.Subjects;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Controller of bulk import of timetable files.
+ * File larger than "timetable.import.maxBody" bytes (64 MiB by default) is rejected with 413 Payload Too Large
+ */
+@RestController
+public class ImportController {
+
+    /** Maximal size of imported file in bytes */
+    static final long MAX_BODY_SIZE = Long.getLong("timetable.import.maxBody", 64L << 20);
+
+    private final BulkImporter importer = BulkImporter.create();
+
+    /** Whether import is running, imports are run one at a time */
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    /**
+     * Imports lessons and homeworks from request body and saves stores once it's done
+     * @param format - "csv" or "ics", see ImportFormat
+     * @param body - UTF-8 encoded file, at most MAX_BODY_SIZE bytes
+     * @return APIResponse{ int status; JsonNode data }, data is ImportReport
+     * @see APIResponse
+     * @see ImportReport
+     */
+    @PostMapping("/api/import")
+    public APIResponse importFile(@RequestParam String format, InputStream body) throws IOException {
+        ImportFormat importFormat = ImportFormat.of(format);
+        if (importFormat == null)
+            return new APIResponse(-1, "Unknown import format \"" + format + "\"");
+        if (!running.compareAndSet(false, true))
+            return new APIResponse(-1, "Another import is running");
+
+        try {
+            ImportReport report = importer.run(new LimitedInputStream(body, MAX_BODY_SIZE), importFormat);
+            Subjects.getInstance().save();
+            Homeworks.getInstance().save();
+            return new APIResponse(0, report);
+        } catch (IllegalArgumentException | IllegalStateException e) {
+            return new APIResponse(-1, e.getMessage());
+        } finally {
+            running.set(false);
+        }
+    }
+
+    /**
+     * Returns progress of running or last import
+     * @return APIResponse{ int status; JsonNode data }, data is ImportProgress
+     * @see APIResponse
+     */
+    @GetMapping("/api/getImportProgress")
+    public APIResponse getImportProgress() {
+        return new APIResponse(0, importer.getProgress());
+    }
+
+}
@@ -0,0 +1,184 @@
+package msu.timetable.rest;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import msu.timetable.models.Homework;
+import msu.timetable.models.RawJson;
+import msu.timetable.models.Subject;
+import org.springframework.http.HttpStatus;
+import org.springframework.lang.NonNull;
+import org.springframework.lang.Nullable;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Binds JSON request bodies of POST and PATCH endpoints.
+ * Bodies are read with a streaming parser straight from the request, extras are copied as RawJson without building trees.
+ * Absent fields leave entity unchanged, "extras": null removes extra data.
+ * Body larger than "timetable.request.maxBody" bytes (1 MiB by default) is rejected with 413 Payload Too Large
+ */
+final class JsonBodies {
+
+    /** Maximal size of request body in bytes */
+    static final int MAX_BODY_SIZE = Integer.getInteger("timetable.request.maxBody", 1 << 20);
+
+    private static final JsonFactory factory = new JsonFactory();
+
+    private JsonBodies() {}
+
+    /**
+     * Fields of subject sent by client, null if absent
+     * @param hasExtras - whether "extras" field was present, since null extras are meaningful
+     */
+    record SubjectBody(String name, List<Date> schedule, boolean hasExtras, RawJson extras) {
+
+        /** Applies present fields to a copy of subject */
+        void applyTo(@NonNull Subject subject) {
+            if (name != null) subject.setName(name);
+            if (schedule != null) subject.setSchedule(schedule);
+            if (hasExtras) subject.setExtras(extras);
+        }
+    }
+
+    /**
+     * Fields of homework sent by client, null if absent
+     * @param hasExtras - whether "extras" field was present, since null extras are meaningful
+     */
+    record HomeworkBody(Short subject, String description, Date dueDate, boolean hasExtras, RawJson extras) {
+
+        /** Applies present fields to a copy of homework */
+        void applyTo(@NonNull Homework homework) {
+            if (subject != null) homework.setSubject(subject);
+            if (description != null) homework.setDescription(description);
+            if (dueDate != null) homework.setDueDate(dueDate);
+            if (hasExtras) homework.setExtras(extras);
+        }
+    }
+
+    /** Reads {"name": string, "schedule": [timestamp...], "extras": any} */
+    static SubjectBody readSubject(@NonNull InputStream body) {
+        String name = null;
+        List<Date> schedule = null;
+        boolean hasExtras = false;
+        RawJson extras = null;
+
+        try (JsonParser parser = open(body)) {
+            String field;
+            while ((field = parser.nextFieldName()) != null) {
+                parser.nextToken();
+                switch (field) {
+                    case "name" -> name = readString(parser);
+                    case "schedule" -> schedule = readDates(parser);
+                    case "extras" -> {
+                        hasExtras = true;
+                        extras = readExtras(parser);
+                    }
+                    default -> throw badRequest("Unknown field \"" + field + "\"");
+                }
+            }
+            expectEnd(parser);
+        } catch (JsonProcessingException e) {
+            throw badRequest("Bad JSON: " + e.getOriginalMessage());
+        } catch (IOException e) {
+            throw badRequest("Failed to read body: " + e.getMessage());
+        }
+        return new SubjectBody(name, schedule, hasExtras, extras);
+    }
+
+    /** Reads {"subject": id, "description": string, "dueDate": timestamp, "extras": any} */
+    static HomeworkBody readHomework(@NonNull InputStream body) {
+        Short subject = null;
+        String description = null;
+        Date dueDate = null;
+        boolean hasExtras = false;
+        RawJson extras = null;
+
+        try (JsonParser parser = open(body)) {
+            String field;
+            while ((field = parser.nextFieldName()) != null) {
+                parser.nextToken();
+                switch (field) {
+                    case "subject" -> subject = readShort(parser);
+                    case "description" -> description = readString(parser);
+                    case "dueDate" -> dueDate = new Date(readLong(parser));
+                    case "extras" -> {
+                        hasExtras = true;
+                        extras = readExtras(parser);
+                    }
+                    default -> throw badRequest("Unknown field \"" + field + "\"");
+                }
+            }
+            expectEnd(parser);
+        } catch (JsonProcessingException e) {
+            throw badRequest("Bad JSON: " + e.getOriginalMessage());
+        } catch (IOException e) {
+            throw badRequest("Failed to read body: " + e.getMessage());
+        }
+        return new HomeworkBody(subject, description, dueDate, hasExtras, extras);
+    }
+
+    /** Opens parser over size-limited body and enters top-level object */
+    private static JsonParser open(InputStream body) throws IOException {
+        JsonParser parser = factory.createParser(new LimitedInputStream(body, MAX_BODY_SIZE));
+        if (parser.nextToken() != JsonToken.START_OBJECT) {
+            parser.close();
+            throw badRequest("Body must be a JSON object");
+        }
+        return parser;
+    }
+
+    /** Checks, that nothing follows top-level object */
+    private static void expectEnd(JsonParser parser) throws IOException {
+        if (parser.nextToken() != null)
+            throw badRequest("Unexpected data after JSON object");
+    }
+
+    private static String readString(JsonParser parser) throws IOException {
+        if (parser.currentToken() != JsonToken.VALUE_STRING)
+            throw badRequest("\"" + parser.getCurrentName() + "\" must be a string");
+        return parser.getText();
+    }
+
+    private static long readLong(JsonParser parser) throws IOException {
+        if (parser.currentToken() != JsonToken.VALUE_NUMBER_INT)
+            throw badRequest("\"" + parser.getCurrentName() + "\" must be a millisecond timestamp");
+        return parser.getLongValue();
+    }
+
+    private static short readShort(JsonParser parser) throws IOException {
+        if (parser.currentToken() != JsonToken.VALUE_NUMBER_INT)
+            throw badRequest("\"" + parser.getCurrentName() + "\" must be an id");
+        int value = parser.getIntValue();
+        if (value < Short.MIN_VALUE || value > Short.MAX_VALUE)
+            throw badRequest("\"" + parser.getCurrentName() + "\" is out of range");
+        return (short) value;
+    }
+
+    private static List<Date> readDates(JsonParser parser) throws IOException {
+        if (parser.currentToken() != JsonToken.START_ARRAY)
+            throw badRequest("\"" + parser.getCurrentName() + "\" must be an array of timestamps");
+        List<Date> dates = new ArrayList<>();
+        while (parser.nextToken() != JsonToken.END_ARRAY) {
+            if (parser.currentToken() != JsonToken.VALUE_NUMBER_INT)
+                throw badRequest("Schedule must contain millisecond timestamps");
+            dates.add(new Date(parser.getLongValue()));
+        }
+        return dates;
+    }
+
+    @Nullable
+    private static RawJson readExtras(JsonParser parser) throws IOException {
+        return parser.currentToken() == JsonToken.VALUE_NULL ? null : RawJson.copyOf(parser);
+    }
+
+    private static ResponseStatusException badRequest(String message) {
+        return new ResponseStatusException(HttpStatus.BAD_REQUEST, message);
+    }
+}
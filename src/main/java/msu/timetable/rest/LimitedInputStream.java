@@ -0,0 +1,50 @@
+package msu.timetable.rest;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/** Stream, which fails with 413 as soon as more than limit bytes are read */
+final class LimitedInputStream extends FilterInputStream {
+
+    private final long limit;
+    private long remaining;
+
+    LimitedInputStream(InputStream in, long limit) {
+        super(in);
+        this.limit = limit;
+        this.remaining = limit;
+    }
+
+    @Override
+    public int read() throws IOException {
+        int b = super.read();
+        if (b >= 0) consumed(1);
+        return b;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+//        read one byte over the limit to tell body of exactly limit bytes from a larger one
+        int count = super.read(buffer, offset, (int) Math.min(length, remaining + 1));
+        if (count > 0) consumed(count);
+        return count;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        long skipped = super.skip(Math.min(n, remaining + 1));
+        consumed(skipped);
+        return skipped;
+    }
+
+    private void consumed(long count) {
+        remaining -= count;
+        if (remaining < 0)
+            throw new ResponseStatusException(HttpStatus.PAYLOAD_TOO_LARGE,
+                    "Request body exceeds " + limit + " bytes");
+    }
+}
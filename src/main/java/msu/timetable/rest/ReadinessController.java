@@ -0,0 +1,80 @@
+package msu.timetable.rest;
+
+import msu.timetable.APIResponse;
+import msu.timetable.models.Homeworks;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.logging.Logger;
+
+/**
+ * Controller of readiness probe, which also warms the application up.
+ * In "fast-start" profile beans are created on first use, so the server accepts requests before stores are loaded.
+ * Once the application is started, a background thread loads stores and creates remaining controllers,
+ * while the probe reports "warming". Requests, which come meanwhile, wait for the stores they need.
+ * Without the profile everything is loaded before start, and the probe reports "ready" right away
+ */
+@RestController
+@Lazy(false)
+public class ReadinessController {
+
+    private static final Logger logger = Logger.getLogger("ReadinessController");
+
+    /** Completed, when stores are loaded and all controllers are created */
+    private final CompletableFuture<Void> warmup = new CompletableFuture<>();
+
+    /** Starts background warm-up */
+    @EventListener
+    public void onApplicationReady(ApplicationReadyEvent event) {
+        ApplicationContext context = event.getApplicationContext();
+        Thread thread = new Thread(() -> warmUp(context), "warmup");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private void warmUp(ApplicationContext context) {
+        long start = System.currentTimeMillis();
+        try {
+//            stores are loaded outside of bean creation, so that they don't hold the container's lock meanwhile.
+//            Homeworks load subjects in parallel
+            Homeworks.getInstance();
+            context.getBeansWithAnnotation(RestController.class);
+            warmup.complete(null);
+            logger.info("Warmed up in %d ms".formatted(System.currentTimeMillis() - start));
+        } catch (RuntimeException | Error e) {
+            warmup.completeExceptionally(e);
+            logger.severe("Warm-up failed: " + e);
+        }
+    }
+
+    /**
+     * Waits until warm-up is finished
+     * @throws java.util.concurrent.CompletionException if warm-up failed
+     */
+    public void awaitWarmup() {
+        warmup.join();
+    }
+
+    /**
+     * Readiness probe: "ready" once stores are loaded, otherwise 503 Service Unavailable
+     * with "warming" or with error, if warm-up failed
+     * @return APIResponse{ int status; JsonNode data }
+     * @see APIResponse
+     */
+    @GetMapping("/api/getReadiness")
+    public ResponseEntity<APIResponse> getReadiness() {
+        if (!warmup.isDone())
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(new APIResponse(0, "warming"));
+        if (warmup.isCompletedExceptionally())
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(new APIResponse(-1, "Warm-up failed"));
+        return ResponseEntity.ok(new APIResponse(0, "ready"));
+    }
+
+}
@@ -0,0 +1,78 @@
+package msu.timetable.rest;
+
+import msu.timetable.APIResponse;
+import msu.timetable.reminders.Reminder;
+import msu.timetable.reminders.ReminderScheduler;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Controller of homework reminders.
+ * Creating the controller rebuilds pending reminders from the store and starts firing them
+ */
+@RestController
+public class ReminderController {
+
+    /** Time, after which subscription is closed. Browsers' EventSource reconnects by itself */
+    private static final long SUBSCRIPTION_TIMEOUT = TimeUnit.MINUTES.toMillis(30);
+
+    private final ReminderScheduler reminders = ReminderScheduler.getInstance();
+
+    /** Open Server-Sent Events subscriptions */
+    private final List<SseEmitter> subscribers = new CopyOnWriteArrayList<>();
+
+    public ReminderController() {
+        reminders.addListener(this::broadcast);
+    }
+
+    /**
+     * Subscribes to reminders as Server-Sent Events named "reminder"
+     * @return event stream, each event holds JSON of Reminder
+     * @see Reminder
+     */
+    @GetMapping("/api/subscribeReminders")
+    public SseEmitter subscribeReminders() {
+        SseEmitter emitter = new SseEmitter(SUBSCRIPTION_TIMEOUT);
+        emitter.onCompletion(() -> subscribers.remove(emitter));
+        emitter.onTimeout(() -> subscribers.remove(emitter));
+        emitter.onError(e -> subscribers.remove(emitter));
+        subscribers.add(emitter);
+        return emitter;
+    }
+
+    /**
+     * Returns statistics of reminder scheduler
+     * @return APIResponse{ int status; JsonNode data }
+     * @see APIResponse
+     */
+    @GetMapping("/api/getReminderStats")
+    public APIResponse getReminderStats() {
+        return new APIResponse(0, reminders.getStats());
+    }
+
+    /** Sends reminder to all subscribers, dropping those, which disconnected */
+    private void broadcast(Reminder reminder) {
+        for (SseEmitter emitter : subscribers) {
+            try {
+                emitter.send(SseEmitter.event().name("reminder").data(reminder));
+            } catch (IOException | IllegalStateException e) {
+                subscribers.remove(emitter);
+            }
+        }
+    }
+
+    /** Method executed before server shutdown responsible for stopping reminders */
+    @PreDestroy
+    public void onShutdown() {
+        reminders.shutdown();
+        subscribers.forEach(SseEmitter::complete);
+    }
+
+}
@@ -0,0 +1,39 @@
+package msu.timetable.rest;
+
+import msu.timetable.APIResponse;
+import msu.timetable.replication.Replication;
+import msu.timetable.replication.ReplicationStatus;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import javax.annotation.PreDestroy;
+
+/**
+ * Controller of replication state.
+ * Creating the controller starts accepting followers or following leader, see Replication
+ */
+@RestController
+public class ReplicationController {
+
+    public ReplicationController() {
+        Replication.start();
+    }
+
+    /**
+     * Returns replication role, position in log and lag of this instance
+     * @return APIResponse{ int status; JsonNode data }
+     * @see APIResponse
+     * @see ReplicationStatus
+     */
+    @GetMapping("/api/getReplicationStatus")
+    public APIResponse getReplicationStatus() {
+        return new APIResponse(0, Replication.getStatus());
+    }
+
+    /** Method executed before server shutdown responsible for stopping replication */
+    @PreDestroy
+    public void onShutdown() {
+        Replication.shutdown();
+    }
+
+}
@@ -0,0 +1,40 @@
+package msu.timetable.rest;
+
+import msu.timetable.storage.EntityStorage;
+import org.springframework.http.HttpStatus;
+import org.springframework.lang.Nullable;
+import org.springframework.web.server.ResponseStatusException;
+
+/** Extracts entity version expected by client from If-Match header or "version" parameter */
+final class RequestVersions {
+
+    private RequestVersions() {}
+
+    /**
+     * Returns version, which client expects entity to have, or EntityStorage.ANY_VERSION if client doesn't care
+     * @param ifMatch - value of If-Match header, e.g. "3" or W/"3"
+     * @param version - value of "version" request parameter
+     * @throws ResponseStatusException with 400 Bad Request, if version is malformed or negative
+     */
+    static long expectedVersion(@Nullable String ifMatch, @Nullable Long version) {
+        if (version != null) return checked(version, "version parameter " + version);
+        if (ifMatch == null || ifMatch.isBlank() || ifMatch.trim().equals("*")) return EntityStorage.ANY_VERSION;
+
+        String tag = ifMatch.trim();
+        if (tag.startsWith("W/")) tag = tag.substring(2);
+        if (tag.length() >= 2 && tag.startsWith("\"") && tag.endsWith("\""))
+            tag = tag.substring(1, tag.length() - 1);
+        try {
+            return checked(Long.parseLong(tag), "If-Match header: " + ifMatch);
+        } catch (NumberFormatException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Bad If-Match header: " + ifMatch);
+        }
+    }
+
+    /** Versions start from 0, negative ones would be mistaken for EntityStorage.ANY_VERSION */
+    private static long checked(long version, String source) {
+        if (version < 0)
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Negative " + source);
+        return version;
+    }
+}
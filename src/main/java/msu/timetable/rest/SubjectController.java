@@ -1,17 +1,25 @@
 package msu.timetable.rest;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
 import msu.timetable.APIResponse;
+import msu.timetable.archive.Archive;
+import msu.timetable.models.FreeSlot;
+import msu.timetable.models.FreeSlotFinder;
+import msu.timetable.models.RawJson;
 import msu.timetable.models.Subject;
 import msu.timetable.models.Subjects;
+import msu.timetable.models.TimetableCalendar;
+import msu.timetable.models.WeekViews;
 import org.springframework.context.annotation.ComponentScan;
-import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PatchMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
 import javax.annotation.PreDestroy;
 import java.io.IOException;
+import java.io.InputStream;
 import java.util.*;
 import java.util.logging.Logger;
 
@@ -25,6 +33,8 @@ import java.util.logging.Logger;
 public class SubjectController {
 
     private final Subjects subjects = Subjects.getInstance();
+    private final WeekViews weekViews = WeekViews.getInstance();
+    private final Archive archive = Archive.getInstance();
 
     /**
      * Creates new Subject with given name and optional schedule
@@ -46,6 +56,50 @@ public class SubjectController {
         return new APIResponse(isObjectNull(subject), subject);
     }
 
+    /**
+     * Creates new Subject from JSON body: {"name": string, "schedule": [timestamp, ...], "extras": any}.
+     * Only name is required
+     * @param body - request body, at most JsonBodies.MAX_BODY_SIZE bytes
+     * @return APIResponse{ int status; JsonNode data }
+     * @see APIResponse
+     */
+    @PostMapping("/api/createSubject")
+    public APIResponse postSubject(InputStream body) {
+        JsonBodies.SubjectBody fields = JsonBodies.readSubject(body);
+        if (fields.name() == null || fields.name().isBlank())
+            return new APIResponse(-1, "Name is either empty or blank");
+
+        Subject subject = subjects.createSubject(fields::applyTo);
+        return new APIResponse(isObjectNull(subject), subject);
+    }
+
+    /**
+     * Updates fields of Subject present in JSON body: {"name": string, "schedule": [timestamp, ...], "extras": any}.
+     * All fields are changed at once, "extras": null removes extra data
+     * @param subject - id of the subject
+     * @param body - request body, at most JsonBodies.MAX_BODY_SIZE bytes
+     * @param ifMatch - If-Match header with version of entity seen by client
+     * @param version - version of entity seen by client, alternative to If-Match header
+     * @return APIResponse{ int status; JsonNode data }
+     * @see APIResponse
+     */
+    @PatchMapping("/api/updateSubject")
+    public APIResponse patchSubject(@RequestParam short subject, InputStream body,
+                                    @RequestHeader(value = "If-Match", required = false) String ifMatch,
+                                    @RequestParam(required = false) Long version) {
+        long expectedVersion = RequestVersions.expectedVersion(ifMatch, version);
+        JsonBodies.SubjectBody fields = JsonBodies.readSubject(body);
+        if (fields.name() != null && fields.name().isBlank())
+            return new APIResponse(-1, "Name is either empty or blank");
+
+        Subject sub = subjects.updateSubject(subject, expectedVersion, fields::applyTo);
+        if (Objects.isNull(sub)) {
+            return new APIResponse(-1, "Subject with ID=%x not found".formatted(subject));
+        } else {
+            return new APIResponse(0, sub);
+        }
+    }
+
     /**
      * Returns info on one subject
      * @param id - id of the subject
@@ -91,69 +145,180 @@ public class SubjectController {
     }
 
     /**
-     * Renames Subject
+     * Returns lessons and homework of one ISO week
+     * @param date - millisecond timestamp of any moment in the week
+     * @param year - ISO week-based year, used when date is omitted
+     * @param week - ISO week number, used when date is omitted
+     * @return APIResponse{ int status; JsonNode data }
+     * @see APIResponse
+     */
+    @GetMapping("/api/getWeek")
+    public APIResponse getWeek(@RequestParam(required = false) Long date,
+                               @RequestParam(required = false) Integer year,
+                               @RequestParam(required = false) Integer week) {
+        if (date != null)
+            return new APIResponse(0, weekViews.getWeekOf(date));
+        if (year == null || week == null)
+            return new APIResponse(-1, "Either date or year and week must be provided");
+        if (!WeekViews.isValidWeek(year, week))
+            return new APIResponse(-1, "Year %d has no week %d".formatted(year, week));
+        return new APIResponse(0, weekViews.getWeek(year, week));
+    }
+
+    /**
+     * Returns statistics of week view cache
+     * @return APIResponse{ int status; JsonNode data }
+     * @see APIResponse
+     */
+    @GetMapping("/api/getWeekCacheStats")
+    public APIResponse getWeekCacheStats() {
+        return new APIResponse(0, weekViews.getStats());
+    }
+
+    /**
+     * Renames Subject and returns it with new version
      * @param subject - id of the subject
      * @param name - new name for subject
+     * @param ifMatch - If-Match header with version of entity seen by client
+     * @param version - version of entity seen by client, alternative to If-Match header
      * @return APIResponse{ int status; JsonNode data }
      * @see APIResponse
      */
     @GetMapping("/api/setSubjectName")
-    public APIResponse renameSubject(@RequestParam short subject, @RequestParam String name) {
-        Subject sub = subjects.getSubjectById(subject);
+    public APIResponse renameSubject(@RequestParam short subject, @RequestParam String name,
+                                     @RequestHeader(value = "If-Match", required = false) String ifMatch,
+                                     @RequestParam(required = false) Long version) {
+        Subject sub = subjects.renameSubject(subject, RequestVersions.expectedVersion(ifMatch, version), name);
         if (Objects.isNull(sub)) {
             return new APIResponse(-1, "Subject with ID=%x not found".formatted(subject));
         } else {
-            sub.setName(name);
-            return APIResponse.SUCCESS;
+            return new APIResponse(0, sub);
         }
     }
 
     /**
-     * Assigns new schedule to subject
+     * Assigns new schedule to subject and returns updated subject
      * @param subject - id of the subject
      * @param schedule - new schedule for subject
+     * @param ifMatch - If-Match header with version of entity seen by client
+     * @param version - version of entity seen by client, alternative to If-Match header
      * @return APIResponse{ int status; JsonNode data }
      * @see APIResponse
      */
     @GetMapping("/api/setSubjectSchedule")
-    public APIResponse setSubjectSchedule(@RequestParam short subject, @RequestParam List<Date> schedule) {
-        Subject sub = subjects.getSubjectById(subject);
+    public APIResponse setSubjectSchedule(@RequestParam short subject, @RequestParam List<Date> schedule,
+                                          @RequestHeader(value = "If-Match", required = false) String ifMatch,
+                                          @RequestParam(required = false) Long version) {
+        Subject sub = subjects.setSubjectSchedule(subject, RequestVersions.expectedVersion(ifMatch, version), schedule);
         if (Objects.isNull(sub)) {
             return new APIResponse(-1, "Subject with ID=%x not found".formatted(subject));
         } else {
-            sub.setSchedule(schedule);
-            return APIResponse.SUCCESS;
+            return new APIResponse(0, sub);
         }
     }
 
-    // JSON parser used in setSubjectExtras()
-    private final ObjectMapper mapper = Jackson2ObjectMapperBuilder.json().build();
+    /** Query engine used by findFreeSlots() */
+    private final FreeSlotFinder slotFinder = new FreeSlotFinder();
+
+    /**
+     * Finds free windows, during which none of given subjects has lessons
+     * @param subjectIds - ids of subjects, which lessons are considered busy. All subjects are used, if omitted
+     * @param from - millisecond timestamp of search beginning
+     * @param to - millisecond timestamp of search ending, at most FreeSlotFinder.MAX_DAYS days after beginning
+     * @param duration - minimal length of window in minutes
+     * @param dayStart - hour, at which working day begins
+     * @param dayEnd - hour, at which working day ends
+     * @param weekdaysOnly - whether weekends must be skipped
+     * @param limit - maximal number of windows, at most FreeSlotFinder.MAX_LIMIT
+     * @param rank - either "earliest" or "bestFit"
+     * @return APIResponse{ int status; JsonNode data }
+     * @see APIResponse
+     */
+    @GetMapping("/api/findFreeSlots")
+    public APIResponse findFreeSlots(@RequestParam(value = "subjects", required = false) List<Short> subjectIds,
+                                     @RequestParam long from,
+                                     @RequestParam long to,
+                                     @RequestParam(defaultValue = "90") int duration,
+                                     @RequestParam(defaultValue = "9") int dayStart,
+                                     @RequestParam(defaultValue = "18") int dayEnd,
+                                     @RequestParam(defaultValue = "true") boolean weekdaysOnly,
+                                     @RequestParam(defaultValue = "50") int limit,
+                                     @RequestParam(defaultValue = "earliest") String rank) {
+        if (duration <= 0 || dayStart < 0 || dayEnd > 24 || dayStart >= dayEnd)
+            return new APIResponse(-1, "Invalid duration or working hours");
+        if (to <= from || to - from > FreeSlotFinder.MAX_DAYS * TimetableCalendar.MILLIS_PER_DAY)
+            return new APIResponse(-1, "Range must be positive and at most %d days long".formatted(FreeSlotFinder.MAX_DAYS));
+        if (limit <= 0 || limit > FreeSlotFinder.MAX_LIMIT)
+            return new APIResponse(-1, "Limit must be between 1 and %d".formatted(FreeSlotFinder.MAX_LIMIT));
+
+        Comparator<FreeSlot> ranking = rankingOf(rank);
+        if (ranking == null)
+            return new APIResponse(-1, "Unknown ranking: " + rank);
+
+        Collection<Subject> busy;
+        if (subjectIds == null) {
+            busy = subjects.getAllSubjects();
+        } else {
+            List<Subject> requested = new ArrayList<>(subjectIds.size());
+            for (short id : subjectIds) {
+                Subject sub = subjects.getSubjectById(id);
+                if (sub == null)
+                    return new APIResponse(-1, "Subject with ID=%x not found".formatted(id));
+                requested.add(sub);
+            }
+            busy = requested;
+        }
+
+//        past lessons may be archived, lesson started before the range may still overlap it
+        busy = archive.withLessons(busy, from - slotFinder.getLessonLength(), to);
+
+        FreeSlotFinder.Query query = new FreeSlotFinder.Query(
+                from, to, duration * 60_000L, dayStart * 60, dayEnd * 60, weekdaysOnly, limit, ranking
+        );
+        return new APIResponse(0, slotFinder.find(busy, query));
+    }
+
+    /** Converts ranking name used by API into comparator. Returns null for unknown names */
+    static Comparator<FreeSlot> rankingOf(String rank) {
+        return switch (rank) {
+            case "earliest" -> FreeSlot.EARLIEST_FIRST;
+            case "bestFit" -> FreeSlot.BEST_FIT;
+            default -> null;
+        };
+    }
 
     // Base64 decoder used in setSubjectExtras()
     // TODO move Base64 decoding into function stored elsewhere
     private final Base64.Decoder b64Decoder = Base64.getUrlDecoder();
 
     /**
-     * Assigns new extra data to given Subject
+     * Assigns new extra data to given Subject and returns updated subject
      * @param subject - id of the subject
      * @param extras - base64 encoded JSON data
+     * @param ifMatch - If-Match header with version of entity seen by client
+     * @param version - version of entity seen by client, alternative to If-Match header
      * @return APIResponse{ int status; JsonNode data }
      * @see APIResponse
      */
     @GetMapping("/api/setSubjectExtras")
-    public APIResponse setSubjectExtras(@RequestParam short subject, @RequestParam String extras) {
-        Subject sub = subjects.getSubjectById(subject);
-        if (Objects.isNull(sub)) {
+    public APIResponse setSubjectExtras(@RequestParam short subject, @RequestParam String extras,
+                                        @RequestHeader(value = "If-Match", required = false) String ifMatch,
+                                        @RequestParam(required = false) Long version) {
+        if (Objects.isNull(subjects.getSubjectById(subject))) {
             return new APIResponse(-1, "Subject with ID=%x not found".formatted(subject));
         } else {
             byte[] b64 = b64Decoder.decode(extras);
+            Subject sub;
             try {
-                sub.setExtras(mapper.readTree(b64));
+                sub = subjects.setSubjectExtras(subject, RequestVersions.expectedVersion(ifMatch, version), RawJson.parse(b64));
             } catch (IOException e) {
                 Logger.getGlobal().warning("Bad JsonNode data: " + new String(b64));
                 return new APIResponse(-1, "Bad data");
             }
-            return APIResponse.SUCCESS;
+//            subject may be removed meanwhile
+            if (Objects.isNull(sub))
+                return new APIResponse(-1, "Subject with ID=%x not found".formatted(subject));
+            return new APIResponse(0, sub);
         }
     }
 
@@ -166,7 +331,7 @@ public class SubjectController {
     /** Method executed before server shutdown responsible for data saving */
     @PreDestroy
     public void onShutdown() {
-        subjects.save();
+        subjects.close();
     }
 
 }
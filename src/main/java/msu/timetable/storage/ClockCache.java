@@ -0,0 +1,98 @@
+package msu.timetable.storage;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Bounded cache with CLOCK eviction, an approximation of LRU: entries sit in a ring of slots,
+ * a hit only marks its entry as referenced, and a new entry replaces the first unreferenced one after the hand,
+ * while the hand clears marks of entries it passes. Hits take no lock, insertions and removals lock the ring.
+ * Callers serialize writes of the same key
+ * @param <V> - type of values
+ */
+final class ClockCache<V> {
+
+    private static final class Entry<V> {
+        final short key;
+        final int slot;
+        volatile V value;
+        volatile boolean referenced = false;
+
+        Entry(short key, int slot, V value) {
+            this.key = key;
+            this.slot = slot;
+            this.value = value;
+        }
+    }
+
+    private final ConcurrentHashMap<Short, Entry<V>> entries = new ConcurrentHashMap<>();
+
+    /** Ring of entries, null for free slots. Guarded by this */
+    private final Entry<V>[] slots;
+    private int hand = 0;
+
+    /** @param capacity - maximal number of entries, 0 disables caching */
+    @SuppressWarnings("unchecked")
+    ClockCache(int capacity) {
+        this.slots = new Entry[Math.max(0, capacity)];
+    }
+
+    /** Returns cached value and marks it as recently used */
+    V get(short key) {
+        Entry<V> entry = entries.get(key);
+        if (entry == null) return null;
+        entry.referenced = true;
+        return entry.value;
+    }
+
+    /** Returns cached value without marking it, so that scans don't keep entries in cache */
+    V peek(short key) {
+        Entry<V> entry = entries.get(key);
+        return entry != null ? entry.value : null;
+    }
+
+    /** Caches value, evicting an entry, which wasn't used since the hand passed it, if the cache is full */
+    void put(short key, V value) {
+        Entry<V> present = entries.get(key);
+        if (present != null) {
+            present.value = value;
+            present.referenced = true;
+            return;
+        }
+        if (slots.length == 0) return;
+
+        synchronized (this) {
+            present = entries.get(key);
+            if (present != null) {
+                present.value = value;
+                return;
+            }
+//            terminates within two turns, since the first one clears all marks
+            while (slots[hand] != null && slots[hand].referenced) {
+                slots[hand].referenced = false;
+                hand = (hand + 1) % slots.length;
+            }
+            if (slots[hand] != null) entries.remove(slots[hand].key);
+
+            Entry<V> entry = new Entry<>(key, hand, value);
+            slots[hand] = entry;
+            entries.put(key, entry);
+            hand = (hand + 1) % slots.length;
+        }
+    }
+
+    /** Removes value from cache and returns it, or null if it wasn't cached */
+    V remove(short key) {
+        if (!entries.containsKey(key)) return null;
+        synchronized (this) {
+            Entry<V> entry = entries.remove(key);
+            if (entry == null) return null;
+            slots[entry.slot] = null;
+            return entry.value;
+        }
+    }
+
+    /** Number of cached entries */
+    int size() {
+        return entries.size();
+    }
+}
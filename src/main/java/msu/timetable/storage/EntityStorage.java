@@ -0,0 +1,106 @@
+package msu.timetable.storage;
+
+import org.springframework.lang.NonNull;
+import org.springframework.lang.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.UnaryOperator;
+
+/**
+ * Storage of entities (subjects or homeworks) by their identifiers.
+ * Stores program against this interface, so that data may be kept either on heap or on disk.
+ * Stored entities are treated as immutable: updates replace them with modified copies.
+ * @param <T> - type of entity
+ */
+public interface EntityStorage<T extends StoredEntity> {
+
+    /** Version, which matches any stored version in update() */
+    long ANY_VERSION = -1;
+
+    /** Returns entity with given id or null */
+    @Nullable
+    T get(short id);
+
+    /** Returns present entities with given ids in the same order, skipping absent ones */
+    default List<T> getAll(@NonNull short[] ids) {
+        List<T> result = new ArrayList<>(ids.length);
+        for (short id : ids) {
+            T entity = get(id);
+            if (entity != null) result.add(entity);
+        }
+        return result;
+    }
+
+    /** Checks whether entity with given id is present */
+    boolean contains(short id);
+
+    /** Inserts entity or replaces entity with the same id */
+    void put(@NonNull T entity);
+
+    /** Inserts entity, if its id isn't occupied. Returns whether entity was inserted */
+    boolean insert(@NonNull T entity);
+
+    /**
+     * Atomically replaces entity, if stored one still has the same version as expected entity
+     * @param expected - entity previously acquired from storage
+     * @param updated - new entity with the same id
+     * @return whether entity was replaced
+     */
+    boolean replace(@NonNull T expected, @NonNull T updated);
+
+    /**
+     * Applies change to entity with compare-and-set retries
+     * @param id - identifier of entity
+     * @param expectedVersion - version, which caller has seen, or ANY_VERSION
+     * @param change - function, which returns modified copy of entity with incremented version. May be called several times
+     * @return updated entity or null, if entity isn't found
+     * @throws VersionConflictException if stored version differs from expected one
+     */
+    default T update(short id, long expectedVersion, @NonNull UnaryOperator<T> change) {
+        while (true) {
+            T current = get(id);
+            if (current == null) return null;
+            if (expectedVersion != ANY_VERSION && current.getVersion() != expectedVersion)
+                throw new VersionConflictException(id, expectedVersion, current.getVersion());
+
+            T updated = change.apply(current);
+            if (replace(current, updated)) return updated;
+        }
+    }
+
+    /** Removes entity with given id and returns it, or null if it wasn't present */
+    @Nullable
+    T remove(short id);
+
+    /**
+     * Atomically removes entity, if stored one still has the same version as expected entity
+     * @param expected - entity previously acquired from storage
+     * @return whether entity was removed
+     */
+    boolean remove(@NonNull T expected);
+
+    /** Returns all entities ordered by id. Collection may be lazily loaded */
+    Collection<T> values();
+
+    /**
+     * Returns all entities ordered by id as of the call, later mutations don't change returned collection.
+     * Caller needs to exclude mutations only while the collection is taken, not while it is iterated.
+     * By default entities are copied, since they are immutable
+     */
+    default Collection<T> frozenValues() {
+        return List.copyOf(values());
+    }
+
+    /** Number of stored entities */
+    int size();
+
+    /** Persists all changes */
+    void flush();
+
+    /** Persists all changes and releases resources */
+    default void close() {
+        flush();
+    }
+}
@@ -0,0 +1,111 @@
+package msu.timetable.storage;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.type.TypeFactory;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.lang.NonNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Storage, which keeps all entities on heap and saves them into pretty-printed JSON file.
+ * This is the original storage format of the application
+ * @param <T> - type of entity
+ */
+public class JsonFileStorage<T extends StoredEntity> implements EntityStorage<T> {
+
+    /** Object mapper is required for serialization and deserialization */
+    private final ObjectMapper mapper = Jackson2ObjectMapperBuilder.json().build();
+
+    /** File object which stores JSON data */
+    private final File fileStore;
+
+    /** All entities by their identifiers */
+    private final ConcurrentSkipListMap<Short, T> entities = new ConcurrentSkipListMap<>();
+
+    /**
+     * Creates storage and loads entities from file, if it exists
+     * @param fileStore - JSON file containing array of entities
+     * @param type - class of entity
+     */
+    public JsonFileStorage(@NonNull File fileStore, @NonNull Class<T> type) {
+        this.fileStore = fileStore;
+        loadJSON(type);
+    }
+
+    /** Method for loading JSON data */
+    private void loadJSON(Class<T> type) {
+        if (fileStore.exists()) {
+            try {
+                List<T> list = mapper.readValue(
+                        fileStore,
+                        TypeFactory.defaultInstance().constructCollectionLikeType(List.class, type)
+                );
+                list.forEach(e -> entities.put(e.getId(), e));
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    @Override
+    public T get(short id) {
+        return entities.get(id);
+    }
+
+    @Override
+    public boolean contains(short id) {
+        return entities.containsKey(id);
+    }
+
+    @Override
+    public void put(@NonNull T entity) {
+        entities.put(entity.getId(), entity);
+    }
+
+    @Override
+    public boolean insert(@NonNull T entity) {
+        return entities.putIfAbsent(entity.getId(), entity) == null;
+    }
+
+    /** Entities are kept as is, so the expected one is compared by identity */
+    @Override
+    public boolean replace(@NonNull T expected, @NonNull T updated) {
+        return entities.replace(expected.getId(), expected, updated);
+    }
+
+    @Override
+    public T remove(short id) {
+        return entities.remove(id);
+    }
+
+    /** Entities are kept as is, so the expected one is compared by identity */
+    @Override
+    public boolean remove(@NonNull T expected) {
+        return entities.remove(expected.getId(), expected);
+    }
+
+    @Override
+    public Collection<T> values() {
+        return entities.values();
+    }
+
+    @Override
+    public int size() {
+        return entities.size();
+    }
+
+    /** Saves all entities in JSON file */
+    @Override
+    public void flush() {
+        try {
+            mapper.writerWithDefaultPrettyPrinter().writeValue(fileStore, entities.values());
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+}
@@ -0,0 +1,249 @@
+package msu.timetable.storage;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.h2.mvstore.MVMap;
+import org.h2.mvstore.MVStore;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.lang.NonNull;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Disk-backed storage built on MVStore, an embedded B-tree key-value store kept in a local file.
+ * Entities are stored as compact JSON and decoded on access, so the dataset may be larger than heap.
+ * Recently used entities are kept decoded in a bounded cache with CLOCK eviction, which approximates LRU without locking hits.
+ * Writes are guarded by striped locks, so that writes of different entities rarely contend.
+ * @param <T> - type of entity
+ */
+public class MVStoreStorage<T extends StoredEntity> implements EntityStorage<T> {
+
+    /** Number of write lock stripes, must be a power of two */
+    private static final int STRIPES = 64;
+
+    private final ObjectMapper mapper = Jackson2ObjectMapperBuilder.json().build();
+
+    /** Store, which owns the map. May be shared between several storages */
+    private final MVStore store;
+
+    /** Releases the store, when this storage is closed */
+    private final Runnable release;
+    private final AtomicBoolean closed = new AtomicBoolean();
+
+    /** Encoded entities by their identifiers */
+    private final MVMap<Short, byte[]> map;
+
+    private final Class<T> type;
+
+    /** Write locks, entity uses stripe determined by its id */
+    private final Object[] stripes = new Object[STRIPES];
+
+    /** Decoded hot entities, one unused since the last sweep is evicted first */
+    private final ClockCache<T> cache;
+
+    /**
+     * Creates storage over named map of the store, which is closed together with the storage
+     * @param store - opened MVStore
+     * @param mapName - name of the map, which holds entities
+     * @param type - class of entity
+     * @param cacheSize - maximal number of decoded entities kept on heap
+     */
+    public MVStoreStorage(@NonNull MVStore store, @NonNull String mapName, @NonNull Class<T> type, int cacheSize) {
+        this(store, mapName, type, cacheSize, store::close);
+    }
+
+    /**
+     * Creates storage over named map of the store, which may be shared with other storages
+     * @param store - opened MVStore
+     * @param mapName - name of the map, which holds entities
+     * @param type - class of entity
+     * @param cacheSize - maximal number of decoded entities kept on heap
+     * @param release - called once, when storage is closed, e.g. to close the store after the last of its storages
+     */
+    public MVStoreStorage(@NonNull MVStore store, @NonNull String mapName, @NonNull Class<T> type, int cacheSize,
+                          @NonNull Runnable release) {
+        this.store = store;
+        this.release = release;
+        this.map = store.openMap(mapName);
+        this.type = type;
+        Arrays.setAll(stripes, i -> new Object());
+        this.cache = new ClockCache<>(cacheSize);
+    }
+
+    @Override
+    public T get(short id) {
+        T entity = cache.get(id);
+        if (entity != null) return entity;
+
+//        loading under the write lock prevents caching of value, which is being replaced
+        synchronized (stripeOf(id)) {
+            entity = cache.get(id);
+            if (entity == null) {
+                entity = decode(map.get(id));
+                if (entity != null) cache.put(id, entity);
+            }
+            return entity;
+        }
+    }
+
+    @Override
+    public boolean contains(short id) {
+        return cache.peek(id) != null || map.containsKey(id);
+    }
+
+    @Override
+    public void put(@NonNull T entity) {
+        byte[] encoded = encode(entity);
+        synchronized (stripeOf(entity.getId())) {
+            map.put(entity.getId(), encoded);
+            cache.put(entity.getId(), entity);
+        }
+    }
+
+    @Override
+    public boolean insert(@NonNull T entity) {
+        byte[] encoded = encode(entity);
+        synchronized (stripeOf(entity.getId())) {
+            if (map.putIfAbsent(entity.getId(), encoded) != null) return false;
+            cache.put(entity.getId(), entity);
+            return true;
+        }
+    }
+
+    /** Stored entity may be decoded anew, so the expected one is compared by version */
+    @Override
+    public boolean replace(@NonNull T expected, @NonNull T updated) {
+        byte[] encoded = encode(updated);
+        synchronized (stripeOf(expected.getId())) {
+            T current = get(expected.getId());
+            if (current == null || current.getVersion() != expected.getVersion()) return false;
+            map.put(updated.getId(), encoded);
+            cache.put(updated.getId(), updated);
+            return true;
+        }
+    }
+
+    @Override
+    public T remove(short id) {
+        synchronized (stripeOf(id)) {
+            T cached = cache.remove(id);
+            byte[] removed = map.remove(id);
+            return cached != null ? cached : decode(removed);
+        }
+    }
+
+    /** Stored entity may be decoded anew, so the expected one is compared by version */
+    @Override
+    public boolean remove(@NonNull T expected) {
+        synchronized (stripeOf(expected.getId())) {
+            T current = get(expected.getId());
+            if (current == null || current.getVersion() != expected.getVersion()) return false;
+            cache.remove(expected.getId());
+            map.remove(expected.getId());
+            return true;
+        }
+    }
+
+    private Object stripeOf(short id) {
+        return stripes[id & (STRIPES - 1)];
+    }
+
+    /** Returns view, which decodes entities while iterating. Scans only peek into hot cache, so they don't keep entities there */
+    @Override
+    public Collection<T> values() {
+        return new AbstractCollection<>() {
+            @Override
+            public Iterator<T> iterator() {
+                Iterator<Map.Entry<Short, byte[]>> entries = map.entrySet().iterator();
+                return new Iterator<>() {
+                    @Override
+                    public boolean hasNext() {
+                        return entries.hasNext();
+                    }
+
+                    @Override
+                    public T next() {
+                        Map.Entry<Short, byte[]> entry = entries.next();
+                        T cached = cache.peek(entry.getKey());
+                        return cached != null ? cached : decode(entry.getValue());
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return map.size();
+            }
+        };
+    }
+
+    /**
+     * Returns view of the map's current root. MVMap is copy-on-write, so later writes don't change it.
+     * Entities are decoded while iterating without the cache, which may hold newer ones
+     */
+    @Override
+    public Collection<T> frozenValues() {
+        Set<Map.Entry<Short, byte[]>> entries = map.entrySet();
+        int size = map.size();
+        return new AbstractCollection<>() {
+            @Override
+            public Iterator<T> iterator() {
+                Iterator<Map.Entry<Short, byte[]>> iterator = entries.iterator();
+                return new Iterator<>() {
+                    @Override
+                    public boolean hasNext() {
+                        return iterator.hasNext();
+                    }
+
+                    @Override
+                    public T next() {
+                        return decode(iterator.next().getValue());
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+    @Override
+    public int size() {
+        return map.size();
+    }
+
+    /** Commits changes. Does nothing, if the store is already closed */
+    @Override
+    public void flush() {
+        if (!store.isClosed()) store.commit();
+    }
+
+    /** Commits changes and releases the store. Repeated calls do nothing */
+    @Override
+    public void close() {
+        if (!closed.compareAndSet(false, true)) return;
+        flush();
+        release.run();
+    }
+
+    private byte[] encode(T entity) {
+        try {
+            return mapper.writeValueAsBytes(entity);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private T decode(byte[] bytes) {
+        if (bytes == null) return null;
+        try {
+            return mapper.readValue(bytes, type);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
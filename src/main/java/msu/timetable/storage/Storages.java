@@ -0,0 +1,80 @@
+package msu.timetable.storage;
+
+import msu.timetable.replication.Replication;
+import org.h2.mvstore.MVStore;
+import org.springframework.lang.NonNull;
+
+import java.io.File;
+import java.util.logging.Logger;
+
+/**
+ * Creates storages according to system properties:
+ * <ul>
+ *     <li>timetable.storage - either "json" (default) or "mvstore"</li>
+ *     <li>timetable.storage.dir - directory with data files, current directory by default</li>
+ *     <li>timetable.storage.cache - number of hot entities kept on heap by "mvstore" storage</li>
+ * </ul>
+ */
+public final class Storages {
+
+    private static final Logger logger = Logger.getLogger("Storages");
+
+    /** Name of MVStore file, which holds all maps */
+    private static final String MVSTORE_FILE = "timetable.mv.db";
+
+    /** MVStore shared by all storages, opened on first use. Guarded by Storages.class */
+    private static MVStore mvStore = null;
+
+    /** Number of open storages using mvStore, it is closed together with the last one. Guarded by Storages.class */
+    private static int mvStoreUsers = 0;
+
+    private Storages() {}
+
+    /**
+     * Creates storage for one type of entities. On replication leader its mutations are logged for followers
+     * @param name - name of the storage, e.g. "subjects". Used as JSON file name, MVStore map name and replication name
+     * @param type - class of entity
+     */
+    public static <T extends StoredEntity> EntityStorage<T> create(@NonNull String name, @NonNull Class<T> type) {
+        return Replication.logged(name, createLocal(name, type));
+    }
+
+    private static <T extends StoredEntity> EntityStorage<T> createLocal(String name, Class<T> type) {
+        String kind = System.getProperty("timetable.storage", "json");
+        File directory = new File(System.getProperty("timetable.storage.dir", "."));
+
+        return switch (kind) {
+            case "json" -> new JsonFileStorage<>(new File(directory, name + ".json"), type);
+            case "mvstore" -> {
+                int cacheSize = Integer.getInteger("timetable.storage.cache", 4096);
+                MVStore store = openMVStore(directory);
+                yield new MVStoreStorage<>(store, name, type, cacheSize, () -> releaseMVStore(store));
+            }
+            default -> {
+                logger.warning("Unknown storage \"" + kind + "\", falling back to JSON files");
+                yield new JsonFileStorage<>(new File(directory, name + ".json"), type);
+            }
+        };
+    }
+
+    private static synchronized MVStore openMVStore(File directory) {
+        if (mvStore == null || mvStore.isClosed()) {
+            mvStore = new MVStore.Builder()
+                    .fileName(new File(directory, MVSTORE_FILE).getPath())
+                    .compress()
+                    .open();
+            mvStoreUsers = 0;
+        }
+        mvStoreUsers++;
+        return mvStore;
+    }
+
+    /** Closes shared MVStore, when the last storage using it is closed */
+    private static synchronized void releaseMVStore(MVStore store) {
+        if (store != mvStore) return;
+        if (--mvStoreUsers == 0) {
+            store.close();
+            mvStore = null;
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package msu.timetable.storage;
+
+/**
+ * Entity, which may be kept in EntityStorage.
+ * Version is incremented by every update and is used for optimistic concurrency control
+ */
+public interface StoredEntity {
+
+    /** Identifier of entity */
+    short getId();
+
+    /** Number of updates applied to entity */
+    long getVersion();
+}
@@ -0,0 +1,27 @@
+package msu.timetable.storage;
+
+/** Thrown, when entity was updated by someone else since the version expected by caller */
+public class VersionConflictException extends RuntimeException {
+
+    /** Version expected by caller */
+    private final long expectedVersion;
+
+    /** Version actually stored */
+    private final long currentVersion;
+
+    public VersionConflictException(short id, long expectedVersion, long currentVersion) {
+        super("Entity with ID=%x has version %d, but %d was expected".formatted(id, currentVersion, expectedVersion));
+        this.expectedVersion = expectedVersion;
+        this.currentVersion = currentVersion;
+    }
+
+    /** Expected version getter */
+    public long getExpectedVersion() {
+        return expectedVersion;
+    }
+
+    /** Current version getter */
+    public long getCurrentVersion() {
+        return currentVersion;
+    }
+}
@@ -0,0 +1,153 @@
+package msu.timetable.archive;
+
+import msu.timetable.models.Homework;
+import msu.timetable.models.Homeworks;
+import msu.timetable.models.Subject;
+import msu.timetable.models.Subjects;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ArchiveTests {
+
+	private static Homework homework(int id, long due) {
+		Homework homework = new Homework();
+		homework.setId((short) id);
+		homework.setSubject((short) 1);
+		homework.setDescription("Homework " + id);
+		homework.setDueDate(new Date(due));
+		return homework;
+	}
+
+	@Test
+	void returnsRecordsOfRangeAfterReopening() throws Exception {
+		Path directory = Files.createTempDirectory("archive");
+		Archive archive = new Archive(directory);
+
+		List<Archive.Lesson> lessons = new ArrayList<>();
+//		more lessons than fit into one segment, in reverse order
+		for (int i = Archive.SEGMENT_RECORDS + 10; i > 0; i--)
+			lessons.add(new Archive.Lesson((short) (i % 3), "Subject " + i % 3, i * 1000L));
+		archive.appendLessons(lessons);
+		archive.appendHomeworks(List.of(homework(7, 5000), homework(8, 9000), homework(9, 12000)));
+
+		Files.writeString(directory.resolve("segment-00000099.lessons.tmp"), "interrupted");
+		Archive reopened = new Archive(directory);
+
+		assertEquals(3, reopened.getStats().segments());
+		assertEquals(Archive.SEGMENT_RECORDS + 10, reopened.getStats().lessons());
+		assertEquals((Archive.SEGMENT_RECORDS + 10) * 1000L + 1, reopened.getHorizon());
+		assertFalse(Files.exists(directory.resolve("segment-00000099.lessons.tmp")));
+
+		assertEquals(List.of(5000L, 6000L, 7000L),
+				reopened.getLessons(5000, 8000).stream().map(Archive.Lesson::date).toList());
+		assertEquals(List.of(65_536_000L, 65_537_000L),
+				reopened.getLessons(65_536_000, 65_538_000).stream().map(Archive.Lesson::date).toList());
+		assertEquals(List.of("Homework 7", "Homework 8"),
+				reopened.getHomeworks(0, 10_000).stream().map(Homework::getDescription).toList());
+	}
+
+	@Test
+	void lessonsArchivedTwiceAreReturnedOnce() throws Exception {
+		Archive archive = new Archive(Files.createTempDirectory("archive"));
+		List<Archive.Lesson> lessons = List.of(
+				new Archive.Lesson((short) 1, "Algebra", 1000),
+				new Archive.Lesson((short) 2, "Physics", 1000),
+				new Archive.Lesson((short) 1, "Algebra", 2000));
+		archive.appendLessons(lessons);
+//		move interrupted before lessons were removed from subjects archives them again, possibly renamed
+		archive.appendLessons(List.of(new Archive.Lesson((short) 1, "Linear Algebra", 1000), lessons.get(2)));
+
+		assertEquals(lessons, archive.getLessons(0, 3000));
+		Subject algebra = new Subject();
+		algebra.setId((short) 1);
+		assertEquals(List.of(new Date(1000), new Date(2000)),
+				archive.withLessons(List.of(algebra), 0, 3000).iterator().next().getSchedule());
+	}
+
+	private static final long DAY = 86_400_000L;
+
+	/** Moves homeworks due before day 9 of epoch, lessons aren't moved */
+	private static ArchiveMover mover(Archive archive) {
+		return new ArchiveMover(Subjects.getInstance(), Homeworks.getInstance(), archive, Long.MAX_VALUE, DAY, () -> 10 * DAY);
+	}
+
+	/** Creates subject with homeworks of given descriptions due at given times, returns them in the same order */
+	private static List<Homework> homeworks(String[] descriptions, long... dues) {
+		Subject subject = Subjects.getInstance().createSubject("Archived " + System.nanoTime(), List.of());
+		List<Homework> created = new ArrayList<>();
+		for (int i = 0; i < dues.length; i++) {
+			String description = descriptions[i];
+			Date due = new Date(dues[i]);
+			created.add(Homeworks.getInstance().createHomework(subject.getId(), h -> {
+				h.setDescription(description);
+				h.setDueDate(due);
+			}));
+		}
+		return created;
+	}
+
+	/** Descriptions of archived homeworks of subject */
+	private static List<String> archived(Archive archive, short subject) {
+		return archive.getHomeworks(0, 10 * DAY).stream()
+				.filter(h -> h.getSubject() == subject)
+				.map(Homework::getDescription)
+				.toList();
+	}
+
+	@Test
+	void homeworkChangedDuringMoveStaysInStore() throws Exception {
+		List<Homework> created = homeworks(new String[] { "Changed", "Unchanged" }, 1000, 2000);
+		Homework changed = created.get(0);
+		Homeworks homeworks = Homeworks.getInstance();
+		Archive archive = new Archive(Files.createTempDirectory("archive")) {
+			@Override
+			public synchronized void journalHomeworks(Collection<Homework> due) throws IOException {
+				super.journalHomeworks(due);
+//				update, which comes after homeworks are selected for move
+				if (due.contains(changed))
+					homeworks.setHomeworkContent(changed.getId(), changed.getVersion(), "Changed again");
+			}
+		};
+		ArchiveMover mover = mover(archive);
+
+		mover.move();
+
+		assertEquals("Changed again", homeworks.getHomeworkById(changed.getId()).getDescription());
+		assertNull(homeworks.getHomeworkById(created.get(1).getId()));
+		assertEquals(List.of("Unchanged"), archived(archive, changed.getSubject()));
+		assertEquals(List.of(), archive.getJournaledHomeworks());
+
+		mover.move();
+
+		assertNull(homeworks.getHomeworkById(changed.getId()));
+		assertEquals(List.of("Changed again", "Unchanged"), archived(archive, changed.getSubject()));
+	}
+
+	@Test
+	void interruptedMoveIsCompletedByNextRun() throws Exception {
+		List<Homework> created = homeworks(new String[] { "Removed" }, 3000);
+		Path directory = Files.createTempDirectory("archive");
+		Archive failing = new Archive(directory) {
+			@Override
+			public synchronized void archiveJournaled(Collection<Homework> removed) throws IOException {
+				throw new IOException("Disk is full");
+			}
+		};
+		assertThrows(IOException.class, () -> mover(failing).move());
+		assertNull(Homeworks.getInstance().getHomeworkById(created.get(0).getId()));
+
+//		the next run finds removed homework in journal only
+		Archive archive = new Archive(directory);
+		mover(archive).move();
+
+		assertEquals(List.of("Removed"), archived(archive, created.get(0).getSubject()));
+		assertEquals(List.of(), archive.getJournaledHomeworks());
+	}
+
+}
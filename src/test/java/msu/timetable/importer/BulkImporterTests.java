@@ -0,0 +1,103 @@
+package msu.timetable.importer;
+
+import msu.timetable.models.Homeworks;
+import msu.timetable.models.Subject;
+import msu.timetable.models.Subjects;
+import msu.timetable.models.TimetableCalendar;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.ZoneId;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+/** Imports into application stores, so every test uses its own subject names */
+class BulkImporterTests {
+
+	private final BulkImporter importer = new BulkImporter(Subjects.getInstance(), Homeworks.getInstance(),
+			new TimetableCalendar(ZoneId.of("UTC")), ForkJoinPool.commonPool());
+
+	private ImportReport run(String input, ImportFormat format) throws IOException {
+		return importer.run(new ByteArrayInputStream(input.getBytes(StandardCharsets.UTF_8)), format);
+	}
+
+	private static List<Long> schedule(String name) {
+		return Subjects.getInstance().getSubjectByName(name).getSchedule().stream().map(Date::getTime).toList();
+	}
+
+	@Test
+	void chunksAreMergedInInputOrder() throws IOException {
+		String name = "Chunked " + System.nanoTime();
+		int rows = 2 * BulkImporter.CHUNK_LINES + 100;
+		StringBuilder csv = new StringBuilder("subject,date\n");
+		for (int i = 0; i < rows; i++) {
+//			bad rows on both sides of chunk boundaries, lines are numbered from header
+			if (i == BulkImporter.CHUNK_LINES - 2 || i == BulkImporter.CHUNK_LINES) csv.append(name).append(",never\n");
+			else csv.append(name).append(',').append(i * 1000L).append('\n');
+		}
+
+		ImportReport report = run(csv.toString(), ImportFormat.CSV);
+
+		assertEquals(rows, report.records());
+		assertEquals(rows - 2, report.lessons());
+		assertEquals(List.of((long) BulkImporter.CHUNK_LINES, BulkImporter.CHUNK_LINES + 2L),
+				report.errors().stream().map(ImportReport.RowError::line).toList());
+		assertEquals(LongStream.range(0, rows)
+						.filter(i -> i != BulkImporter.CHUNK_LINES - 2 && i != BulkImporter.CHUNK_LINES)
+						.map(i -> i * 1000).boxed().toList(),
+				schedule(name));
+	}
+
+	@Test
+	void foldedLinesAreUnfoldedAcrossChunks() throws IOException {
+		String name = "Folded " + System.nanoTime();
+		int events = BulkImporter.CHUNK_LINES / 2;
+		StringBuilder ics = new StringBuilder("BEGIN:VCALENDAR\r\n");
+		for (int i = 0; i < events; i++) {
+			ics.append("BEGIN:VEVENT\r\n")
+					.append("SUMMARY:").append(name, 0, 4).append("\r\n")
+					.append(' ').append(name.substring(4)).append(' ').append(i % 3).append("\r\n")
+					.append(String.format("DTSTART:202409%02dT%02d%02d00Z\r\n", 1 + i / 1440, i / 60 % 24, i % 60))
+					.append("END:VEVENT\r\n");
+		}
+//		physical line of the broken event: header line and five lines of every event
+		long broken = 1 + 5L * events + 1;
+		ics.append("BEGIN:VEVENT\r\nSUMMARY:").append(name).append(" 0\r\nEND:VEVENT\r\nEND:VCALENDAR\r\n");
+
+		ImportReport report = run(ics.toString(), ImportFormat.ICS);
+
+		assertEquals(events + 1, report.records());
+		assertEquals(events, report.lessons());
+		assertEquals(List.of(broken), report.errors().stream().map(ImportReport.RowError::line).toList());
+		for (int subject = 0; subject < 3; subject++)
+			assertEquals((events - subject + 2) / 3, schedule(name + " " + subject).size());
+	}
+
+	@Test
+	void existingSubjectsAreFoundByName() throws IOException {
+		String name = "Existing " + System.nanoTime();
+		Subject existing = Subjects.getInstance().createSubject(name, List.of(new Date(1000)));
+		String other = "New " + System.nanoTime();
+
+		ImportReport report = run("subject,date,homework\n"
+				+ name + ",1000,\n"
+				+ name + ",2000,\n"
+				+ name + ",3000,Essay\n"
+				+ other + ",4000,Essay\n", ImportFormat.CSV);
+
+		assertEquals(2, report.subjects());
+		assertEquals(2, report.homeworks());
+		assertEquals(existing.getId(), Subjects.getInstance().getSubjectByName(name).getId());
+		assertNotEquals(existing.getId(), Subjects.getInstance().getSubjectByName(other).getId());
+		assertEquals(List.of(1000L, 2000L), schedule(name));
+		assertEquals(List.of(), schedule(other));
+	}
+
+}
@@ -0,0 +1,89 @@
+package msu.timetable.importer;
+
+import msu.timetable.models.TimetableCalendar;
+import org.junit.jupiter.api.Test;
+
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class CsvParserTests {
+
+	private static final TimetableCalendar moscow = new TimetableCalendar(ZoneId.of("Europe/Moscow"));
+
+	private static ImportBatch parse(String header, String... lines) {
+		long[] numbers = new long[lines.length];
+		for (int i = 0; i < lines.length; i++)
+			numbers[i] = i + 2;
+		ImportBatch batch = new ImportBatch();
+		new CsvParser(header, moscow).parse(new RecordParser.Chunk(lines, numbers), batch);
+		return batch;
+	}
+
+	private static long moscow(int month, int day, int hour, int minute) {
+		return ZonedDateTime.of(2024, month, day, hour, minute, 0, 0, ZoneId.of("Europe/Moscow")).toInstant().toEpochMilli();
+	}
+
+	@Test
+	void quotedFieldsKeepCommasAndQuotes() {
+		assertEquals(List.of("Algebra", "Read \"Proofs\", ch. 1", "", "x"),
+				CsvParser.split("Algebra,\"Read \"\"Proofs\"\", ch. 1\",,x"));
+	}
+
+	@Test
+	void headerAliasesInAnyOrderAndCase() {
+		ImportBatch batch = parse(" Date ,DESCRIPTION,Subject",
+				"2024-09-10,\"Exercises 1, 2\",Algebra",
+				"2024-09-02 09:00,,Algebra");
+
+		assertEquals(List.of(new ImportBatch.HomeworkRow(2, "Algebra", "Exercises 1, 2", moscow(9, 10, 0, 0))), batch.homeworks);
+		assertEquals(1, batch.lessons.get("Algebra").size);
+		assertEquals(moscow(9, 2, 9, 0), batch.lessons.get("Algebra").values[0]);
+		assertEquals(3, batch.lessons.get("Algebra").line);
+	}
+
+	@Test
+	void headerWithoutRequiredColumnsIsRejected() {
+		assertThrows(IllegalArgumentException.class, () -> new CsvParser("subject,homework", moscow));
+		assertThrows(IllegalArgumentException.class, () -> new CsvParser(null, moscow));
+	}
+
+	@Test
+	void dateForms() {
+		ImportBatch batch = parse("subject,date",
+				"A,1725256800000",
+				"A,2024-09-03",
+				"A,2024-09-04T10:45",
+				"A,2024-09-05 12:50:00",
+				"A,2024-09-06T14:35:00+03:00",
+				"A,2024-09-07T09:00:00Z");
+
+		ImportBatch.Timestamps lessons = batch.lessons.get("A");
+		assertEquals(6, lessons.size);
+		assertEquals(1725256800000L, lessons.values[0]);
+		assertEquals(moscow(9, 3, 0, 0), lessons.values[1]);
+		assertEquals(moscow(9, 4, 10, 45), lessons.values[2]);
+		assertEquals(moscow(9, 5, 12, 50), lessons.values[3]);
+		assertEquals(moscow(9, 6, 14, 35), lessons.values[4]);
+		assertEquals(moscow(9, 7, 12, 0), lessons.values[5]);
+	}
+
+	@Test
+	void badRowsAreReportedWithLineNumbers() {
+		ImportBatch batch = parse("subject,date,homework",
+				"Algebra,2024-09-02",
+				"",
+				" ,2024-09-02,",
+				"Algebra,tomorrow,",
+				"Algebra,2024-09-02,");
+
+		assertEquals(4, batch.records);
+		assertEquals(3, batch.errorCount);
+		assertEquals(List.of(2L, 4L, 5L), batch.errors.stream().map(ImportReport.RowError::line).toList());
+		assertEquals(1, batch.lessons.get("Algebra").size);
+	}
+
+}
@@ -0,0 +1,55 @@
+package msu.timetable.importer;
+
+import msu.timetable.models.TimetableCalendar;
+import org.junit.jupiter.api.Test;
+
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class IcsParserTests {
+
+	private static ImportBatch parse(String... lines) {
+		ImportBatch batch = new ImportBatch();
+		new IcsParser(new TimetableCalendar(ZoneId.of("UTC"))).parse(new RecordParser.Chunk(lines, new long[lines.length]), batch);
+		return batch;
+	}
+
+	private static long moscow(int month, int day, int hour) {
+		return ZonedDateTime.of(2024, month, day, hour, 0, 0, 0, ZoneId.of("Europe/Moscow")).toInstant().toEpochMilli();
+	}
+
+	@Test
+	void weeklyRecurrenceSkipsExceptions() {
+		ImportBatch batch = parse(
+				"BEGIN:VEVENT",
+				"SUMMARY:Algebra",
+				"DTSTART;TZID=Europe/Moscow:20240902T090000",
+				"RRULE:FREQ=WEEKLY;BYDAY=MO,WE;COUNT=4",
+				"EXDATE;TZID=Europe/Moscow:20240904T090000",
+				"END:VEVENT"
+		);
+
+		ImportBatch.Timestamps lessons = batch.lessons.get("Algebra");
+		assertEquals(List.of(moscow(9, 2, 9), moscow(9, 9, 9), moscow(9, 11, 9)),
+				Arrays.stream(lessons.values, 0, lessons.size).boxed().toList());
+	}
+
+	@Test
+	void incompleteComponentIsReported() {
+		ImportBatch batch = parse(
+				"BEGIN:VTODO",
+				"SUMMARY:Essay",
+				"DUE:20240910T070000Z",
+				"END:VTODO"
+		);
+
+		assertEquals(1, batch.records);
+		assertEquals(1, batch.errorCount);
+		assertEquals(List.of(), batch.homeworks);
+	}
+
+}
@@ -0,0 +1,88 @@
+package msu.timetable.models;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FreeSlotFinderTests {
+
+	private static final ZoneId zone = ZoneId.of("Europe/Moscow");
+	private static final long monday = LocalDate.of(2022, 9, 5).atStartOfDay(zone).toInstant().toEpochMilli();
+	private static final long hour = TimeUnit.HOURS.toMillis(1);
+	private static final long day = TimeUnit.DAYS.toMillis(1);
+
+	private final FreeSlotFinder finder = new FreeSlotFinder(FreeSlotFinder.DEFAULT_LESSON_LENGTH, new TimetableCalendar(zone), ForkJoinPool.commonPool());
+
+	private static Subject subjectWith(long... lessons) {
+		Subject subject = new Subject();
+		subject.setSchedule(java.util.Arrays.stream(lessons).mapToObj(Date::new).toList());
+		return subject;
+	}
+
+	private static FreeSlotFinder.Query query(long from, long to) {
+		return new FreeSlotFinder.Query(from, to, 90 * 60_000L, 9 * 60, 18 * 60, true, 100, FreeSlot.EARLIEST_FIRST);
+	}
+
+	@Test
+	void mergesLessonsOfAllSubjects() {
+//		9:30-11:00 and 10:30-12:00 overlap, 13:00-14:30 leaves one hour gap, which is too short
+		Subject first = subjectWith(monday + 9 * hour + hour / 2, monday + 13 * hour);
+		Subject second = subjectWith(monday + 10 * hour + hour / 2);
+
+		List<FreeSlot> slots = finder.find(List.of(first, second), query(monday, monday + day));
+
+		assertEquals(List.of(new FreeSlot(monday + 14 * hour + hour / 2, monday + 18 * hour)), slots);
+	}
+
+	@Test
+	void skipsWeekends() {
+		List<FreeSlot> slots = finder.find(List.of(), query(monday, monday + 7 * day));
+
+		assertEquals(5, slots.size());
+		assertEquals(monday + 4 * day + 9 * hour, slots.get(4).start());
+	}
+
+	@Test
+	void largeSearchReturnsOrderedDisjointSlots() {
+		long[] lessons = new long[2000];
+		for (int i = 0; i < lessons.length; i++)
+			lessons[i] = monday + (i % 365) * day + (9 + i % 8) * hour;
+		Subject busy = subjectWith(lessons);
+
+		FreeSlotFinder.Query year = query(monday, monday + 365 * day);
+		List<FreeSlot> slots = finder.find(List.of(busy), new FreeSlotFinder.Query(
+				year.from(), year.to(), year.duration(), year.dayStart(), year.dayEnd(), true, Integer.MAX_VALUE, FreeSlot.EARLIEST_FIRST
+		));
+
+		for (int i = 1; i < slots.size(); i++)
+			assertTrue(slots.get(i - 1).end() <= slots.get(i).start());
+		for (FreeSlot slot : slots)
+			assertTrue(slot.length() >= year.duration());
+	}
+
+	@Test
+	void earliestRankingStopsAtLimit() {
+		FreeSlotFinder.Query week = query(monday, monday + 7 * day);
+		List<FreeSlot> all = finder.find(List.of(), week);
+		List<FreeSlot> first = finder.find(List.of(), new FreeSlotFinder.Query(
+				week.from(), week.to(), week.duration(), week.dayStart(), week.dayEnd(), true, 2, FreeSlot.EARLIEST_FIRST
+		));
+
+		assertEquals(all.subList(0, 2), first);
+	}
+
+	@Test
+	void rejectsTooLongRange() {
+		assertThrows(IllegalArgumentException.class, () -> finder.find(List.of(), query(0, monday)));
+	}
+
+}
@@ -0,0 +1,140 @@
+package msu.timetable.models;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HomeworkIndexTests {
+
+	private final HomeworkIndex index = new HomeworkIndex();
+
+	private static Homework homework(int id, String description) {
+		Homework homework = new Homework();
+		homework.setId((short) id);
+		homework.setDescription(description);
+		return homework;
+	}
+
+	private List<Short> search(String query) {
+		return index.search(query, null, 10).stream().map(HomeworkIndex.Hit::homework).toList();
+	}
+
+	@Test
+	void matchesAllWordsIgnoringCase() {
+		index.put(homework(1, "Solve problems 1-10 from Demidovich"));
+		index.put(homework(2, "Read chapter about problems of convergence"));
+
+		assertEquals(List.of((short) 1), search("DEMIDOVICH problems"));
+		assertEquals(2, search("problems").size());
+	}
+
+	@Test
+	void lastWordIsPrefix() {
+		index.put(homework(1, "Memorize definitions"));
+		index.put(homework(2, "Make exercises"));
+
+		assertEquals(List.of((short) 1), search("mem"));
+		assertEquals(List.of(), search("mem exercises"));
+	}
+
+	@Test
+	void reindexesAndRemovesIncrementally() throws IOException {
+		Homework hw = homework(7, "Old text");
+		index.put(hw);
+		hw.setDescription("New text");
+		hw.setExtras(RawJson.parse("{\"tags\":[\"calculus\"],\"url\":\"http://ignored\"}".getBytes(StandardCharsets.UTF_8)));
+		index.put(hw);
+
+		assertEquals(List.of(), search("old"));
+		assertEquals(List.of((short) 7), search("calculus new"));
+		assertEquals(List.of(), search("ignored"));
+
+		index.remove((short) 7);
+		assertEquals(List.of(), search("text"));
+	}
+
+	@Test
+	void ranksFrequentMatchesHigher() {
+		for (int i = 0; i < 20000; i++)
+			index.put(homework(i, "exercise number " + i));
+		index.put(homework(30000, "integral integral integral"));
+		index.put(homework(30001, "integral exercise"));
+
+		List<Short> found = search("integral");
+		assertEquals(List.of((short) 30000, (short) 30001), found);
+		assertTrue(search("exercise").size() == 10);
+	}
+
+	@Test
+	void repeatedSearchesStartFromScratch() {
+		index.put(homework(-1, "Integrate by parts"));
+		index.put(homework(3, "Integrate series"));
+
+//		failed search leaves documents matched by its first word behind
+		assertEquals(List.of(), search("integrate nothing"));
+		assertEquals(List.of((short) -1), search("integrate parts"));
+		assertEquals(2, search("integ").size());
+
+		index.remove((short) -1);
+		assertEquals(List.of((short) 3), search("integrate"));
+	}
+
+	@Test
+	void syncReplacesGhostOfRemovedHomework() {
+		Map<Short, Homework> store = new ConcurrentHashMap<>();
+//		update, which raced with removal, put its homework after it was removed
+		Homework ghost = homework(5, "Old assignment");
+		ghost.setVersion(6);
+		index.put(ghost);
+		index.sync((short) 5, store::get);
+		assertEquals(List.of(), search("old"));
+
+		index.put(ghost);
+		store.put((short) 5, homework(5, "New assignment"));
+		index.sync((short) 5, store::get);
+		assertEquals(List.of(), search("old"));
+		assertEquals(List.of((short) 5), search("new"));
+	}
+
+	@Test
+	void concurrentSyncsEndWithCurrentState() throws InterruptedException {
+		Map<Short, Homework> store = new ConcurrentHashMap<>();
+		List<Thread> threads = new ArrayList<>();
+		for (int t = 0; t < 4; t++) {
+			Random random = new Random(t);
+			threads.add(new Thread(() -> {
+				for (int i = 0; i < 5000; i++) {
+					short id = (short) random.nextInt(16);
+					if (random.nextInt(3) == 0) {
+						store.remove(id);
+					} else {
+//						versions start over, as if homework was removed and created anew
+						Homework homework = homework(id, "word" + random.nextInt(100));
+						homework.setVersion(random.nextInt(3));
+						store.put(id, homework);
+					}
+					index.sync(id, store::get);
+				}
+			}));
+		}
+		threads.forEach(Thread::start);
+		for (Thread thread : threads) thread.join();
+
+		for (short id = 0; id < 16; id++) {
+			Homework homework = store.get(id);
+			if (homework != null)
+				assertTrue(search(homework.getDescription()).contains(id), homework.getDescription());
+		}
+		assertEquals(store.size(), index.search("word", null, 100).size());
+	}
+
+}
@@ -0,0 +1,77 @@
+package msu.timetable.models;
+
+import msu.timetable.storage.EntityStorage;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/** Works with application stores, so every test uses its own subjects */
+class HomeworksTests {
+
+	private final Subjects subjects = Subjects.getInstance();
+	private final Homeworks homeworks = Homeworks.getInstance();
+
+	@Test
+	void homeworkChangesDontWriteSubjects() {
+		Subject first = subjects.createSubject("Linked " + System.nanoTime(), List.of());
+		Subject second = subjects.createSubject("Linked " + System.nanoTime(), List.of());
+
+		Homework homework = homeworks.createHomework(first.getId(), "Exercises");
+		assertEquals(List.of(homework.getId()), subjects.getSubjectById(first.getId()).getHomeworks());
+
+		homeworks.setHomeworkSubject(homework.getId(), homework.getVersion(), second.getId());
+		assertEquals(List.of(), subjects.getSubjectById(first.getId()).getHomeworks());
+		assertEquals(List.of(homework.getId()), subjects.getSubjectById(second.getId()).getHomeworks());
+
+		homeworks.removeHomework(homework);
+		assertEquals(List.of(), subjects.getSubjectById(second.getId()).getHomeworks());
+
+//		clients holding versions of subjects don't get conflicts because of homework changes
+		assertEquals(first.getVersion(), subjects.getSubjectById(first.getId()).getVersion());
+		assertEquals(second.getVersion(), subjects.getSubjectById(second.getId()).getVersion());
+		assertTrue(homeworks.checkIntegrity(false).consistent());
+	}
+
+	@Test
+	void updateRetriesAfterConcurrentChange() {
+		Subject subject = subjects.createSubject("Versioned " + System.nanoTime(), List.of());
+		short id = homeworks.createHomework(subject.getId(), "Exercises").getId();
+
+		int[] calls = { 0 };
+		Homework updated = homeworks.updateHomework(id, EntityStorage.ANY_VERSION, hw -> {
+//			the first attempt loses to another writer
+			if (calls[0]++ == 0) homeworks.setHomeworkDate(id, EntityStorage.ANY_VERSION, new Date(5000));
+			hw.setDescription(hw.getDescription() + "!");
+		});
+
+		assertEquals(2, calls[0]);
+		assertEquals("Exercises!", updated.getDescription());
+		assertEquals(new Date(5000), updated.getDueDate());
+		assertEquals(2, updated.getVersion());
+	}
+
+	@Test
+	void concurrentUpdatesAreAllApplied() throws InterruptedException {
+		Subject subject = subjects.createSubject("Versioned " + System.nanoTime(), List.of());
+		short id = homeworks.createHomework(subject.getId(), "").getId();
+
+		List<Thread> writers = new ArrayList<>();
+		for (int i = 0; i < 4; i++)
+			writers.add(new Thread(() -> {
+				for (int j = 0; j < 50; j++)
+					homeworks.updateHomework(id, EntityStorage.ANY_VERSION, hw -> hw.setDescription(hw.getDescription() + "x"));
+			}));
+		writers.forEach(Thread::start);
+		for (Thread writer : writers) writer.join();
+
+		Homework homework = homeworks.getHomeworkById(id);
+		assertEquals(200, homework.getDescription().length());
+		assertEquals(200, homework.getVersion());
+	}
+
+}
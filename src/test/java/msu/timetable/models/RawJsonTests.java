@@ -0,0 +1,72 @@
+package msu.timetable.models;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import msu.timetable.APIResponse;
+import msu.timetable.storage.JsonFileStorage;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RawJsonTests {
+
+	private final ObjectMapper mapper = Jackson2ObjectMapperBuilder.json().build();
+
+	private static RawJson parse(String json) throws IOException {
+		return RawJson.parse(json.getBytes(StandardCharsets.UTF_8));
+	}
+
+	@Test
+	void rejectsAnythingButOneValue() {
+		for (String invalid : List.of("", "   ", "{", "{\"a\":}", "[1,]", "1 2", "{} []", "'text'"))
+			assertThrows(IOException.class, () -> parse(invalid), invalid);
+	}
+
+	@Test
+	void stripsInsignificantWhitespace() throws IOException {
+		RawJson json = parse(" {\n \"title\" : \"Two  words\",\t\"links\": [ 1 , 2.5, null, true ] } ");
+
+		assertEquals("{\"title\":\"Two  words\",\"links\":[1,2.5,null,true]}", json.toString());
+		assertEquals(json.toString().length(), json.size());
+		assertEquals(parse("{\"title\":\"Two  words\",\"links\":[1,2.5,null,true]}"), json);
+		assertEquals("Two  words", json.toTree(mapper).get("title").asText());
+	}
+
+	@Test
+	void isWrittenVerbatimAsBytesAndAsText() throws IOException {
+		RawJson json = parse("{\"title\":\"Задача \\\"1\\\"\",\"tags\":[\"∫\"]}");
+		APIResponse response = new APIResponse(0, json);
+
+		String expected = "{\"status\":0,\"data\":" + json + "}";
+		assertEquals(expected, new String(mapper.writeValueAsBytes(response), StandardCharsets.UTF_8));
+		assertEquals(expected, mapper.writeValueAsString(response));
+		assertEquals(json, mapper.readValue(mapper.writeValueAsBytes(json), RawJson.class));
+	}
+
+	@Test
+	void survivesJsonFile() throws IOException {
+		File file = Files.createTempFile("homeworks", ".json").toFile();
+		Homework homework = new Homework();
+		homework.setId((short) 3);
+		homework.setDescription("Essay");
+		homework.setDueDate(new Date(1000));
+		homework.setExtras(parse("{ \"notes\" : \"Ünïcode\", \"pages\" : [ 1, 2 ] }"));
+
+		JsonFileStorage<Homework> storage = new JsonFileStorage<>(file, Homework.class);
+		storage.put(homework);
+		storage.flush();
+		Homework loaded = new JsonFileStorage<>(file, Homework.class).get((short) 3);
+
+		assertNotNull(loaded);
+		assertEquals(homework.getExtras(), loaded.getExtras());
+		assertEquals("{\"notes\":\"Ünïcode\",\"pages\":[1,2]}", loaded.getExtras().toString());
+	}
+
+}
@@ -0,0 +1,67 @@
+package msu.timetable.models;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SubjectHomeworkIndexTests {
+
+	private static Homework homework(int id, int subject) {
+		Homework homework = new Homework();
+		homework.setId((short) id);
+		homework.setSubject((short) subject);
+		return homework;
+	}
+
+	@Test
+	void syncMovesHomeworkBetweenSubjects() {
+		Map<Short, Homework> store = new HashMap<>();
+		SubjectHomeworkIndex index = new SubjectHomeworkIndex();
+		for (int id : new int[] { 7, -2, 3 }) {
+			store.put((short) id, homework(id, 1));
+			index.sync((short) id, () -> store.get((short) id));
+		}
+//		ordered as unsigned numbers
+		assertArrayEquals(new short[] { 3, 7, -2 }, index.homeworksOf((short) 1));
+
+		store.put((short) 7, homework(7, 2));
+		SubjectHomeworkIndex.Link moved = index.sync((short) 7, () -> store.get((short) 7));
+		assertEquals(new SubjectHomeworkIndex.Link(1, 2), moved);
+		assertArrayEquals(new short[] { 3, -2 }, index.homeworksOf((short) 1));
+		assertArrayEquals(new short[] { 7 }, index.homeworksOf((short) 2));
+
+		store.remove((short) 3);
+		assertEquals(new SubjectHomeworkIndex.Link(1, -1), index.sync((short) 3, () -> store.get((short) 3)));
+		assertFalse(index.sync((short) -2, () -> store.get((short) -2)).moved());
+		assertEquals(-1, index.subjectOf((short) 3));
+		assertEquals(2, index.size());
+	}
+
+	@Test
+	void rebuildMatchesRandomSyncs() {
+		Random random = new Random(11);
+		Map<Short, Homework> store = new HashMap<>();
+		SubjectHomeworkIndex index = new SubjectHomeworkIndex();
+		for (int i = 0; i < 20_000; i++) {
+			short id = (short) random.nextInt(500);
+			if (random.nextInt(4) == 0) store.remove(id);
+			else store.put(id, homework(id, random.nextInt(10)));
+			index.sync(id, () -> store.get(id));
+		}
+
+		SubjectHomeworkIndex rebuilt = new SubjectHomeworkIndex();
+		rebuilt.rebuild(store.values());
+		assertEquals(store.size(), index.size());
+		for (short subject = 0; subject < 10; subject++) {
+			short[] ids = index.homeworksOf(subject);
+			assertArrayEquals(rebuilt.homeworksOf(subject), ids);
+			for (short id : ids) assertTrue(store.get(id).getSubject() == subject);
+		}
+	}
+
+}
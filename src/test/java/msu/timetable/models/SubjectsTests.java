@@ -0,0 +1,106 @@
+package msu.timetable.models;
+
+import msu.timetable.storage.EntityStorage;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/** Works with application store, so every test uses its own subjects */
+class SubjectsTests {
+
+	private final Subjects subjects = Subjects.getInstance();
+
+	@Test
+	void updateRetriesAfterConcurrentChange() {
+		String name = "Versioned " + System.nanoTime();
+		short id = subjects.createSubject(name, List.of()).getId();
+
+		int[] calls = { 0 };
+		Subject updated = subjects.updateSubject(id, EntityStorage.ANY_VERSION, s -> {
+//			the first attempt loses to another writer
+			if (calls[0]++ == 0) subjects.setSubjectSchedule(id, EntityStorage.ANY_VERSION, List.of(new Date(1000)));
+			s.setName(s.getName() + "!");
+		});
+
+		assertEquals(2, calls[0]);
+		assertEquals(name + "!", updated.getName());
+		assertEquals(List.of(new Date(1000)), updated.getSchedule());
+		assertEquals(2, updated.getVersion());
+		assertSame(updated, subjects.getSubjectByName(name + "!"));
+	}
+
+	@Test
+	void concurrentUpdatesAreAllApplied() throws InterruptedException {
+		String name = "Versioned " + System.nanoTime();
+		short id = subjects.createSubject(name, List.of()).getId();
+
+		List<Thread> writers = new ArrayList<>();
+		for (int i = 0; i < 4; i++)
+			writers.add(new Thread(() -> {
+				for (int j = 0; j < 50; j++)
+					subjects.updateSubject(id, EntityStorage.ANY_VERSION, s -> s.setName(s.getName() + "x"));
+			}));
+		writers.forEach(Thread::start);
+		for (Thread writer : writers) writer.join();
+
+		Subject subject = subjects.getSubjectById(id);
+		assertEquals(name + "x".repeat(200), subject.getName());
+		assertEquals(200, subject.getVersion());
+	}
+
+	/** Returns timestamp of 10:00 on given weekday of some week */
+	private static long lessonOn(int weekday) {
+		long monday = TimetableCalendar.mondayOf(TimetableCalendar.getDefault().epochDay(System.currentTimeMillis()));
+		return TimetableCalendar.getDefault().timestampOf(monday + weekday - 1, 10 * 60 * TimetableCalendar.MILLIS_PER_MINUTE);
+	}
+
+	@Test
+	void weekdayListsFollowScheduleChanges() {
+		Subject subject = subjects.createSubject("Weekday " + System.nanoTime(), List.of(new Date(lessonOn(2))));
+		assertTrue(subjects.getSubjectsOn(2).contains(subject));
+
+		Subject moved = subjects.setSubjectSchedule(subject.getId(), subject.getVersion(), List.of(new Date(lessonOn(4))));
+		assertFalse(subjects.getSubjectsOn(2).stream().anyMatch(s -> s.getId() == subject.getId()));
+		assertTrue(subjects.getSubjectsOn(4).contains(moved));
+	}
+
+	@Test
+	void concurrentCallersShareRebuiltWeekdayList() throws InterruptedException {
+		Subject subject = subjects.createSubject("Weekday " + System.nanoTime(), List.of(new Date(lessonOn(3))));
+
+		CountDownLatch start = new CountDownLatch(1);
+		List<Collection<Subject>> results = new ArrayList<>();
+		List<Thread> readers = new ArrayList<>();
+		for (int i = 0; i < 8; i++)
+			readers.add(new Thread(() -> {
+				try {
+					start.await();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				Collection<Subject> result = subjects.getSubjectsOn(3);
+				synchronized (results) {
+					results.add(result);
+				}
+			}));
+		readers.forEach(Thread::start);
+		start.countDown();
+		for (Thread reader : readers) reader.join();
+
+//		the list was dropped by creation of subject, it is rebuilt once and shared by everyone
+		assertEquals(8, results.size());
+		results.forEach(result -> assertSame(results.get(0), result));
+		assertSame(results.get(0), subjects.getSubjectsOn(3));
+		assertTrue(results.get(0).contains(subject));
+	}
+
+}
@@ -0,0 +1,81 @@
+package msu.timetable.models;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.*;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class TimetableCalendarTests {
+
+	/** Zones with daylight saving time, including one, where midnight used to be skipped */
+	private static final String[] zones = { "Europe/Moscow", "Europe/Berlin", "America/New_York", "America/Sao_Paulo", "UTC" };
+
+	private static final long from = LocalDate.of(1950, 1, 1).toEpochDay() * TimetableCalendar.MILLIS_PER_DAY;
+	private static final long to = LocalDate.of(2050, 1, 1).toEpochDay() * TimetableCalendar.MILLIS_PER_DAY;
+
+	@Test
+	void weekdaysAndDaysMatchJavaTime() {
+		Random random = new Random(1);
+		for (String name : zones) {
+			ZoneId zone = ZoneId.of(name);
+			TimetableCalendar calendar = new TimetableCalendar(zone);
+			for (int i = 0; i < 100_000; i++) {
+				long timestamp = from + (long) (random.nextDouble() * (to - from));
+				LocalDate date = LocalDate.ofInstant(Instant.ofEpochMilli(timestamp), zone);
+
+				assertEquals(date.toEpochDay(), calendar.epochDay(timestamp), name);
+				assertEquals(date.getDayOfWeek().getValue(), calendar.dayOfWeek(timestamp), name);
+				assertEquals(date.with(DayOfWeek.MONDAY).toEpochDay(), calendar.weekOf(timestamp), name);
+			}
+		}
+	}
+
+	@Test
+	void startOfDayMatchesJavaTime() {
+		for (String name : zones) {
+			ZoneId zone = ZoneId.of(name);
+			TimetableCalendar calendar = new TimetableCalendar(zone);
+			for (long day = LocalDate.of(1950, 1, 1).toEpochDay(); day < LocalDate.of(2050, 1, 1).toEpochDay(); day++) {
+				long expected = LocalDate.ofEpochDay(day).atStartOfDay(zone).toInstant().toEpochMilli();
+				assertEquals(expected, calendar.startOfDay(day), name + " " + LocalDate.ofEpochDay(day));
+			}
+		}
+	}
+
+	@Test
+	void momentsOutsideOfPrecomputedTransitionsMatchJavaTime() {
+		int years = TimetableCalendar.TRANSITION_WINDOW_YEARS;
+		for (String name : zones) {
+			ZoneId zone = ZoneId.of(name);
+			TimetableCalendar calendar = new TimetableCalendar(zone);
+			for (LocalDate date : new LocalDate[] { LocalDate.now().minusYears(years + 30), LocalDate.now().plusYears(years + 30) }) {
+				for (int i = 0; i < 366; i++, date = date.plusDays(1)) {
+					long start = date.atStartOfDay(zone).toInstant().toEpochMilli();
+					assertEquals(start, calendar.startOfDay(date.toEpochDay()), name + " " + date);
+					assertEquals(date.toEpochDay(), calendar.epochDay(start + 13 * 3600_000L), name + " " + date);
+				}
+			}
+		}
+	}
+
+	@Test
+	void skippedMidnightStartsAfterTransition() {
+		ZoneId zone = ZoneId.of("America/Sao_Paulo");
+		long day = LocalDate.of(2018, 11, 4).toEpochDay();
+
+		long start = new TimetableCalendar(zone).startOfDay(day);
+
+		assertEquals(LocalTime.of(1, 0), LocalTime.ofInstant(Instant.ofEpochMilli(start), zone));
+	}
+
+	@Test
+	void weekdaysBeforeEpoch() {
+		assertEquals(DayOfWeek.THURSDAY.getValue(), TimetableCalendar.dayOfWeekOfEpochDay(0));
+		assertEquals(DayOfWeek.WEDNESDAY.getValue(), TimetableCalendar.dayOfWeekOfEpochDay(-1));
+		assertEquals(DayOfWeek.THURSDAY.getValue(), TimetableCalendar.dayOfWeekOfEpochDay(-7));
+		assertEquals(-3, TimetableCalendar.mondayOf(-1));
+	}
+
+}
@@ -0,0 +1,198 @@
+package msu.timetable.models;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class WeekViewsTests {
+
+	private static final TimetableCalendar calendar = new TimetableCalendar(ZoneOffset.UTC);
+
+	/** Weeks of 2024, the first one begins on Monday, January 1 */
+	private static final LocalDate firstMonday = LocalDate.of(2024, 1, 1);
+
+	private final List<Subject> subjects = new ArrayList<>();
+	private final List<Homework> homeworks = new ArrayList<>();
+	/** Number of views built */
+	private final AtomicInteger builds = new AtomicInteger();
+
+	private WeekViews views(int capacity) {
+		return new WeekViews(() -> {
+			builds.incrementAndGet();
+			return subjects;
+		}, () -> homeworks, calendar, capacity, null);
+	}
+
+	/** Returns timestamp of 10:00 on Tuesday of given week of 2024 */
+	private static long tuesdayOf(int week) {
+		return firstMonday.plusWeeks(week - 1).plusDays(1).atTime(10, 0).toInstant(ZoneOffset.UTC).toEpochMilli();
+	}
+
+	private static Subject subject(int id, String name, long... lessons) {
+		Subject subject = new Subject();
+		subject.setId((short) id);
+		subject.setName(name);
+		List<Date> schedule = new ArrayList<>();
+		for (long lesson : lessons) schedule.add(new Date(lesson));
+		subject.setSchedule(schedule);
+		return subject;
+	}
+
+	private static Homework homework(int id, long dueDate) {
+		Homework homework = new Homework();
+		homework.setId((short) id);
+		homework.setSubject((short) 1);
+		homework.setDescription("Exercises");
+		homework.setDueDate(new Date(dueDate));
+		return homework;
+	}
+
+	private static List<String> lessons(WeekViews.WeekView view) {
+		return view.lessons().stream().map(WeekViews.Lesson::name).toList();
+	}
+
+	@Test
+	void evictsLeastRecentlyUsedWeek() {
+		WeekViews views = views(2);
+		views.getWeek(2024, 1);
+		views.getWeek(2024, 2);
+		views.getWeek(2024, 1);
+		views.getWeek(2024, 3);
+		assertEquals(3, builds.get());
+
+//		week 2 was used least recently
+		views.getWeek(2024, 1);
+		assertEquals(3, builds.get());
+		views.getWeek(2024, 2);
+		assertEquals(4, builds.get());
+
+		WeekViews.Stats stats = views.getStats();
+		assertEquals(2, stats.size());
+		assertEquals(2, stats.capacity());
+		assertEquals(2, stats.evictions());
+	}
+
+	@Test
+	void statsCountHitsAndMisses() {
+		WeekViews views = views(WeekViews.DEFAULT_CAPACITY);
+		assertEquals(0, views.getStats().getHitRate(), 0);
+
+		views.getWeekOf(tuesdayOf(1));
+		views.getWeek(2024, 1);
+		views.getWeek(2024, 1);
+		views.getWeek(2024, 2);
+
+		WeekViews.Stats stats = views.getStats();
+		assertEquals(2, stats.hits());
+		assertEquals(2, stats.misses());
+		assertEquals(0.5, stats.getHitRate(), 0);
+		assertEquals(0, stats.evictions());
+		assertEquals(2, stats.size());
+	}
+
+	@Test
+	void subjectRenameDropsOnlyItsWeeks() {
+		Subject before = subject(1, "Algebra", tuesdayOf(1), tuesdayOf(3));
+		subjects.add(before);
+		WeekViews views = views(WeekViews.DEFAULT_CAPACITY);
+		for (int week = 1; week <= 3; week++) views.getWeek(2024, week);
+
+		Subject after = subject(1, "Linear Algebra", tuesdayOf(1), tuesdayOf(3));
+		subjects.set(0, after);
+		views.subjectChanged(before, after);
+
+		assertEquals(2, views.getStats().invalidations());
+		assertEquals(List.of("Linear Algebra"), lessons(views.getWeek(2024, 1)));
+		assertEquals(List.of(), lessons(views.getWeek(2024, 2)));
+		assertEquals(List.of("Linear Algebra"), lessons(views.getWeek(2024, 3)));
+		assertEquals(5, builds.get());
+
+//		changes, which aren't shown in weeks, drop nothing
+		Subject versioned = new Subject(after);
+		versioned.setVersion(after.getVersion() + 1);
+		views.subjectChanged(after, versioned);
+		assertEquals(2, views.getStats().invalidations());
+	}
+
+	@Test
+	void scheduleChangeDropsOldAndNewWeeks() {
+		Subject before = subject(1, "Algebra", tuesdayOf(1));
+		subjects.add(before);
+		WeekViews views = views(WeekViews.DEFAULT_CAPACITY);
+		for (int week = 1; week <= 3; week++) views.getWeek(2024, week);
+
+		Subject after = subject(1, "Algebra", tuesdayOf(2));
+		subjects.set(0, after);
+		views.subjectChanged(before, after);
+
+		assertEquals(2, views.getStats().invalidations());
+		assertEquals(List.of(), lessons(views.getWeek(2024, 1)));
+		assertEquals(List.of("Algebra"), lessons(views.getWeek(2024, 2)));
+		views.getWeek(2024, 3);
+		assertEquals(5, builds.get());
+	}
+
+	@Test
+	void homeworkMovedAcrossWeeksDropsBothWeeks() {
+		Homework before = homework(1, tuesdayOf(1));
+		homeworks.add(before);
+		WeekViews views = views(WeekViews.DEFAULT_CAPACITY);
+		for (int week = 1; week <= 3; week++) views.getWeek(2024, week);
+
+		Homework after = homework(1, tuesdayOf(3));
+		homeworks.set(0, after);
+		views.homeworkChanged(before, after);
+
+		assertEquals(2, views.getStats().invalidations());
+		assertEquals(List.of(), views.getWeek(2024, 1).homeworks());
+		assertEquals(List.of(), views.getWeek(2024, 2).homeworks());
+		assertEquals(List.of(after), views.getWeek(2024, 3).homeworks());
+		assertEquals(5, builds.get());
+	}
+
+	@Test
+	void concurrentRequestsBuildWeekOnce() throws Exception {
+		CountDownLatch building = new CountDownLatch(1), release = new CountDownLatch(1);
+		WeekViews views = new WeekViews(() -> {
+			builds.incrementAndGet();
+			building.countDown();
+			try {
+				release.await();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			return subjects;
+		}, () -> homeworks, calendar, WeekViews.DEFAULT_CAPACITY, null);
+
+		AtomicReference<WeekViews.WeekView> first = new AtomicReference<>(), second = new AtomicReference<>();
+		Thread builder = new Thread(() -> first.set(views.getWeek(2024, 1)));
+		builder.start();
+		assertTrue(building.await(10, TimeUnit.SECONDS));
+
+		Thread waiter = new Thread(() -> second.set(views.getWeek(2024, 1)));
+		waiter.start();
+//		waiter counts a hit before waiting for the view
+		long deadline = System.currentTimeMillis() + 10_000;
+		while (views.getStats().hits() == 0 && System.currentTimeMillis() < deadline)
+			Thread.sleep(1);
+		release.countDown();
+		builder.join();
+		waiter.join();
+
+		assertEquals(1, builds.get());
+		assertSame(first.get(), second.get());
+	}
+
+}
@@ -0,0 +1,64 @@
+package msu.timetable.reminders;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TimerWheelTests {
+
+	@Test
+	void firesEveryTimeoutExactlyAtDeadline() {
+		long start = 1_000_003;
+		TimerWheel<Long> wheel = new TimerWheel<>(start);
+		Random random = new Random(7);
+		for (int i = 0; i < 100_000; i++) {
+//			spread over the first three wheels
+			long deadline = start + random.nextInt(1 << 18);
+			wheel.schedule(deadline, deadline);
+		}
+
+		List<Long> late = new ArrayList<>();
+		int[] fired = { 0 };
+		wheel.advance(start + (1 << 18), deadline -> {
+			fired[0]++;
+			if (deadline != wheel.getTick()) late.add(deadline);
+		});
+
+		assertEquals(100_000, fired[0]);
+		assertEquals(List.of(), late);
+		assertEquals(0, wheel.size());
+	}
+
+	@Test
+	void cancelledTimeoutsNeverFire() {
+		TimerWheel<String> wheel = new TimerWheel<>(0);
+		TimerWheel.Timeout<String> kept = wheel.schedule("kept", 5000);
+		TimerWheel.Timeout<String> cancelled = wheel.schedule("cancelled", 5000);
+
+		assertTrue(wheel.cancel(cancelled));
+		assertFalse(wheel.cancel(cancelled));
+
+		List<String> fired = new ArrayList<>();
+		wheel.advance(10_000, fired::add);
+		assertEquals(List.of("kept"), fired);
+		assertFalse(kept.isPending());
+		assertFalse(wheel.cancel(kept));
+	}
+
+	@Test
+	void passedDeadlineFiresOnNextTick() {
+		TimerWheel<String> wheel = new TimerWheel<>(100);
+		wheel.schedule("late", 10);
+
+		List<String> fired = new ArrayList<>();
+		wheel.advance(100, fired::add);
+		assertEquals(List.of("late"), fired);
+	}
+
+}
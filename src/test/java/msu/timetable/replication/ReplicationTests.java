@@ -0,0 +1,217 @@
+package msu.timetable.replication;
+
+import msu.timetable.archive.Archive;
+import msu.timetable.models.Homework;
+import msu.timetable.models.Subject;
+import msu.timetable.storage.EntityStorage;
+import msu.timetable.storage.JsonFileStorage;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ReplicationTests {
+
+	/** Storage, which is never flushed, so its file is never created */
+	private static EntityStorage<Subject> memoryStorage() {
+		return new JsonFileStorage<>(new File("missing-" + System.nanoTime() + ".json"), Subject.class);
+	}
+
+	private static Subject subject(int id, String name) {
+		Subject subject = new Subject();
+		subject.setId((short) id);
+		subject.setName(name);
+		return subject;
+	}
+
+	private static ReplicationClient follow(ReplicationServer server, EntityStorage<Subject> replica) {
+		return follow(server, replica, null);
+	}
+
+	private static ReplicationClient follow(ReplicationServer server, EntityStorage<Subject> replica, Archive archive) {
+		ReplicationClient client = new ReplicationClient(new InetSocketAddress("localhost", server.getPort()), Map.of(
+				"subjects", new Replica<>(Subject.class,
+						(id, subject) -> {
+							if (subject != null) replica.put(subject);
+							else replica.remove(id);
+						},
+						subjects -> {
+							List.copyOf(replica.values()).forEach(s -> replica.remove(s.getId()));
+							subjects.forEach(replica::put);
+						})
+		), archive);
+		client.start();
+		return client;
+	}
+
+	private static void awaitSequence(ReplicationClient client, long sequence) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + 10_000;
+		while (client.getStatus().sequence() < sequence && System.currentTimeMillis() < deadline)
+			Thread.sleep(10);
+		assertEquals(sequence, client.getStatus().sequence());
+	}
+
+	private static List<String> names(EntityStorage<Subject> storage) {
+		return storage.values().stream().map(s -> s.getId() + ":" + s.getName() + ":" + s.getVersion()).toList();
+	}
+
+	@Test
+	void followerAppliesMutationsInOrder() throws Exception {
+		ReplicationLog log = new ReplicationLog(1000);
+		EntityStorage<Subject> base = memoryStorage();
+		log.register("subjects", base);
+		EntityStorage<Subject> leader = new LoggedStorage<>(base, "subjects", log);
+		EntityStorage<Subject> replica = memoryStorage();
+
+		ReplicationServer server = new ReplicationServer(log, 0, null);
+		server.start();
+		ReplicationClient client = follow(server, replica);
+		try {
+			leader.insert(subject(1, "Algebra"));
+			leader.insert(subject(2, "Physics"));
+			leader.update((short) 1, EntityStorage.ANY_VERSION, s -> {
+				Subject copy = new Subject(s);
+				copy.setName("Linear Algebra");
+				copy.setVersion(s.getVersion() + 1);
+				return copy;
+			});
+			leader.remove((short) 2);
+
+			awaitSequence(client, 4);
+			assertEquals(List.of("1:Linear Algebra:1"), names(replica));
+			assertEquals(0, client.getStatus().lagEntries());
+		} finally {
+			client.shutdown();
+			server.shutdown();
+		}
+	}
+
+	@Test
+	void followerBehindLogCatchesUpFromSnapshot() throws Exception {
+		ReplicationLog log = new ReplicationLog(4);
+		EntityStorage<Subject> base = memoryStorage();
+		log.register("subjects", base);
+		EntityStorage<Subject> leader = new LoggedStorage<>(base, "subjects", log);
+		EntityStorage<Subject> replica = memoryStorage();
+		replica.put(subject(99, "Stale"));
+
+//		more mutations than the ring holds happen before follower connects
+		for (int i = 1; i <= 10; i++)
+			leader.put(subject(i, "Subject " + i));
+		assertFalse(log.canContinue(0));
+
+		ReplicationServer server = new ReplicationServer(log, 0, null);
+		server.start();
+		ReplicationClient client = follow(server, replica);
+		try {
+			awaitSequence(client, 10);
+			leader.remove((short) 10);
+			awaitSequence(client, 11);
+
+			assertEquals(names(base), names(replica));
+			assertEquals(9, replica.size());
+		} finally {
+			client.shutdown();
+			server.shutdown();
+		}
+	}
+
+	@Test
+	void snapshotIsNotChangedByLaterMutations() {
+		ReplicationLog log = new ReplicationLog(4);
+		EntityStorage<Subject> base = memoryStorage();
+		log.register("subjects", base);
+		EntityStorage<Subject> leader = new LoggedStorage<>(base, "subjects", log);
+		leader.put(subject(1, "Algebra"));
+		leader.put(subject(2, "Physics"));
+
+		ReplicationLog.Snapshot snapshot = log.snapshot();
+		leader.remove((short) 1);
+		leader.put(subject(2, "Chemistry"));
+		leader.put(subject(3, "History"));
+
+		assertEquals(2, snapshot.sequence());
+		assertEquals(List.of("1:Algebra", "2:Physics"), snapshot.storages().get("subjects").stream()
+				.map(s -> s.getId() + ":" + ((Subject) s).getName()).toList());
+	}
+
+	@Test
+	void slowMutationDoesntBlockOtherEntities() throws Exception {
+		ReplicationLog log = new ReplicationLog(4);
+		CountDownLatch entered = new CountDownLatch(1), release = new CountDownLatch(1);
+		EntityStorage<Subject> base = new JsonFileStorage<>(new File("missing-" + System.nanoTime() + ".json"), Subject.class) {
+			@Override
+			public void put(Subject entity) {
+				if (entity.getId() == 1) {
+					entered.countDown();
+					try {
+						release.await();
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+					}
+				}
+				super.put(entity);
+			}
+		};
+		log.register("subjects", base);
+		EntityStorage<Subject> leader = new LoggedStorage<>(base, "subjects", log);
+
+		Thread slow = new Thread(() -> leader.put(subject(1, "Algebra")));
+		slow.start();
+		assertTrue(entered.await(10, TimeUnit.SECONDS));
+		leader.put(subject(2, "Physics"));
+		assertEquals(1, log.lastSequence());
+		assertEquals(List.of("2:Physics:0"), names(base));
+
+		release.countDown();
+		slow.join();
+		assertEquals(List.of((short) 2, (short) 1), log.read(1, 10, 0).stream().map(ReplicationLog.Entry::id).toList());
+	}
+
+	@Test
+	void followerReceivesArchiveSegments() throws Exception {
+		ReplicationLog log = new ReplicationLog(1000);
+		EntityStorage<Subject> base = memoryStorage();
+		log.register("subjects", base);
+		Archive leaderArchive = new Archive(Files.createTempDirectory("leader-archive"));
+		leaderArchive.addSegmentListener(log::appendSegment);
+		Archive followerArchive = new Archive(Files.createTempDirectory("follower-archive"));
+
+//		segment archived before follower connects is shipped at connection
+		leaderArchive.appendLessons(List.of(new Archive.Lesson((short) 1, "Algebra", 1000)));
+		ReplicationServer server = new ReplicationServer(log, 0, leaderArchive);
+		server.start();
+		ReplicationClient client = follow(server, memoryStorage(), followerArchive);
+		try {
+			awaitSequence(client, 1);
+
+			Homework homework = new Homework();
+			homework.setId((short) 5);
+			homework.setSubject((short) 1);
+			homework.setDescription("Exercises");
+			homework.setDueDate(new Date(2000));
+			leaderArchive.appendHomeworks(List.of(homework));
+			awaitSequence(client, 2);
+
+			assertEquals(leaderArchive.getSegmentNames(), followerArchive.getSegmentNames());
+			assertEquals(List.of(1000L), followerArchive.getLessons(0, 3000).stream().map(Archive.Lesson::date).toList());
+			assertEquals(List.of("Exercises"),
+					followerArchive.getHomeworks(0, 3000).stream().map(Homework::getDescription).toList());
+			assertEquals(2, followerArchive.getStats().segments());
+		} finally {
+			client.shutdown();
+			server.shutdown();
+		}
+	}
+
+}
@@ -0,0 +1,140 @@
+package msu.timetable.rest;
+
+import msu.timetable.APIResponse;
+import msu.timetable.models.Homework;
+import msu.timetable.models.Homeworks;
+import msu.timetable.models.RawJson;
+import msu.timetable.models.Subject;
+import msu.timetable.models.Subjects;
+import msu.timetable.storage.VersionConflictException;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/** Works with application stores through controllers, so every test uses its own subjects */
+class JsonBodiesTests {
+
+	private final SubjectController subjectController = new SubjectController();
+	private final HomeworkController homeworkController = new HomeworkController();
+
+	private static InputStream body(String json) {
+		return new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8));
+	}
+
+	private static HttpStatus statusOf(Runnable request) {
+		return assertThrows(ResponseStatusException.class, request::run).getStatus();
+	}
+
+	@Test
+	void readsPresentFields() throws Exception {
+		JsonBodies.SubjectBody subject = JsonBodies.readSubject(body("""
+				{"name": "Algebra", "schedule": [1000, 2000], "extras": {"room": 101}}"""));
+		assertEquals("Algebra", subject.name());
+		assertEquals(List.of(new Date(1000), new Date(2000)), subject.schedule());
+		assertEquals(RawJson.parse("{\"room\":101}".getBytes(StandardCharsets.UTF_8)), subject.extras());
+
+		JsonBodies.HomeworkBody homework = JsonBodies.readHomework(body("""
+				{"subject": 7, "description": "Exercises", "dueDate": 5000}"""));
+		assertEquals(7, (int) homework.subject());
+		assertEquals("Exercises", homework.description());
+		assertEquals(new Date(5000), homework.dueDate());
+		assertFalse(homework.hasExtras());
+	}
+
+	@Test
+	void missingFieldsAreNullAndNullExtrasArePresent() {
+		JsonBodies.SubjectBody empty = JsonBodies.readSubject(body("{}"));
+		assertNull(empty.name());
+		assertNull(empty.schedule());
+		assertFalse(empty.hasExtras());
+
+		JsonBodies.HomeworkBody cleared = JsonBodies.readHomework(body("{\"extras\": null}"));
+		assertTrue(cleared.hasExtras());
+		assertNull(cleared.extras());
+		assertNull(cleared.subject());
+	}
+
+	@Test
+	void malformedBodiesAreBadRequests() {
+		for (String json : List.of("", "[]", "\"name\"", "{\"name\": \"Algebra\"", "{\"name\": \"Algebra\"} {}",
+				"{\"name\": null}", "{\"name\": 5}", "{\"schedule\": [\"Monday\"]}", "{\"schedule\": 1000}",
+				"{\"title\": \"Algebra\"}", "{\"extras\": {\"a\": }}"))
+			assertEquals(HttpStatus.BAD_REQUEST, statusOf(() -> JsonBodies.readSubject(body(json))), json);
+
+		for (String json : List.of("{\"subject\": 40000}", "{\"subject\": \"7\"}", "{\"dueDate\": 1.5}",
+				"{\"description\": null}", "{\"dueDate\": null}"))
+			assertEquals(HttpStatus.BAD_REQUEST, statusOf(() -> JsonBodies.readHomework(body(json))), json);
+	}
+
+	@Test
+	void oversizedBodyIsPayloadTooLarge() {
+		String description = "x".repeat(JsonBodies.MAX_BODY_SIZE);
+		assertEquals(HttpStatus.PAYLOAD_TOO_LARGE,
+				statusOf(() -> homeworkController.postHomework(body("{\"subject\": 1, \"description\": \"" + description + "\"}"))));
+	}
+
+	@Test
+	void postCreatesEntitiesWithRequiredFields() {
+		assertEquals(-1, subjectController.postSubject(body("{\"schedule\": [1000]}")).getStatus());
+		assertEquals(-1, subjectController.postSubject(body("{\"name\": \" \"}")).getStatus());
+
+		String name = "Posted " + System.nanoTime();
+		Subject subject = (Subject) subjectController.postSubject(body("""
+				{"name": "%s", "schedule": [1000], "extras": [1, 2]}""".formatted(name))).getData();
+		assertEquals(name, subject.getName());
+		assertEquals(List.of(new Date(1000)), subject.getSchedule());
+		assertEquals("[1,2]", subject.getExtras().toString());
+
+		assertEquals(-1, homeworkController.postHomework(body("{\"description\": \"Exercises\"}")).getStatus());
+		Homework homework = (Homework) homeworkController.postHomework(body("""
+				{"subject": %d, "description": "Exercises", "dueDate": 5000}""".formatted(subject.getId()))).getData();
+		assertEquals(subject.getId(), homework.getSubject());
+		assertEquals(new Date(5000), homework.getDueDate());
+	}
+
+	@Test
+	void patchChangesOnlyPresentFieldsOfExpectedVersion() {
+		Subject subject = Subjects.getInstance().createSubject("Patched " + System.nanoTime(), List.of(new Date(1000)));
+		String name = "Patched " + System.nanoTime();
+
+		APIResponse response = subjectController.patchSubject(subject.getId(), body("""
+				{"name": "%s", "extras": {"a": 1}}""".formatted(name)), "\"0\"", null);
+		Subject patched = (Subject) response.getData();
+		assertEquals(name, patched.getName());
+		assertEquals(List.of(new Date(1000)), patched.getSchedule());
+		assertEquals(1, patched.getVersion());
+
+		patched = (Subject) subjectController.patchSubject(subject.getId(), body("{\"extras\": null}"), null, 1L).getData();
+		assertNull(patched.getExtras());
+		assertEquals(name, patched.getName());
+
+		assertThrows(VersionConflictException.class,
+				() -> subjectController.patchSubject(subject.getId(), body("{\"name\": \"Stale\"}"), "W/\"1\"", null));
+		assertEquals(HttpStatus.BAD_REQUEST,
+				statusOf(() -> subjectController.patchSubject(subject.getId(), body("{}"), "-1", null)));
+		assertEquals(-1, subjectController.patchSubject(subject.getId(), body("{\"name\": \"\"}"), null, null).getStatus());
+		assertEquals(2, Subjects.getInstance().getSubjectById(subject.getId()).getVersion());
+
+		Homework homework = Homeworks.getInstance().createHomework(subject.getId(), "Exercises");
+		assertEquals(-1, homeworkController.patchHomework(homework.getId(), body("{\"subject\": -32768}"), null, null).getStatus());
+		Homework moved = (Homework) homeworkController.patchHomework(homework.getId(), body("{\"dueDate\": 7000}"),
+				"\"%d\"".formatted(homework.getVersion()), null).getData();
+		assertEquals(new Date(7000), moved.getDueDate());
+		assertEquals("Exercises", moved.getDescription());
+		assertThrows(VersionConflictException.class,
+				() -> homeworkController.patchHomework(homework.getId(), body("{}"), null, homework.getVersion()));
+	}
+
+}
@@ -0,0 +1,49 @@
+package msu.timetable.rest;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class LimitedInputStreamTests {
+
+	private static InputStream limited(int size, int limit) {
+		return new LimitedInputStream(new ByteArrayInputStream(new byte[size]), limit);
+	}
+
+	@Test
+	void bodyOfExactlyLimitIsRead() throws IOException {
+		assertArrayEquals(new byte[16], limited(16, 16).readAllBytes());
+
+		InputStream in = limited(16, 16);
+		for (int i = 0; i < 16; i++) assertEquals(0, in.read());
+		assertEquals(-1, in.read());
+	}
+
+	@Test
+	void largerBodyIsPayloadTooLarge() {
+		ResponseStatusException e = assertThrows(ResponseStatusException.class, () -> limited(17, 16).readAllBytes());
+		assertEquals(HttpStatus.PAYLOAD_TOO_LARGE, e.getStatus());
+
+		InputStream in = limited(17, 16);
+		assertThrows(ResponseStatusException.class, () -> {
+			while (in.read() >= 0);
+		});
+		assertThrows(ResponseStatusException.class, () -> limited(17, 16).skip(100));
+	}
+
+	@Test
+	void skippedBytesCountTowardsLimit() throws IOException {
+		InputStream in = limited(16, 16);
+		assertEquals(10, in.skip(10));
+		assertEquals(6, in.readAllBytes().length);
+	}
+
+}
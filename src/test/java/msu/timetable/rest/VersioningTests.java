@@ -0,0 +1,76 @@
+package msu.timetable.rest;
+
+import msu.timetable.APIResponse;
+import msu.timetable.models.Homework;
+import msu.timetable.models.Homeworks;
+import msu.timetable.models.Subject;
+import msu.timetable.models.Subjects;
+import msu.timetable.storage.VersionConflictException;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/** Calls controllers directly, exceptions are converted the way ApiExceptionHandler does it */
+class VersioningTests {
+
+	private final SubjectController subjectController = new SubjectController();
+	private final HomeworkController homeworkController = new HomeworkController();
+
+	private static Subject newSubject() {
+		return Subjects.getInstance().createSubject("Versioned " + System.nanoTime(), List.of());
+	}
+
+	@Test
+	void staleIfMatchIsConflict() {
+		Subject subject = newSubject();
+		APIResponse renamed = subjectController.renameSubject(subject.getId(), "Renamed " + System.nanoTime(), "\"0\"", null);
+		assertEquals(1, ((Subject) renamed.getData()).getVersion());
+
+		VersionConflictException conflict = assertThrows(VersionConflictException.class,
+				() -> subjectController.renameSubject(subject.getId(), "Stale", "W/\"0\"", null));
+		ResponseEntity<APIResponse> response = new ApiExceptionHandler().onVersionConflict(conflict);
+		assertEquals(409, response.getStatusCodeValue());
+		assertEquals(-3, response.getBody().getStatus());
+	}
+
+	@Test
+	void negativeVersionIsBadRequest() {
+		Subject subject = newSubject();
+		for (String ifMatch : List.of("-1", "\"-1\"", "W/\"-5\"", "abc")) {
+			ResponseStatusException e = assertThrows(ResponseStatusException.class,
+					() -> subjectController.renameSubject(subject.getId(), "Bad", ifMatch, null));
+			assertEquals(HttpStatus.BAD_REQUEST, e.getStatus());
+		}
+		ResponseStatusException e = assertThrows(ResponseStatusException.class,
+				() -> subjectController.renameSubject(subject.getId(), "Bad", null, -1L));
+		assertEquals(HttpStatus.BAD_REQUEST, e.getStatus());
+		assertEquals(0, Subjects.getInstance().getSubjectById(subject.getId()).getVersion());
+	}
+
+	@Test
+	void settersReturnVersionForNextUpdate() {
+		Subject subject = newSubject();
+		Homework homework = Homeworks.getInstance().createHomework(subject.getId(), "Exercises");
+
+		APIResponse response = homeworkController.setHomeworkDate(homework.getId(), 1000, null, homework.getVersion());
+		Homework dated = (Homework) response.getData();
+		response = homeworkController.setHomeworkContent(homework.getId(), "UmVhZA", "\"%d\"".formatted(dated.getVersion()), null);
+		Homework described = (Homework) response.getData();
+
+		assertEquals(0, response.getStatus());
+		assertEquals("Read", described.getDescription());
+		assertEquals(dated.getVersion() + 1, described.getVersion());
+
+		response = subjectController.setSubjectSchedule(subject.getId(), List.of(), null, subject.getVersion());
+		Subject scheduled = (Subject) response.getData();
+		response = subjectController.setSubjectExtras(subject.getId(), "eyJhIjoxfQ", null, scheduled.getVersion());
+		assertEquals(scheduled.getVersion() + 1, ((Subject) response.getData()).getVersion());
+	}
+
+}
@@ -0,0 +1,68 @@
+package msu.timetable.storage;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ClockCacheTests {
+
+	@Test
+	void neverHoldsMoreThanCapacity() {
+		ClockCache<String> cache = new ClockCache<>(8);
+		for (short key = 0; key < 100; key++) {
+			cache.put(key, "value " + key);
+			cache.get((short) (key / 2));
+			assertTrue(cache.size() <= 8);
+		}
+		assertEquals("value 99", cache.get((short) 99));
+		assertNull(new ClockCache<String>(0).get(put(new ClockCache<>(0), (short) 1)));
+	}
+
+	private static short put(ClockCache<String> cache, short key) {
+		cache.put(key, "value");
+		return key;
+	}
+
+	@Test
+	void evictsEntryUnusedSinceHandPassed() {
+		ClockCache<String> cache = new ClockCache<>(3);
+		cache.put((short) 1, "one");
+		cache.put((short) 2, "two");
+		cache.put((short) 3, "three");
+		cache.get((short) 1);
+		cache.get((short) 3);
+
+		cache.put((short) 4, "four");
+		assertNull(cache.peek((short) 2));
+		assertEquals("one", cache.peek((short) 1));
+		assertEquals("three", cache.peek((short) 3));
+	}
+
+	@Test
+	void peeksDontKeepEntries() {
+		ClockCache<String> cache = new ClockCache<>(2);
+		cache.put((short) 1, "one");
+		cache.put((short) 2, "two");
+		cache.get((short) 1);
+		cache.peek((short) 2);
+
+		cache.put((short) 3, "three");
+		assertNull(cache.peek((short) 2));
+		assertEquals("one", cache.peek((short) 1));
+	}
+
+	@Test
+	void removedSlotIsReused() {
+		ClockCache<String> cache = new ClockCache<>(2);
+		cache.put((short) 1, "one");
+		cache.put((short) 2, "two");
+		assertEquals("one", cache.remove((short) 1));
+		assertNull(cache.remove((short) 1));
+
+		cache.put((short) 3, "three");
+		assertEquals(2, cache.size());
+		assertEquals("two", cache.peek((short) 2));
+		assertEquals("three", cache.peek((short) 3));
+	}
+
+}
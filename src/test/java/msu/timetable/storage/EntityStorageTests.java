@@ -0,0 +1,156 @@
+package msu.timetable.storage;
+
+import msu.timetable.models.Subject;
+import org.h2.mvstore.MVStore;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/** Contract of EntityStorage checked against every implementation */
+class EntityStorageTests {
+
+	/** Fresh storages of every implementation */
+	private static List<EntityStorage<Subject>> storages() throws IOException {
+		File file = Files.createTempFile("subjects", ".json").toFile();
+		file.delete();
+		return List.of(
+				new JsonFileStorage<>(file, Subject.class),
+				new MVStoreStorage<>(new MVStore.Builder().open(), "subjects", Subject.class, 16)
+		);
+	}
+
+	private static Subject subject(int id, String name, long version) {
+		Subject subject = new Subject();
+		subject.setId((short) id);
+		subject.setName(name);
+		subject.setVersion(version);
+		return subject;
+	}
+
+	/** Copy of stored subject with a new name and the next version */
+	private static Subject renamed(Subject subject, String name) {
+		Subject copy = new Subject(subject);
+		copy.setName(name);
+		copy.setVersion(subject.getVersion() + 1);
+		return copy;
+	}
+
+	private static List<String> names(EntityStorage<Subject> storage) {
+		List<String> names = new ArrayList<>();
+		storage.values().forEach(s -> names.add(s.getId() + ":" + s.getName()));
+		return names;
+	}
+
+	@Test
+	void insertDoesNotReplace() throws IOException {
+		for (EntityStorage<Subject> storage : storages()) {
+			assertTrue(storage.insert(subject(2, "Algebra", 0)));
+			assertFalse(storage.insert(subject(2, "Physics", 0)));
+			assertTrue(storage.insert(subject(-1, "History", 0)));
+			storage.put(subject(1, "Chemistry", 0));
+
+			assertEquals("Algebra", storage.get((short) 2).getName());
+			assertTrue(storage.contains((short) -1));
+			assertFalse(storage.contains((short) 3));
+			assertEquals(List.of("-1:History", "1:Chemistry", "2:Algebra"), names(storage), storage.getClass().getSimpleName());
+			assertEquals(3, storage.size());
+			assertEquals(List.of("Algebra", "History"), storage.getAll(new short[] { 2, 3, -1 }).stream().map(Subject::getName).toList());
+			storage.close();
+		}
+	}
+
+	@Test
+	void replaceFailsAfterConcurrentReplace() throws IOException {
+		for (EntityStorage<Subject> storage : storages()) {
+			storage.insert(subject(1, "Algebra", 0));
+			Subject seen = storage.get((short) 1);
+			Subject seenByOther = storage.get((short) 1);
+
+			assertTrue(storage.replace(seenByOther, renamed(seenByOther, "Linear Algebra")));
+			assertFalse(storage.replace(seen, renamed(seen, "Abstract Algebra")));
+			assertFalse(storage.replace(subject(2, "Missing", 0), subject(2, "Missing", 1)));
+			assertEquals("Linear Algebra", storage.get((short) 1).getName());
+			assertEquals(1, storage.get((short) 1).getVersion());
+			storage.close();
+		}
+	}
+
+	@Test
+	void updateRetriesAfterConcurrentChange() throws IOException {
+		for (EntityStorage<Subject> storage : storages()) {
+			storage.insert(subject(1, "Algebra", 0));
+			int[] calls = { 0 };
+			Subject updated = storage.update((short) 1, EntityStorage.ANY_VERSION, current -> {
+//				the first attempt loses to another writer
+				if (calls[0]++ == 0) storage.put(renamed(current, "Other"));
+				return renamed(current, current.getName() + "!");
+			});
+
+			assertEquals(2, calls[0]);
+			assertEquals("Other!", updated.getName());
+			assertEquals(2, updated.getVersion());
+			assertThrows(VersionConflictException.class, () -> storage.update((short) 1, 1, s -> renamed(s, "Stale")));
+			assertNull(storage.update((short) 2, EntityStorage.ANY_VERSION, s -> renamed(s, "Missing")));
+			storage.close();
+		}
+	}
+
+	@Test
+	void removeOfExpectedEntityFailsAfterChange() throws IOException {
+		for (EntityStorage<Subject> storage : storages()) {
+			storage.insert(subject(1, "Algebra", 0));
+			Subject seen = storage.get((short) 1);
+			storage.update((short) 1, EntityStorage.ANY_VERSION, s -> renamed(s, "Linear Algebra"));
+
+			assertFalse(storage.remove(seen));
+			assertTrue(storage.contains((short) 1));
+			assertTrue(storage.remove(storage.get((short) 1)));
+			assertFalse(storage.contains((short) 1));
+			assertNull(storage.remove((short) 1));
+			storage.close();
+		}
+	}
+
+	@Test
+	void frozenValuesIgnoreLaterMutations() throws IOException {
+		for (EntityStorage<Subject> storage : storages()) {
+			storage.put(subject(1, "Algebra", 0));
+			storage.put(subject(2, "Physics", 0));
+			List<Subject> frozen = new ArrayList<>();
+			var view = storage.frozenValues();
+			storage.remove((short) 1);
+			storage.put(subject(3, "History", 0));
+			view.forEach(frozen::add);
+
+			assertEquals(List.of("Algebra", "Physics"), frozen.stream().map(Subject::getName).toList());
+			storage.close();
+		}
+	}
+
+	@Test
+	void mvStoreKeepsRecentlyUsedEntitiesWithinCacheSize() {
+		MVStoreStorage<Subject> storage = new MVStoreStorage<>(new MVStore.Builder().open(), "subjects", Subject.class, 2);
+		Subject one = subject(1, "Algebra", 0);
+		Subject two = subject(2, "Physics", 0);
+		storage.put(one);
+		storage.put(two);
+		assertSame(one, storage.get((short) 1));
+//		scan peeks into cache without keeping entities there
+		assertEquals(2, storage.values().size());
+		storage.values().forEach(s -> {});
+
+		storage.put(subject(3, "History", 0));
+		assertSame(one, storage.get((short) 1));
+		Subject decoded = storage.get((short) 2);
+		assertNotSame(two, decoded);
+		assertEquals("Physics", decoded.getName());
+		storage.close();
+	}
+
+}
@@ -0,0 +1,38 @@
+package msu.timetable.storage;
+
+import msu.timetable.models.Homework;
+import msu.timetable.models.Subject;
+import org.junit.jupiter.api.Test;
+
+import java.util.Date;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class StoragesTests {
+
+	@Test
+	void sharedMVStoreIsClosedWithLastStorage() {
+		System.setProperty("timetable.storage", "mvstore");
+		try {
+			EntityStorage<Subject> subjects = Storages.create("shared-subjects", Subject.class);
+			EntityStorage<Homework> homeworks = Storages.create("shared-homeworks", Homework.class);
+			Homework homework = new Homework();
+			homework.setId((short) 1);
+			homework.setDueDate(new Date(1000));
+
+//			repeated close of the same storage mustn't release the store twice
+			subjects.close();
+			subjects.close();
+			homeworks.put(homework);
+			homeworks.flush();
+			assertEquals(1, homeworks.size());
+
+			homeworks.close();
+			assertThrows(IllegalStateException.class, () -> homeworks.put(homework));
+		} finally {
+			System.clearProperty("timetable.storage");
+		}
+	}
+
+}